@@ -13,13 +13,11 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
 
 import com.worksap.nlp.sudachi.Config;
 import com.worksap.nlp.sudachi.Dictionary;
 import com.worksap.nlp.sudachi.DictionaryFactory;
 import com.worksap.nlp.sudachi.MorphemeList;
-import com.worksap.nlp.sudachi.Morpheme;
 import com.worksap.nlp.sudachi.PathAnchor;
 import com.worksap.nlp.sudachi.Settings;
 import com.worksap.nlp.sudachi.SudachiCommandLine;
@@ -73,10 +71,17 @@ public class TokenizeMultiThread {
                     InputStreamReader inputReader = new InputStreamReader(input, StandardCharsets.UTF_8);
                     BufferedReader reader = new BufferedReader(inputReader);) {
                 String line;
+                StringBuilder sb = new StringBuilder();
                 while ((line = reader.readLine()) != null) {
                     MorphemeList ms = tok.tokenize(line);
-                    output.println(
-                            String.join(" ", ms.stream().map(Morpheme::surface).collect(Collectors.toList())));
+                    sb.setLength(0);
+                    for (int i = 0; i < ms.size(); i++) {
+                        if (i > 0) {
+                            sb.append(' ');
+                        }
+                        sb.append(line, ms.getBegin(i), ms.getEnd(i));
+                    }
+                    output.println(sb);
                 }
             }
             return null;
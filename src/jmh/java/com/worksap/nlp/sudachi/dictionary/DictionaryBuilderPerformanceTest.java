@@ -41,4 +41,12 @@ public class DictionaryBuilderPerformanceTest {
         DicBuilder.system().matrix(ROOT.resolve("matrix.def")).lexicon(ROOT.resolve("lex.csv")).build(mc);
         return mc.size();
     }
+
+    @Benchmark
+    public long smallCaseParallel() throws IOException {
+        MemChannelJmh mc = new MemChannelJmh();
+        DicBuilder.system().matrix(ROOT.resolve("matrix.def"))
+                .parallelism(Runtime.getRuntime().availableProcessors()).lexicon(ROOT.resolve("lex.csv")).build(mc);
+        return mc.size();
+    }
 }
@@ -0,0 +1,203 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes the morphemes of sentences in a compact binary columnar format, which
+ * is read by {@link BinaryMorphemeReader}.
+ *
+ * <p>
+ * The following is an example of settings.
+ *
+ * <pre>
+ * {@code
+ *   {
+ *     "class" : "com.worksap.nlp.sudachi.BinaryMorphemeFormatter",
+ *     "text" : true
+ *   }
+ * }
+ * </pre>
+ *
+ * {@code text} stores the original text of each sentence, so that the reader
+ * can return surfaces. Without it, only offsets, word ids, part-of-speech ids
+ * and OOV flags are stored; word ids and part-of-speech ids are resolved with
+ * the dictionary used for the analysis.
+ *
+ * <p>
+ * The output starts with the magic bytes {@code SDCB}, a version byte and a
+ * flags byte. Each sentence is then written as its length in bytes followed by
+ * the number of morphemes, the UTF-8 text if stored, and the columns of the
+ * morphemes: the begin offsets as the zigzag encoded difference with the
+ * previous begin offset, the lengths, the word ids, the part-of-speech ids and
+ * a bitset of OOV flags. Integers are written as unsigned LEB128 varints, and
+ * offsets are in chars of the original text.
+ *
+ * <p>
+ * {@link SudachiCommandLine} writes the output of this formatter as bytes. The
+ * text representation of a morpheme shows the stored columns, for debugging.
+ */
+public class BinaryMorphemeFormatter extends MorphemeFormatterPlugin {
+    static final byte[] MAGIC = { 'S', 'D', 'C', 'B' };
+    static final byte VERSION = 1;
+    static final byte FLAG_TEXT = 1;
+
+    private boolean storeText = true;
+    private boolean headerWritten;
+    private byte[] record = new byte[256];
+    private int length;
+
+    @Override
+    public void setUp() throws IOException {
+        super.setUp();
+        storeText = settings.getBoolean("text", true);
+    }
+
+    /**
+     * Sets whether the original text of each sentence is stored.
+     *
+     * @param storeText
+     *            {@code true} to store the text
+     */
+    public void setStoreText(boolean storeText) {
+        this.storeText = storeText;
+    }
+
+    /**
+     * Returns the columns which are stored for a morpheme as text: the begin and
+     * end offsets, the word id, the part-of-speech id and {@code (OOV)} for OOV
+     * words, separated by tabs.
+     *
+     * @param morpheme
+     *            the input
+     * @return the text representation of the stored columns
+     */
+    @Override
+    public String formatMorpheme(Morpheme morpheme) {
+        StringBuilder output = new StringBuilder();
+        formatMorpheme(morpheme, output);
+        return output.toString();
+    }
+
+    @Override
+    public void formatMorpheme(Morpheme morpheme, StringBuilder output) {
+        output.append(morpheme.begin()).append('\t').append(morpheme.end());
+        output.append('\t').append(morpheme.getWordId()).append('\t').append(morpheme.partOfSpeechId());
+        output.append('\t').append(morpheme.isOOV() ? "(OOV)" : "");
+    }
+
+    @Override
+    public boolean isBinary() {
+        return true;
+    }
+
+    /**
+     * Writes the morphemes of a sentence. The header of the format is written
+     * before the first sentence.
+     *
+     * @param sentence
+     *            the morphemes of the sentence
+     * @param output
+     *            the output
+     * @throws IOException
+     *             if the output fails
+     */
+    @Override
+    public void writeSentence(MorphemeList sentence, OutputStream output) throws IOException {
+        if (!headerWritten) {
+            output.write(MAGIC);
+            output.write(VERSION);
+            output.write(storeText ? FLAG_TEXT : 0);
+            headerWritten = true;
+        }
+
+        length = 0;
+        int size = sentence.size();
+        writeVarint(size);
+        if (storeText) {
+            String originalText = sentence.inputText == null ? "" : sentence.inputText.getOriginalText();
+            byte[] text = originalText.getBytes(StandardCharsets.UTF_8);
+            writeVarint(text.length);
+            ensure(text.length);
+            System.arraycopy(text, 0, record, length, text.length);
+            length += text.length;
+        }
+        writeColumns(sentence);
+
+        int body = length;
+        writeVarint(body);
+        output.write(record, body, length - body);
+        output.write(record, 0, body);
+    }
+
+    private void writeColumns(MorphemeList morphemes) {
+        int size = morphemes.size();
+        int previousBegin = 0;
+        for (int i = 0; i < size; i++) {
+            writeVarint(zigzag(morphemes.getBegin(i) - previousBegin));
+            previousBegin = morphemes.getBegin(i);
+        }
+        for (int i = 0; i < size; i++) {
+            writeVarint(morphemes.getEnd(i) - morphemes.getBegin(i));
+        }
+        for (int i = 0; i < size; i++) {
+            writeVarint(morphemes.getWordId(i));
+        }
+        for (int i = 0; i < size; i++) {
+            writeVarint(morphemes.getPosId(i));
+        }
+        int flags = 0;
+        for (int i = 0; i < size; i++) {
+            if (morphemes.isOOV(i)) {
+                flags |= 1 << (i & 7);
+            }
+            if ((i & 7) == 7 || i == size - 1) {
+                writeByte(flags);
+                flags = 0;
+            }
+        }
+    }
+
+    private static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    private void writeVarint(int value) {
+        ensure(5);
+        while ((value & ~0x7F) != 0) {
+            record[length++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        record[length++] = (byte) value;
+    }
+
+    private void writeByte(int value) {
+        ensure(1);
+        record[length++] = (byte) value;
+    }
+
+    private void ensure(int size) {
+        if (length + size > record.length) {
+            record = Arrays.copyOf(record, Math.max(length + size, record.length * 2));
+        }
+    }
+}
@@ -0,0 +1,315 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * Reads the sentences written by {@link BinaryMorphemeFormatter}.
+ *
+ * <p>
+ * Each sentence is returned as a {@link Sentence}, which has the primitive
+ * accessors of {@link MorphemeList}. Part-of-speech ids and word ids are those
+ * of the dictionary used for the analysis, see
+ * {@link Dictionary#getPartOfSpeechString(short)}.
+ */
+public class BinaryMorphemeReader implements Iterator<BinaryMorphemeReader.Sentence>, Closeable {
+    private final DataInputStream input;
+    private final boolean hasText;
+    private byte[] record = new byte[256];
+    private int position;
+    private int limit;
+    private Sentence next;
+
+    /**
+     * Reads the header of the format. An empty input has no sentences.
+     *
+     * @param input
+     *            the output of {@link BinaryMorphemeFormatter}
+     * @throws IOException
+     *             if the input can't be read or is not in the format
+     */
+    public BinaryMorphemeReader(InputStream input) throws IOException {
+        this.input = new DataInputStream(new BufferedInputStream(input));
+        byte[] header = new byte[6];
+        int read = this.input.read(header);
+        if (read <= 0) {
+            hasText = false;
+            return;
+        }
+        this.input.readFully(header, read, header.length - read);
+        if (!Arrays.equals(Arrays.copyOf(header, 4), BinaryMorphemeFormatter.MAGIC)) {
+            throw new IOException("not an output of BinaryMorphemeFormatter");
+        }
+        if (header[4] != BinaryMorphemeFormatter.VERSION) {
+            throw new IOException("unsupported version: " + header[4]);
+        }
+        hasText = (header[5] & BinaryMorphemeFormatter.FLAG_TEXT) != 0;
+        next = readSentence();
+    }
+
+    /**
+     * Returns whether the sentences have their original text.
+     *
+     * @return {@code true} if the text was stored
+     */
+    public boolean hasText() {
+        return hasText;
+    }
+
+    @Override
+    public boolean hasNext() {
+        return next != null;
+    }
+
+    @Override
+    public Sentence next() {
+        if (next == null) {
+            throw new NoSuchElementException();
+        }
+        Sentence sentence = next;
+        try {
+            next = readSentence();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e.getMessage(), e);
+        }
+        return sentence;
+    }
+
+    @Override
+    public void close() throws IOException {
+        input.close();
+    }
+
+    private Sentence readSentence() throws IOException {
+        int first = input.read();
+        if (first < 0) {
+            return null;
+        }
+        int length = first & 0x7F;
+        for (int shift = 7; (first & 0x80) != 0; shift += 7) {
+            first = input.read();
+            if (first < 0 || shift > 28) {
+                throw brokenRecord();
+            }
+            length |= (first & 0x7F) << shift;
+        }
+        if (length < 0) {
+            throw brokenRecord();
+        }
+        if (record.length < length) {
+            record = new byte[Math.max(length, record.length * 2)];
+        }
+        try {
+            input.readFully(record, 0, length);
+        } catch (EOFException e) {
+            throw new IOException("broken sentence record", e);
+        }
+        position = 0;
+        limit = length;
+
+        int size = readLength();
+        String text = null;
+        if (hasText) {
+            int textLength = readLength();
+            text = new String(record, position, textLength, StandardCharsets.UTF_8);
+            position += textLength;
+        }
+        int[] begins = new int[size];
+        int[] ends = new int[size];
+        int[] wordIds = new int[size];
+        short[] posIds = new short[size];
+        byte[] oovFlags = new byte[(size + 7) / 8];
+        int begin = 0;
+        for (int i = 0; i < size; i++) {
+            int value = readVarint();
+            begin += (value >>> 1) ^ -(value & 1);
+            begins[i] = begin;
+        }
+        for (int i = 0; i < size; i++) {
+            ends[i] = begins[i] + readVarint();
+        }
+        for (int i = 0; i < size; i++) {
+            wordIds[i] = readVarint();
+        }
+        for (int i = 0; i < size; i++) {
+            posIds[i] = (short) readVarint();
+        }
+        if (position + oovFlags.length > length) {
+            throw brokenRecord();
+        }
+        System.arraycopy(record, position, oovFlags, 0, oovFlags.length);
+        return new Sentence(text, begins, ends, wordIds, posIds, oovFlags);
+    }
+
+    /**
+     * Reads a count of bytes or morphemes, which can't be larger than the rest of
+     * the record.
+     */
+    private int readLength() throws IOException {
+        int value = readVarint();
+        if (value < 0 || value > limit - position) {
+            throw brokenRecord();
+        }
+        return value;
+    }
+
+    private int readVarint() throws IOException {
+        int value = 0;
+        for (int shift = 0;; shift += 7) {
+            if (position >= limit || shift > 28) {
+                throw brokenRecord();
+            }
+            byte b = record[position++];
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static IOException brokenRecord() {
+        return new IOException("broken sentence record");
+    }
+
+    /**
+     * The morphemes of a sentence read by {@link BinaryMorphemeReader}.
+     */
+    public static final class Sentence {
+        private final String text;
+        private final int[] begins;
+        private final int[] ends;
+        private final int[] wordIds;
+        private final short[] posIds;
+        private final byte[] oovFlags;
+
+        Sentence(String text, int[] begins, int[] ends, int[] wordIds, short[] posIds, byte[] oovFlags) {
+            this.text = text;
+            this.begins = begins;
+            this.ends = ends;
+            this.wordIds = wordIds;
+            this.posIds = posIds;
+            this.oovFlags = oovFlags;
+        }
+
+        /**
+         * Returns the number of morphemes.
+         *
+         * @return the number of morphemes
+         */
+        public int size() {
+            return begins.length;
+        }
+
+        /**
+         * Returns the original text of the sentence.
+         *
+         * @return the original text, or {@code null} if it was not stored
+         */
+        public String getText() {
+            return text;
+        }
+
+        /**
+         * Returns the offset of the beginning of a morpheme in the original text.
+         *
+         * @param index
+         *            the index of the morpheme
+         * @return the offset of the beginning
+         * @see MorphemeList#getBegin(int)
+         */
+        public int getBegin(int index) {
+            return begins[index];
+        }
+
+        /**
+         * Returns the offset of the end of a morpheme in the original text.
+         *
+         * @param index
+         *            the index of the morpheme
+         * @return the offset of the end
+         * @see MorphemeList#getEnd(int)
+         */
+        public int getEnd(int index) {
+            return ends[index];
+        }
+
+        /**
+         * Returns the surface of a morpheme as a view of the original text.
+         *
+         * @param index
+         *            the index of the morpheme
+         * @return the surface of the morpheme
+         * @throws IllegalStateException
+         *             if the text was not stored
+         * @see MorphemeList#surfaceAsCharSequence(int)
+         */
+        public CharSequence surfaceAsCharSequence(int index) {
+            if (text == null) {
+                throw new IllegalStateException("the text of the sentence was not stored");
+            }
+            return CharBuffer.wrap(text, begins[index], ends[index]);
+        }
+
+        /**
+         * Returns the word ID of a morpheme.
+         *
+         * @param index
+         *            the index of the morpheme
+         * @return the word ID
+         * @see MorphemeList#getWordId(int)
+         */
+        public int getWordId(int index) {
+            return wordIds[index];
+        }
+
+        /**
+         * Returns the part-of-speech ID of a morpheme.
+         *
+         * @param index
+         *            the index of the morpheme
+         * @return the part-of-speech ID
+         * @see MorphemeList#getPosId(int)
+         */
+        public short getPosId(int index) {
+            return posIds[index];
+        }
+
+        /**
+         * Returns whether a morpheme is out of vocabulary.
+         *
+         * @param index
+         *            the index of the morpheme
+         * @return {@code true} if the morpheme is out of vocabulary
+         * @see MorphemeList#isOOV(int)
+         */
+        public boolean isOOV(int index) {
+            return (oovFlags[index >> 3] & (1 << (index & 7))) != 0;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package com.worksap.nlp.sudachi;
 
 import com.worksap.nlp.sudachi.dictionary.BinaryDictionary;
 import com.worksap.nlp.sudachi.dictionary.CharacterCategory;
+import com.worksap.nlp.sudachi.dictionary.DictionarySnapshot;
 
 import javax.json.Json;
 import javax.json.JsonArrayBuilder;
@@ -66,6 +67,8 @@ public class Config {
     private List<PluginConf<OovProviderPlugin>> oovProviders;
     private List<PluginConf<PathRewritePlugin>> pathRewrite;
     private Boolean allowEmptyMorpheme;
+    private WarmUp warmUp;
+    private Resource<DictionarySnapshot> snapshot;
     private PathAnchor anchor;
 
     private Config(PathAnchor anchor) {
@@ -330,6 +333,8 @@ public class Config {
         oovProviders = settings.getPlugins("oovProviderPlugin", OovProviderPlugin.class);
         pathRewrite = settings.getPlugins("pathRewritePlugin", PathRewritePlugin.class);
         allowEmptyMorpheme = settings.getBoolean("allowEmptyMorpheme", null);
+        warmUp = WarmUp.fromString(settings.getString("warmUp", null));
+        snapshot = settings.getResource("snapshot");
         anchor = anchor.andThen(settings.base);
 
         return this;
@@ -489,6 +494,37 @@ public class Config {
         return this;
     }
 
+    /**
+     * Sets a dictionary snapshot to load instead of setting up the dictionary. The
+     * snapshot itself will not be loaded, nor its existence will be checked.
+     * <p>
+     * When a snapshot is set, the system and user dictionaries, the character
+     * definition and EditConnectionCost plugins of this config are not used, the
+     * snapshot contains the result of them.
+     *
+     * @param path
+     *            Path to the snapshot file
+     * @return modified Config
+     * @see JapaneseDictionary#writeSnapshot(Path)
+     */
+    public Config snapshot(Path path) {
+        snapshot = new Resource.Filesystem<>(path);
+        return this;
+    }
+
+    /**
+     * Sets how the dictionary is warmed up after loading
+     *
+     * @param warmUp
+     *            warm-up mode
+     * @return modified Config
+     * @see WarmUp
+     */
+    public Config warmUp(WarmUp warmUp) {
+        this.warmUp = warmUp;
+        return this;
+    }
+
     /**
      * Adds one EditConnectionCostPlugin configuration
      *
@@ -603,6 +639,20 @@ public class Config {
         return allowEmptyMorpheme == null || allowEmptyMorpheme;
     }
 
+    /**
+     * @return dictionary snapshot resource, or {@code null} if it is not set
+     */
+    public Resource<DictionarySnapshot> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * @return how the dictionary is warmed up, {@link WarmUp#NONE} by default
+     */
+    public WarmUp getWarmUp() {
+        return warmUp == null ? WarmUp.NONE : warmUp;
+    }
+
     /**
      * Merges this Config with another Config. Compared to
      * {@link Settings#withFallback(Settings)}, merging is done for already resolved
@@ -628,6 +678,8 @@ public class Config {
         oovProviders = mergePluginList(oovProviders, other.oovProviders);
         pathRewrite = mergePluginList(pathRewrite, other.pathRewrite);
         allowEmptyMorpheme = mergeOne(allowEmptyMorpheme, other.allowEmptyMorpheme);
+        warmUp = mergeOne(warmUp, other.warmUp);
+        snapshot = mergeOne(snapshot, other.snapshot);
         anchor = anchor.andThen(other.anchor);
         return this;
     }
@@ -646,13 +698,14 @@ public class Config {
                 && Objects.equals(inputText, config.inputText) && Objects.equals(oovProviders, config.oovProviders)
                 && Objects.equals(pathRewrite, config.pathRewrite)
                 && Objects.equals(allowEmptyMorpheme, config.allowEmptyMorpheme)
+                && Objects.equals(warmUp, config.warmUp) && Objects.equals(snapshot, config.snapshot)
                 && Objects.equals(anchor, config.anchor);
     }
 
     @Override
     public int hashCode() {
         return Objects.hash(systemDictionary, userDictionary, characterDefinition, editConnectionCost, inputText,
-                oovProviders, pathRewrite, allowEmptyMorpheme, anchor);
+                oovProviders, pathRewrite, allowEmptyMorpheme, warmUp, snapshot, anchor);
     }
 
     /**
@@ -677,6 +730,48 @@ public class Config {
         return this;
     }
 
+    /**
+     * Warm-up of a dictionary after it is loaded.
+     * <p>
+     * Dictionary files are mapped into memory lazily, and the tokenizer code is
+     * interpreted until it is compiled by JIT, so the first requests to a freshly
+     * loaded dictionary are much slower than the later ones. Warm-up moves that
+     * cost into {@link DictionaryFactory#create(Config)}.
+     * <p>
+     * In the json configuration, the mode is set by the {@code warmUp} key with a
+     * lowercase value, e.g. {@code "warmUp": "pages"}.
+     */
+    public enum WarmUp {
+        /** No warm-up */
+        NONE,
+        /** Loads all pages of the mapped dictionaries into memory */
+        PAGES,
+        /** Tokenizes an embedded sample text to trigger JIT compilation */
+        TOKENIZER,
+        /** Both {@link #PAGES} and {@link #TOKENIZER} */
+        ALL;
+
+        static WarmUp fromString(String value) {
+            if (value == null) {
+                return null;
+            }
+            for (WarmUp mode : values()) {
+                if (mode.name().equalsIgnoreCase(value)) {
+                    return mode;
+                }
+            }
+            throw new IllegalArgumentException("unknown warm-up mode: " + value);
+        }
+
+        boolean touchesPages() {
+            return this == PAGES || this == ALL;
+        }
+
+        boolean runsTokenizer() {
+            return this == TOKENIZER || this == ALL;
+        }
+    }
+
     @FunctionalInterface
     public interface IOFunction<T, R> {
         R apply(T arg) throws IOException;
@@ -23,31 +23,60 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.function.Predicate;
+import java.util.logging.Logger;
 import java.util.stream.IntStream;
 
 public class JapaneseDictionary implements Dictionary, DictionaryAccess {
 
+    private static final Logger logger = Logger.getLogger(JapaneseDictionary.class.getName());
+    private static final String WARM_UP_TEXT = "warmup.txt";
+    private static final int WARM_UP_ROUNDS = 10;
+
     GrammarImpl grammar;
     LexiconSet lexicon;
     List<InputTextPlugin> inputTextPlugins;
     List<OovProviderPlugin> oovProviderPlugins;
     List<PathRewritePlugin> pathRewritePlugins;
     List<BinaryDictionary> dictionaries;
+    DictionarySnapshot snapshot;
     boolean allowEmptyMorpheme;
+    Duration warmUpTime = Duration.ZERO;
+    volatile Generation current;
+
+    /**
+     * The grammar and the lexicon which are used together. They are replaced as a
+     * whole, so that a tokenizer never reads the POS tags of one set of user
+     * dictionaries with the words of another one.
+     */
+    static final class Generation {
+        final GrammarImpl grammar;
+        final LexiconSet lexicon;
+
+        Generation(GrammarImpl grammar, LexiconSet lexicon) {
+            this.grammar = grammar;
+            this.lexicon = lexicon;
+        }
+    }
 
     JapaneseDictionary(Config config) throws IOException {
         dictionaries = new ArrayList<>();
-        setupSystemDictionary(config);
-        for (Config.PluginConf<EditConnectionCostPlugin> p : config.getEditConnectionCostPlugins()) {
-            EditConnectionCostPlugin instance = p.instantiate(config.getAnchor());
-            instance.setUp(grammar);
-            instance.edit(grammar);
+        if (config.getSnapshot() != null) {
+            setupSnapshot(config);
+        } else {
+            setupSystemDictionary(config);
+            for (Config.PluginConf<EditConnectionCostPlugin> p : config.getEditConnectionCostPlugins()) {
+                EditConnectionCostPlugin instance = p.instantiate(config.getAnchor());
+                instance.setUp(grammar);
+                instance.edit(grammar);
+            }
+            setupCharacterDefinition(config);
         }
-        setupCharacterDefinition(config);
         inputTextPlugins = new ArrayList<>();
         for (Config.PluginConf<InputTextPlugin> p : config.getInputTextPlugins()) {
             InputTextPlugin instance = p.instantiate(config.getAnchor());
@@ -69,9 +98,13 @@ public class JapaneseDictionary implements Dictionary, DictionaryAccess {
             instance.setUp(grammar);
             pathRewritePlugins.add(instance);
         }
-        setupUserDictionaries(config);
+        if (snapshot == null) {
+            setupUserDictionaries(config);
+        }
+        current = new Generation(grammar, lexicon);
 
         allowEmptyMorpheme = config.isAllowEmptyMorpheme();
+        warmUp(config.getWarmUp());
     }
 
     void setupSystemDictionary(Config config) throws IOException {
@@ -81,6 +114,13 @@ public class JapaneseDictionary implements Dictionary, DictionaryAccess {
         lexicon = new LexiconSet(dictionary.getLexicon(), grammar.getSystemPartOfSpeechSize());
     }
 
+    void setupSnapshot(Config config) throws IOException {
+        snapshot = DictionarySnapshot.load(config.getSnapshot());
+        dictionaries.addAll(snapshot.getDictionaries());
+        grammar = snapshot.getGrammar();
+        lexicon = snapshot.getLexicon();
+    }
+
     void setupUserDictionaries(Config config) throws IOException {
         for (Config.Resource<BinaryDictionary> userDic : config.getUserDictionaries()) {
             BinaryDictionary instance = BinaryDictionary.loadUser(userDic);
@@ -89,21 +129,154 @@ public class JapaneseDictionary implements Dictionary, DictionaryAccess {
     }
 
     void addUserDictionary(BinaryDictionary dictionary) {
+        addUserDictionary(grammar, lexicon, dictionary);
+        dictionaries.add(dictionary);
+    }
+
+    private void addUserDictionary(GrammarImpl grammar, LexiconSet lexicon, BinaryDictionary dictionary) {
         if (lexicon.isFull()) {
             throw new IllegalArgumentException("too many dictionaries");
         }
 
-        dictionaries.add(dictionary);
-
         DoubleArrayLexicon userLexicon = dictionary.getLexicon();
-        Tokenizer tokenizer = new JapaneseTokenizer(grammar, lexicon, inputTextPlugins, oovProviderPlugins,
-                Collections.emptyList());
-        userLexicon.calculateCost(tokenizer);
+        userLexicon.calculateCost(() -> new JapaneseTokenizer(grammar, lexicon, inputTextPlugins, oovProviderPlugins,
+                Collections.emptyList()), Runtime.getRuntime().availableProcessors());
 
         lexicon.add(userLexicon, (short) grammar.getPartOfSpeechSize());
         grammar.addPosList(dictionary.getGrammar());
     }
 
+    /**
+     * Replaces the user dictionaries of this dictionary without recreating it.
+     *
+     * <p>
+     * The new grammar and lexicon are set up aside, including the calculation of
+     * missing word costs, and are published at once. Tokenizers created by this
+     * dictionary switch to them at their next tokenization call. Morpheme lists
+     * produced before keep using the dictionaries they were produced with.
+     *
+     * <p>
+     * The replaced user dictionaries are not closed, because morpheme lists may
+     * still read them. Their memory is released by the garbage collector when
+     * nothing refers to them anymore. {@link PosMatcher}s created before the
+     * replacement do not know the POS tags of the new user dictionaries.
+     *
+     * @param userDictionaries
+     *            the new user dictionaries, in the same order as they would be
+     *            given in the configuration. A dictionary which is used now may
+     *            be passed again only at the same position.
+     * @throws IllegalArgumentException
+     *             if there are too many dictionaries, or a dictionary is not a
+     *             user dictionary or is already used at another position
+     * @throws IllegalStateException
+     *             if plugins registered POS tags after the ones of the user
+     *             dictionaries of a snapshot
+     */
+    public synchronized void replaceUserDictionaries(List<BinaryDictionary> userDictionaries) {
+        Generation previous = generation();
+        for (int i = 0; i < userDictionaries.size(); ++i) {
+            BinaryDictionary dictionary = userDictionaries.get(i);
+            if (!dictionary.getDictionaryHeader().isUserDictionary()) {
+                throw new IllegalArgumentException("dictionary " + i + " is not a user dictionary");
+            }
+            int used = dictionaries.indexOf(dictionary);
+            if (used >= 0 && used != i + 1) {
+                throw new IllegalArgumentException("dictionary " + i + " is already used at another position");
+            }
+        }
+
+        BinaryDictionary system = dictionaries.get(0);
+        // keep the POS tags registered by plugins, they are placed before the ones of
+        // user dictionaries and plugins refer to them by id
+        int posSize = previous.grammar.getPartOfSpeechSize();
+        int keptPosSize = posSize;
+        int lastUser = dictionaries.size() - 1;
+        if (lastUser > 0) {
+            keptPosSize = previous.lexicon.getPosOffset(1);
+            int userPosEnd = previous.lexicon.getPosOffset(lastUser)
+                    + dictionaries.get(lastUser).getGrammar().getPartOfSpeechSize();
+            if (userPosEnd != posSize) {
+                throw new IllegalStateException("POS tags registered after user dictionaries can't be kept");
+            }
+        }
+        GrammarImpl newGrammar = previous.grammar.withFirstPos(keptPosSize);
+        LexiconSet newLexicon = new LexiconSet(system.getLexicon(), newGrammar.getSystemPartOfSpeechSize());
+        for (BinaryDictionary dictionary : userDictionaries) {
+            addUserDictionary(newGrammar, newLexicon, dictionary);
+        }
+
+        List<BinaryDictionary> newDictionaries = new ArrayList<>(userDictionaries.size() + 1);
+        newDictionaries.add(system);
+        newDictionaries.addAll(userDictionaries);
+        dictionaries = newDictionaries;
+        grammar = newGrammar;
+        lexicon = newLexicon;
+        current = new Generation(newGrammar, newLexicon);
+    }
+
+    Generation generation() {
+        Generation generation = current;
+        if (generation == null) {
+            throw new IllegalStateException("trying to use closed dictionary");
+        }
+        return generation;
+    }
+
+    void warmUp(Config.WarmUp mode) throws IOException {
+        if (mode == Config.WarmUp.NONE) {
+            return;
+        }
+        long start = System.nanoTime();
+        if (mode.touchesPages()) {
+            for (BinaryDictionary dictionary : dictionaries) {
+                dictionary.prefault();
+            }
+        }
+        if (mode.runsTokenizer()) {
+            List<String> sentences = readWarmUpText();
+            Tokenizer tokenizer = create();
+            for (int round = 0; round < WARM_UP_ROUNDS; ++round) {
+                for (String sentence : sentences) {
+                    for (Tokenizer.SplitMode splitMode : Tokenizer.SplitMode.values()) {
+                        for (Morpheme morpheme : tokenizer.tokenize(splitMode, sentence)) {
+                            morpheme.partOfSpeech();
+                            morpheme.readingForm();
+                        }
+                    }
+                }
+            }
+        }
+        warmUpTime = Duration.ofNanos(System.nanoTime() - start);
+        logger.info(() -> String.format("dictionary warm-up (%s) took %d ms", mode, warmUpTime.toMillis()));
+    }
+
+    private static List<String> readWarmUpText() throws IOException {
+        List<String> sentences = new ArrayList<>();
+        try (InputStream input = JapaneseDictionary.class.getResourceAsStream(WARM_UP_TEXT)) {
+            if (input == null) {
+                throw new IOException("warm-up text is not found: " + WARM_UP_TEXT);
+            }
+            BufferedReader reader = new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8));
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.isEmpty()) {
+                    sentences.add(line);
+                }
+            }
+        }
+        return sentences;
+    }
+
+    /**
+     * Returns the time spent on the warm-up of this dictionary.
+     *
+     * @return the duration of the warm-up, or zero if it was not enabled
+     * @see Config#warmUp(Config.WarmUp)
+     */
+    public Duration getWarmUpTime() {
+        return warmUpTime;
+    }
+
     void setupCharacterDefinition(Config config) throws IOException {
         if (grammar == null) {
             return;
@@ -117,23 +290,45 @@ public class JapaneseDictionary implements Dictionary, DictionaryAccess {
     }
 
     @Override
-    public void close() throws IOException {
+    public synchronized void close() throws IOException {
+        current = null;
         grammar.invalidate();
         grammar = null;
         lexicon.invalidate();
         lexicon = null;
         for (BinaryDictionary dictionary : dictionaries) {
-            dictionary.close();
+            if (snapshot == null || !snapshot.getDictionaries().contains(dictionary)) {
+                dictionary.close();
+            }
         }
+        if (snapshot != null) {
+            snapshot.close();
+        }
+    }
+
+    /**
+     * Writes the current state of this dictionary to a snapshot file. The snapshot
+     * can be loaded with {@link Config#snapshot(Path)} much faster than setting up
+     * the dictionary from the configuration, and it is shared between processes
+     * through the page cache.
+     *
+     * @param path
+     *            the file to write to
+     * @throws IOException
+     *             when IO fails
+     * @see DictionarySnapshot
+     */
+    public synchronized void writeSnapshot(Path path) throws IOException {
+        Generation generation = generation();
+        DictionarySnapshot.write(generation.grammar, generation.lexicon, dictionaries, path);
     }
 
     @Override
     public Tokenizer create() {
-        if (grammar == null || lexicon == null) {
-            throw new IllegalStateException("trying to use closed dictionary");
-        }
-        JapaneseTokenizer tokenizer = new JapaneseTokenizer(grammar, lexicon, inputTextPlugins, oovProviderPlugins,
-                pathRewritePlugins);
+        Generation generation = generation();
+        JapaneseTokenizer tokenizer = new JapaneseTokenizer(generation.grammar, generation.lexicon, inputTextPlugins,
+                oovProviderPlugins, pathRewritePlugins);
+        tokenizer.dictionary = this;
         if (!allowEmptyMorpheme) {
             tokenizer.disableEmptyMorpheme();
         }
@@ -142,12 +337,12 @@ public class JapaneseDictionary implements Dictionary, DictionaryAccess {
 
     @Override
     public int getPartOfSpeechSize() {
-        return grammar.getPartOfSpeechSize();
+        return getGrammar().getPartOfSpeechSize();
     }
 
     @Override
     public List<String> getPartOfSpeechString(short posId) {
-        return grammar.getPartOfSpeechString(posId);
+        return getGrammar().getPartOfSpeechString(posId);
     }
 
     static String readAll(InputStream input) throws IOException {
@@ -166,11 +361,13 @@ public class JapaneseDictionary implements Dictionary, DictionaryAccess {
     }
 
     public GrammarImpl getGrammar() {
-        return grammar;
+        Generation generation = current;
+        return generation == null ? null : generation.grammar;
     }
 
     public LexiconSet getLexicon() {
-        return lexicon;
+        Generation generation = current;
+        return generation == null ? null : generation.lexicon;
     }
 
     @Override
@@ -181,4 +378,26 @@ public class JapaneseDictionary implements Dictionary, DictionaryAccess {
                 .toArray();
         return new PosMatcher(ids, this);
     }
+
+    @Override
+    public PosMatcher posMatcher(Iterable<PartialPOS> posList) {
+        GrammarImpl grammar = getGrammar();
+        List<int[]> patterns = new ArrayList<>();
+        for (PartialPOS partial : posList) {
+            int[] pattern = partial.componentIds(grammar);
+            if (pattern != null) {
+                patterns.add(pattern);
+            }
+        }
+        int numPos = grammar.getPartOfSpeechSize();
+        int[] ids = IntStream.range(0, numPos).filter(id -> {
+            for (int[] pattern : patterns) {
+                if (PartialPOS.matches(pattern, grammar, (short) id)) {
+                    return true;
+                }
+            }
+            return false;
+        }).toArray();
+        return new PosMatcher(ids, this);
+    }
 }
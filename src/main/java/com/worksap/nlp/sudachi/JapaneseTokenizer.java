@@ -42,9 +42,11 @@ class JapaneseTokenizer implements Tokenizer {
     List<OovProviderPlugin> oovProviderPlugins;
     List<PathRewritePlugin> pathRewritePlugins;
     OovProviderPlugin defaultOovProvider;
+    OovSpans[] oovSpans;
     PrintStream dumpOutput;
     JsonObjectBuilder jsonBuilder;
     boolean allowEmptyMorpheme;
+    JapaneseDictionary dictionary;
 
     LatticeImpl lattice;
 
@@ -62,6 +64,10 @@ class JapaneseTokenizer implements Tokenizer {
         if (!oovProviderPlugins.isEmpty()) {
             defaultOovProvider = oovProviderPlugins.get(oovProviderPlugins.size() - 1);
         }
+        oovSpans = new OovSpans[oovProviderPlugins.size()];
+        for (int i = 0; i < oovSpans.length; i++) {
+            oovSpans[i] = oovProviderPlugins.get(i).createSpans();
+        }
     }
 
     @Override
@@ -69,6 +75,7 @@ class JapaneseTokenizer implements Tokenizer {
         if (text.isEmpty()) {
             return MorphemeList.EMPTY;
         }
+        followDictionary();
         UTF8InputText input = buildInputText(text);
         return tokenizeSentence(mode, input);
     }
@@ -78,6 +85,7 @@ class JapaneseTokenizer implements Tokenizer {
         if (text.isEmpty()) {
             return Collections.emptyList();
         }
+        followDictionary();
 
         SentenceSplittingAnalysis analysis = new SentenceSplittingAnalysis(mode, this);
         int length = analysis.tokenizeBuffer(text);
@@ -99,6 +107,7 @@ class JapaneseTokenizer implements Tokenizer {
 
     @Override
     public Iterable<MorphemeList> tokenizeSentences(SplitMode mode, Reader reader) throws IOException {
+        followDictionary();
         IOTools.SurrogateAwareReadable wrappedReader = new IOTools.SurrogateAwareReadable(reader);
         CharBuffer buffer = CharBuffer.allocate(SentenceDetector.DEFAULT_LIMIT);
         SentenceSplittingAnalysis analysis = new SentenceSplittingAnalysis(mode, this);
@@ -123,6 +132,7 @@ class JapaneseTokenizer implements Tokenizer {
 
     @Override
     public Iterator<List<Morpheme>> lazyTokenizeSentences(SplitMode mode, Readable readable) {
+        followDictionary();
         return new SentenceSplittingLazyAnalysis(mode, this, readable);
     }
 
@@ -208,6 +218,11 @@ class JapaneseTokenizer implements Tokenizer {
         byte[] bytes = input.getByteText();
         lattice.resize(bytes.length);
         ArrayList<LatticeNodeImpl> unkNodes = new ArrayList<>(64);
+        for (int i = 0; i < oovSpans.length; i++) {
+            if (oovSpans[i] != null) {
+                oovSpans[i].fill(input);
+            }
+        }
         WordLookup wordLookup = lexicon.makeLookup();
         for (int byteBoundary = 0; byteBoundary < bytes.length; byteBoundary++) {
             if (!input.canBow(byteBoundary) || !lattice.hasPreviousNode(byteBoundary)) {
@@ -235,12 +250,12 @@ class JapaneseTokenizer implements Tokenizer {
 
             // OOV
             if (!input.getCharCategoryTypes(byteBoundary).contains(CategoryType.NOOOVBOW)) {
-                for (OovProviderPlugin plugin : oovProviderPlugins) {
-                    wordMaskWithOov = provideOovs(plugin, input, unkNodes, byteBoundary, wordMaskWithOov);
+                for (int i = 0; i < oovSpans.length; i++) {
+                    wordMaskWithOov = provideOovs(i, input, unkNodes, byteBoundary, wordMaskWithOov);
                 }
             }
             if (wordMaskWithOov == 0 && defaultOovProvider != null) {
-                wordMaskWithOov = provideOovs(defaultOovProvider, input, unkNodes, byteBoundary, wordMaskWithOov);
+                wordMaskWithOov = provideOovs(oovSpans.length - 1, input, unkNodes, byteBoundary, wordMaskWithOov);
             }
             if (wordMaskWithOov == 0) {
                 throw new IllegalStateException("failed to found any morpheme candidate at boundary " + byteBoundary);
@@ -251,8 +266,13 @@ class JapaneseTokenizer implements Tokenizer {
         return lattice;
     }
 
-    private long provideOovs(OovProviderPlugin plugin, UTF8InputText input, ArrayList<LatticeNodeImpl> unkNodes,
-            int boundary, long wordMask) {
+    private long provideOovs(int index, UTF8InputText input, ArrayList<LatticeNodeImpl> unkNodes, int boundary,
+            long wordMask) {
+        OovSpans spans = oovSpans[index];
+        if (spans != null) {
+            return insertOovs(spans, input, unkNodes, boundary, wordMask);
+        }
+        OovProviderPlugin plugin = oovProviderPlugins.get(index);
         int initialSize = unkNodes.size();
         int created = plugin.getOOV(input, boundary, wordMask, unkNodes);
         if (created == 0) {
@@ -266,6 +286,35 @@ class JapaneseTokenizer implements Tokenizer {
         return wordMask;
     }
 
+    private long insertOovs(OovSpans spans, UTF8InputText input, ArrayList<LatticeNodeImpl> unkNodes, int boundary,
+            long wordMask) {
+        for (int i = spans.first(boundary); i < spans.first(boundary + 1); i++) {
+            int end = spans.end(i);
+            int length = end - boundary;
+            if (WordMask.hasNth(wordMask, length) && hasNodeEndingAt(unkNodes, length, end)) {
+                continue;
+            }
+            LatticeNodeImpl node = spans.createNode(i, boundary, input);
+            lattice.insert(boundary, end, node);
+            unkNodes.add(node);
+            wordMask = WordMask.addNth(wordMask, length);
+        }
+        return wordMask;
+    }
+
+    static boolean hasNodeEndingAt(List<LatticeNodeImpl> nodes, int length, int end) {
+        if (length <= WordMask.MAX_LENGTH) {
+            return true;
+        }
+        // the mask can't tell lengths longer than 63 bytes
+        for (LatticeNodeImpl node : nodes) {
+            if (node.end == end) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private List<LatticeNode> splitPath(List<LatticeNode> path, SplitMode mode) {
         List<LatticeNode> newPath = new ArrayList<>();
         for (LatticeNode node : path) {
@@ -295,8 +344,25 @@ class JapaneseTokenizer implements Tokenizer {
         allowEmptyMorpheme = false;
     }
 
+    /**
+     * Switches to the current grammar and lexicon of the dictionary which created
+     * this tokenizer, if its user dictionaries were replaced since the last call.
+     */
+    void followDictionary() {
+        if (dictionary == null) {
+            return;
+        }
+        JapaneseDictionary.Generation generation = dictionary.current;
+        if (generation == null || generation.lexicon == lexicon) {
+            return;
+        }
+        grammar = generation.grammar;
+        lexicon = generation.lexicon;
+        lattice = new LatticeImpl(grammar);
+    }
+
     void checkIfAlive() {
-        if (lexicon.isValid() && grammar.isValid()) {
+        if (lexicon.isValid() && grammar.isValid() && (dictionary == null || dictionary.current != null)) {
             return;
         }
         throw new IllegalStateException("dictionary was closed prior to tokenization");
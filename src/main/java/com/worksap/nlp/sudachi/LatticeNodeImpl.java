@@ -17,12 +17,26 @@
 package com.worksap.nlp.sudachi;
 
 import com.worksap.nlp.sudachi.dictionary.Lexicon;
+import com.worksap.nlp.sudachi.dictionary.LexiconSet;
 import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
 import java.util.List;
 
 public class LatticeNodeImpl implements LatticeNode {
 
+    /**
+     * Creates the word information of OOV nodes when it is first requested.
+     *
+     * <p>
+     * OOV providers which create many candidates per boundary can record only the
+     * template of a node with {@link #setOOVTemplate}, so that surfaces and
+     * {@link WordInfo} are built only for nodes which are actually used, typically
+     * the ones of the best path.
+     */
+    interface OovFactory {
+        WordInfo createWordInfo(InputText text, int begin, int end, int template);
+    }
+
     int begin;
     int end;
 
@@ -39,6 +53,9 @@ public class LatticeNodeImpl implements LatticeNode {
     boolean isDefined;
     boolean isOOV;
     WordInfo extraWordInfo;
+    OovFactory oovFactory;
+    InputText oovText;
+    int oovTemplate;
 
     Lexicon lexicon;
 
@@ -101,12 +118,52 @@ public class LatticeNodeImpl implements LatticeNode {
         if (extraWordInfo != null) {
             return extraWordInfo;
         }
+        if (oovFactory != null) {
+            extraWordInfo = oovFactory.createWordInfo(oovText, begin, end, oovTemplate);
+            oovFactory = null;
+            oovText = null;
+            return extraWordInfo;
+        }
         return lexicon.getWordInfo(wordId);
     }
 
+    /**
+     * Returns the part-of-speech ID of this node without decoding the word
+     * information of dictionary words.
+     *
+     * @return the part-of-speech ID
+     */
+    short getPOSId() {
+        if (!isDefined || extraWordInfo != null || oovFactory != null) {
+            return getWordInfo().getPOSId();
+        }
+        return lexicon.getPOSId(wordId);
+    }
+
     @Override
     public void setWordInfo(WordInfo wordInfo) {
         extraWordInfo = wordInfo;
+        oovFactory = null;
+        oovText = null;
+        isDefined = true;
+    }
+
+    /**
+     * Makes the word information of this node to be created by the factory on
+     * first use. The range of the node must be set before.
+     *
+     * @param factory
+     *            the factory of the word information
+     * @param text
+     *            the input text which contains the node
+     * @param template
+     *            the index of the template which is passed to the factory
+     */
+    void setOOVTemplate(OovFactory factory, InputText text, int template) {
+        extraWordInfo = null;
+        oovFactory = factory;
+        oovText = text;
+        oovTemplate = template;
         isDefined = true;
     }
 
@@ -122,9 +179,12 @@ public class LatticeNodeImpl implements LatticeNode {
 
     @Override
     public int getDictionaryId() {
-        if (!isDefined || extraWordInfo != null) {
+        if (!isDefined || extraWordInfo != null || oovFactory != null) {
             return -1;
         }
+        if (lexicon instanceof LexiconSet) {
+            return ((LexiconSet) lexicon).dictionaryOf(wordId);
+        }
         return WordId.dic(wordId);
     }
 
@@ -139,7 +199,10 @@ public class LatticeNodeImpl implements LatticeNode {
     }
 
     /* internal */ void appendSplitsTo(List<LatticeNode> result, Tokenizer.SplitMode mode) {
-        if (mode == Tokenizer.SplitMode.A) {
+        if (mode != Tokenizer.SplitMode.C && isDefined && extraWordInfo == null && oovFactory == null
+                && lexicon instanceof LexiconSet) {
+            appendCachedSplitsTo(result, ((LexiconSet) lexicon).getSplitWithLengths(wordId, mode));
+        } else if (mode == Tokenizer.SplitMode.A) {
             appendSplitsTo(result, getWordInfo().getAunitSplit());
         } else if (mode == Tokenizer.SplitMode.B) {
             appendSplitsTo(result, getWordInfo().getBunitSplit());
@@ -148,6 +211,30 @@ public class LatticeNodeImpl implements LatticeNode {
         }
     }
 
+    private void appendCachedSplitsTo(List<LatticeNode> result, int[] split) {
+        if (split.length <= 3) {
+            if (split.length == 1 || split[1] == wordId) {
+                result.add(this);
+            } else {
+                LatticeNodeImpl node = new LatticeNodeImpl(lexicon, ZERO, ZERO, ZERO, split[1]);
+                node.begin = begin;
+                node.end = end;
+                node.totalCost = totalCost;
+                result.add(node);
+            }
+            return;
+        }
+
+        int offset = getBegin();
+        for (int i = 1; i < split.length; i += 2) {
+            LatticeNodeImpl n = new LatticeNodeImpl(lexicon, ZERO, ZERO, ZERO, split[i]);
+            n.begin = offset;
+            offset += split[i + 1];
+            n.end = offset;
+            result.add(n);
+        }
+    }
+
     private void appendSplitsTo(List<LatticeNode> result, int[] splitsId) {
         if (splitsId.length == 0) {
             result.add(this);
@@ -1,5 +1,5 @@
 /*
- * Copyright (c) 2017-2022 Works Applications Co., Ltd.
+ * Copyright (c) 2017-2024 Works Applications Co., Ltd.
  *
  * Licensed under the Apache License, Version 2.0 (the "License");
  * you may not use this file except in compliance with the License.
@@ -24,6 +24,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.file.Path;
 import java.nio.file.Paths;
@@ -33,9 +34,15 @@ import java.util.Objects;
  * Mmap functions
  *
  * <p>
- * This class provides mmap() and munmap().
+ * This class provides mmap() and munmap(). Files larger than 2GB can be mapped
+ * with {@link MappedSegments}.
  */
 public class MMap {
+    /** The smallest common page size, larger pages are touched several times */
+    private static final int PAGE_SIZE = 4096;
+    /** Keeps the reads of {@link #prefault} from being removed */
+    @SuppressWarnings("unused")
+    private static volatile byte prefaultSink;
 
     private MMap() {
     }
@@ -66,18 +73,54 @@ public class MMap {
         try (FileChannel fc = FileChannel.open(path)) {
             long size = fc.size();
             if (size > Integer.MAX_VALUE) {
-                throw new IOException("impossible to map more than 2GB");
+                throw new IOException("impossible to map more than 2GB, use MappedSegments instead");
             }
-            ByteBuffer buffer = fc.map(FileChannel.MapMode.READ_ONLY, 0, size);
-            buffer.order(ByteOrder.LITTLE_ENDIAN);
-            return buffer;
+            return map(fc, 0, size);
         }
     }
 
+    static ByteBuffer map(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        return buffer;
+    }
+
+    /**
+     * Loads the content of the mapped buffer into the physical memory.
+     *
+     * <p>
+     * This touches every page of the buffer, so the following accesses do not
+     * cause page faults unless the pages are evicted by the OS. Slices of a mapped
+     * buffer can be passed too. If the buffer is not a mapped file, this method
+     * does nothing.
+     *
+     * @param buffer
+     *            the mapped byte buffer to load
+     */
+    public static void prefault(ByteBuffer buffer) {
+        // MappedByteBuffer.load() fails on slices in Java 8, so the pages are read
+        // one by one
+        if (!(buffer instanceof MappedByteBuffer)) {
+            return;
+        }
+        int limit = buffer.limit();
+        if (limit == 0) {
+            return;
+        }
+        byte sum = 0;
+        for (int i = 0; i < limit; i += PAGE_SIZE) {
+            sum += buffer.get(i);
+        }
+        sum += buffer.get(limit - 1);
+        prefaultSink = sum;
+    }
+
     /**
      * Unmaps the region of the buffer.
      *
-     * If the buffer is not a mapped file, this method do nothing.
+     * If the buffer is not a mapped file, this method do nothing. Slices and
+     * duplicates of a mapped buffer are not unmapped either; the buffer they were
+     * created from must be unmapped instead.
      * 
      * @param buffer
      *            the mapped byte buffer to ummap
@@ -138,6 +181,8 @@ public class MMap {
         if (unmapper != null && unmappableBufferClass.isInstance(buffer)) {
             try {
                 unmapper.invokeExact(buffer);
+            } catch (IllegalArgumentException e) {
+                // the buffer is a slice or a duplicate, it is unmapped by its owner
             } catch (Throwable e) {
                 throw new IOException("can not destroy direct buffer " + buffer, e);
             }
@@ -0,0 +1,299 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A read-only file mapped into memory as a sequence of segments.
+ *
+ * <p>
+ * A single {@link java.nio.MappedByteBuffer} can not be larger than 2GB, so
+ * {@link MMap#map(Path)} refuses larger files. This class maps a file of any
+ * size as consecutive segments and addresses it with {@code long} offsets.
+ * Binary dictionaries use {@code int} offsets internally, so each of them must
+ * still fit into 2GB, but several dictionaries can be stored in a single large
+ * file and loaded from it with {@link #slice(long, long)}:
+ *
+ * <pre>
+ * {@code
+ * MappedSegments file = MappedSegments.map(path);
+ * BinaryDictionary system = BinaryDictionary.loadSystem(file.slice(0, systemSize));
+ * BinaryDictionary user = BinaryDictionary.loadUser(file.slice(systemSize, userSize));
+ * }
+ * </pre>
+ *
+ * <p>
+ * Buffers returned by {@link #slice(long, long)} are owned by this object and
+ * become invalid after {@link #close()}.
+ */
+public final class MappedSegments implements Closeable {
+    /** The default size of a segment, 1GB */
+    public static final long DEFAULT_SEGMENT_SIZE = 1L << 30;
+
+    private final FileChannel channel;
+    private final long size;
+    private final long segmentSize;
+    private final ByteBuffer[] segments;
+    private final List<ByteBuffer> regions = new ArrayList<>();
+
+    private MappedSegments(FileChannel channel, long segmentSize) throws IOException {
+        this.channel = channel;
+        this.size = channel.size();
+        this.segmentSize = segmentSize;
+        int count = (int) ((size + segmentSize - 1) / segmentSize);
+        segments = new ByteBuffer[count];
+        for (int i = 0; i < count; ++i) {
+            long position = i * segmentSize;
+            segments[i] = MMap.map(channel, position, Math.min(segmentSize, size - position));
+        }
+    }
+
+    /**
+     * Maps a file into the memory with the default segment size.
+     *
+     * @param path
+     *            {@link Path} to the file
+     * @return the mapped file
+     * @throws IOException
+     *             when IO fails
+     */
+    public static MappedSegments map(Path path) throws IOException {
+        return map(path, DEFAULT_SEGMENT_SIZE, false);
+    }
+
+    /**
+     * Maps a file into the memory.
+     *
+     * <p>
+     * If {@code prefault} is {@code true}, all pages of the file are loaded into
+     * the physical memory before returning, so the first accesses do not cause
+     * page faults. See {@link MMap#prefault(ByteBuffer)}.
+     *
+     * @param path
+     *            {@link Path} to the file
+     * @param segmentSize
+     *            the size of each segment in bytes, must be positive and not
+     *            larger than {@link Integer#MAX_VALUE}
+     * @param prefault
+     *            whether to load the file into memory eagerly
+     * @return the mapped file
+     * @throws IOException
+     *             when IO fails
+     * @throws IllegalArgumentException
+     *             if {@code segmentSize} is out of range
+     */
+    public static MappedSegments map(Path path, long segmentSize, boolean prefault) throws IOException {
+        if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("segment size must be in (0, 2GB): " + segmentSize);
+        }
+        FileChannel channel = FileChannel.open(path);
+        try {
+            MappedSegments mapped = new MappedSegments(channel, segmentSize);
+            if (prefault) {
+                mapped.prefault();
+            }
+            return mapped;
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns the size of the mapped file.
+     *
+     * @return the size in bytes
+     */
+    public long size() {
+        return size;
+    }
+
+    /**
+     * Returns the number of segments.
+     *
+     * @return the number of segments
+     */
+    public int segmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Returns a read-only view of a segment. The view is in little endian order and
+     * starts at the offset {@code index * segmentSize} of the file.
+     *
+     * @param index
+     *            the index of the segment
+     * @return the view of the segment
+     */
+    public ByteBuffer segment(int index) {
+        return segments[index].asReadOnlyBuffer().order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Reads a byte at the given offset.
+     *
+     * @param offset
+     *            the offset in the file
+     * @return the byte value
+     */
+    public byte get(long offset) {
+        checkRange(offset, 1);
+        return segments[(int) (offset / segmentSize)].get((int) (offset % segmentSize));
+    }
+
+    /**
+     * Reads a little endian short at the given offset.
+     *
+     * @param offset
+     *            the offset in the file
+     * @return the short value
+     */
+    public short getShort(long offset) {
+        return (short) read(offset, 2);
+    }
+
+    /**
+     * Reads a little endian int at the given offset.
+     *
+     * @param offset
+     *            the offset in the file
+     * @return the int value
+     */
+    public int getInt(long offset) {
+        return (int) read(offset, 4);
+    }
+
+    /**
+     * Reads a little endian long at the given offset.
+     *
+     * @param offset
+     *            the offset in the file
+     * @return the long value
+     */
+    public long getLong(long offset) {
+        return read(offset, 8);
+    }
+
+    private long read(long offset, int width) {
+        checkRange(offset, width);
+        ByteBuffer segment = segments[(int) (offset / segmentSize)];
+        int position = (int) (offset % segmentSize);
+        if (position + width <= segment.limit()) {
+            switch (width) {
+            case 2:
+                return segment.getShort(position);
+            case 4:
+                return segment.getInt(position);
+            default:
+                return segment.getLong(position);
+            }
+        }
+        // the value crosses the boundary of segments
+        long value = 0;
+        for (int i = width - 1; i >= 0; --i) {
+            value = (value << 8) | (get(offset + i) & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * Returns a little endian buffer over a region of the file.
+     *
+     * <p>
+     * If the region is contained in a single segment, the returned buffer is a
+     * slice of it. Otherwise the region is mapped separately; such mappings are
+     * released by {@link #close()}. No data is copied in either case.
+     *
+     * @param offset
+     *            the beginning of the region
+     * @param length
+     *            the length of the region, not larger than
+     *            {@link Integer#MAX_VALUE}
+     * @return the buffer over the region
+     * @throws IOException
+     *             when mapping the region fails
+     * @throws IllegalArgumentException
+     *             if the region is out of the file
+     */
+    public ByteBuffer slice(long offset, long length) throws IOException {
+        if (length > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("impossible to slice more than 2GB");
+        }
+        checkRange(offset, length);
+        int index = (int) (offset / segmentSize);
+        int position = (int) (offset % segmentSize);
+        if (index < segments.length && position + length <= segments[index].limit()) {
+            ByteBuffer view = segments[index].duplicate();
+            view.position(position);
+            view.limit(position + (int) length);
+            return view.slice().order(ByteOrder.LITTLE_ENDIAN);
+        }
+        ByteBuffer region = MMap.map(channel, offset, length);
+        synchronized (regions) {
+            regions.add(region);
+        }
+        return region;
+    }
+
+    /**
+     * Loads all segments into the physical memory.
+     */
+    public void prefault() {
+        for (ByteBuffer segment : segments) {
+            MMap.prefault(segment);
+        }
+    }
+
+    private void checkRange(long offset, long length) {
+        if (offset < 0 || length < 0 || offset + length > size) {
+            throw new IllegalArgumentException(
+                    String.format("region [%d, %d) is out of the file of size %d", offset, offset + length, size));
+        }
+    }
+
+    /**
+     * Unmaps all segments and regions. Buffers obtained from this object must not
+     * be used after calling this method.
+     *
+     * @throws IOException
+     *             if unmapping fails
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            for (ByteBuffer segment : segments) {
+                MMap.unmap(segment);
+            }
+            synchronized (regions) {
+                for (ByteBuffer region : regions) {
+                    MMap.unmap(region);
+                }
+                regions.clear();
+            }
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -71,6 +71,7 @@ class MeCabOovProviderPlugin extends OovProviderPlugin {
 
     Map<CategoryType, CategoryInfo> categories = new EnumMap<>(CategoryType.class);
     Map<CategoryType, List<OOV>> oovList = new EnumMap<>(CategoryType.class);
+    private volatile Templates templates;
 
     @Override
     public void setUp(Grammar grammar) throws IOException {
@@ -78,55 +79,115 @@ class MeCabOovProviderPlugin extends OovProviderPlugin {
         readCharacterProperty(charDef);
         Config.Resource<Object> unkDef = settings.getResource("unkDef");
         readOOV(unkDef, grammar, settings.getString(USER_POS, USER_POS_FORBID));
+        templates = new Templates(categories, oovList);
     }
 
     @Override
     public int provideOOV(InputText inputText, int offset, long otherWords, List<LatticeNodeImpl> nodes) {
         int length = inputText.getCharCategoryContinuousLength(offset);
+        if (length <= 0) {
+            return 0;
+        }
+        Templates t = templates();
+        Set<CategoryType> types = inputText.getCharCategoryTypes(offset);
         int added = 0;
-        if (length > 0) {
-            for (CategoryType type : inputText.getCharCategoryTypes(offset)) {
-                CategoryInfo cinfo = categories.get(type);
-                if (cinfo == null) {
-                    continue;
-                }
-                int llength = length;
-                List<OOV> oovs = oovList.get(cinfo.type);
-                if (oovs == null) {
-                    continue;
-                }
-                if (cinfo.isGroup && (cinfo.isInvoke || otherWords == 0)) {
-                    String s = inputText.getSubstring(offset, offset + length);
-                    for (OOV oov : oovs) {
-                        nodes.add(getOOVNode(s, oov, length));
-                        added += 1;
-                    }
-                    llength -= 1;
-                }
-                if (cinfo.isInvoke || otherWords == 0) {
-                    for (int i = 1; i <= cinfo.length; i++) {
-                        int sublength = inputText.getCodePointsOffsetLength(offset, i);
-                        if (sublength > llength) {
-                            break;
-                        }
-                        String s = inputText.getSubstring(offset, offset + sublength);
-                        for (OOV oov : oovs) {
-                            nodes.add(getOOVNode(s, oov, sublength));
-                            added += 1;
-                        }
-                    }
+        for (int c = 0; c < t.types.length; c++) {
+            int first = t.first[c];
+            int last = t.first[c + 1];
+            if (first == last || !types.contains(t.types[c])) {
+                continue;
+            }
+            boolean invoke = t.isInvoke[c] || otherWords == 0;
+            if (!invoke) {
+                continue;
+            }
+            int llength = length;
+            if (t.isGroup[c]) {
+                added += addNodes(t, inputText, offset, length, first, last, nodes);
+                llength -= 1;
+            }
+            for (int i = 1; i <= t.lengths[c]; i++) {
+                int sublength = inputText.getCodePointsOffsetLength(offset, i);
+                if (sublength > llength) {
+                    break;
                 }
+                added += addNodes(t, inputText, offset, sublength, first, last, nodes);
             }
         }
         return added;
     }
 
-    LatticeNodeImpl getOOVNode(String text, OOV oov, int length) {
-        LatticeNodeImpl node = createNode();
-        node.setParameter(oov.leftId, oov.rightId, oov.cost);
-        WordInfo info = new WordInfo(text, (short) length, oov.posId, text, text, "");
-        node.setWordInfo(info);
-        return node;
+    private int addNodes(Templates t, InputText text, int offset, int length, int first, int last,
+            List<LatticeNodeImpl> nodes) {
+        for (int i = first; i < last; i++) {
+            LatticeNodeImpl node = createNode();
+            node.setParameter(t.leftIds[i], t.rightIds[i], t.costs[i]);
+            node.setRange(offset, offset + length);
+            node.setOOVTemplate(t, text, i);
+            nodes.add(node);
+        }
+        return last - first;
+    }
+
+    private Templates templates() {
+        Templates t = templates;
+        if (t == null) {
+            t = new Templates(categories, oovList);
+            templates = t;
+        }
+        return t;
+    }
+
+    /**
+     * Category definitions and OOV templates flattened into arrays indexed by the
+     * ordinal of the category type. The templates of the category {@code c} are
+     * the indices from {@code first[c]} to {@code first[c + 1]}.
+     */
+    static final class Templates implements LatticeNodeImpl.OovFactory {
+        final CategoryType[] types = CategoryType.values();
+        final boolean[] isInvoke = new boolean[types.length];
+        final boolean[] isGroup = new boolean[types.length];
+        final int[] lengths = new int[types.length];
+        final int[] first = new int[types.length + 1];
+        final short[] leftIds;
+        final short[] rightIds;
+        final short[] costs;
+        final short[] posIds;
+
+        Templates(Map<CategoryType, CategoryInfo> categories, Map<CategoryType, List<OOV>> oovList) {
+            List<OOV> all = new ArrayList<>();
+            for (int c = 0; c < types.length; c++) {
+                first[c] = all.size();
+                CategoryInfo info = categories.get(types[c]);
+                List<OOV> oovs = oovList.get(types[c]);
+                if (info == null || oovs == null) {
+                    continue;
+                }
+                isInvoke[c] = info.isInvoke;
+                isGroup[c] = info.isGroup;
+                lengths[c] = info.length;
+                all.addAll(oovs);
+            }
+            first[types.length] = all.size();
+
+            leftIds = new short[all.size()];
+            rightIds = new short[all.size()];
+            costs = new short[all.size()];
+            posIds = new short[all.size()];
+            for (int i = 0; i < all.size(); i++) {
+                OOV oov = all.get(i);
+                leftIds[i] = oov.leftId;
+                rightIds[i] = oov.rightId;
+                costs[i] = oov.cost;
+                posIds[i] = oov.posId;
+            }
+        }
+
+        @Override
+        public WordInfo createWordInfo(InputText text, int begin, int end, int template) {
+            String s = text.getSubstring(begin, end);
+            return new WordInfo(s, (short) (end - begin), posIds[template], s, s, "");
+        }
     }
 
     private static final Pattern PATTERN_SPACES = Pattern.compile("\\s+");
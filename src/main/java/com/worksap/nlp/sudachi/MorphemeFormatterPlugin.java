@@ -17,7 +17,8 @@
 package com.worksap.nlp.sudachi;
 
 import java.io.IOException;
-import java.io.PrintStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
 /**
@@ -64,6 +65,41 @@ public abstract class MorphemeFormatterPlugin extends Plugin {
      */
     public abstract String formatMorpheme(Morpheme morpheme);
 
+    /**
+     * Appends a string representation of a morpheme to a buffer.
+     *
+     * <p>
+     * The default implementation appends the result of
+     * {@link #formatMorpheme(Morpheme)}. Formatters override this method to
+     * append the fields of the morpheme without building intermediate strings.
+     *
+     * @param morpheme
+     *            the input
+     * @param output
+     *            the buffer to which the representation is appended
+     */
+    public void formatMorpheme(Morpheme morpheme, StringBuilder output) {
+        output.append(formatMorpheme(morpheme));
+    }
+
+    /**
+     * Returns whether a subclass of {@code base} overrides
+     * {@link #formatMorpheme(Morpheme)}. The built-in formatters append through
+     * that method in this case, so subclasses which override only it keep their
+     * output.
+     *
+     * @param base
+     *            the built-in formatter
+     * @return {@code true} if the method is overridden below {@code base}
+     */
+    boolean overridesFormatMorpheme(Class<? extends MorphemeFormatterPlugin> base) {
+        try {
+            return getClass().getMethod("formatMorpheme", Morpheme.class).getDeclaringClass() != base;
+        } catch (NoSuchMethodException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
     /**
      * Show details.
      *
@@ -73,17 +109,67 @@ public abstract class MorphemeFormatterPlugin extends Plugin {
         showDetails = true;
     }
 
-    void printSentence(List<Morpheme> sentence, PrintStream output) {
+    void formatSentence(List<Morpheme> sentence, StringBuilder output) {
         boolean isFirst = true;
         for (Morpheme m : sentence) {
             if (isFirst) {
                 isFirst = false;
             } else {
-                output.print(delimiter);
+                output.append(delimiter);
             }
-            output.print(formatMorpheme(m));
+            formatMorpheme(m, output);
+        }
+        output.append(eosString);
+    }
+
+    /**
+     * Writes the morphemes of a sentence as bytes.
+     *
+     * <p>
+     * The default implementation writes the text representation of the sentence
+     * in UTF-8. Formatters with a binary output override this method and
+     * {@link #isBinary()}.
+     *
+     * @param sentence
+     *            the morphemes of the sentence
+     * @param output
+     *            the output
+     * @throws IOException
+     *             if the output fails
+     */
+    public void writeSentence(MorphemeList sentence, OutputStream output) throws IOException {
+        StringBuilder buffer = new StringBuilder();
+        formatSentence(sentence, buffer);
+        output.write(buffer.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Returns whether the output of {@link #writeSentence} is binary.
+     * {@link SudachiCommandLine} writes binary output without a character
+     * encoding and without other text in the same output.
+     *
+     * @return {@code true} if the output is binary, {@code false} if it is text
+     */
+    public boolean isBinary() {
+        return false;
+    }
+
+    /**
+     * Appends the surface of a morpheme, without creating a substring for the
+     * morphemes of a {@link MorphemeList}.
+     *
+     * @param morpheme
+     *            the morpheme
+     * @param output
+     *            the buffer to which the surface is appended
+     */
+    protected static void appendSurface(Morpheme morpheme, StringBuilder output) {
+        if (morpheme instanceof MorphemeImpl) {
+            MorphemeImpl m = (MorphemeImpl) morpheme;
+            m.list.appendSurface(m.index, output);
+        } else {
+            output.append(morpheme.surface());
         }
-        output.print(eosString);
     }
 
     public void setDelimiter(String delimiter) {
@@ -48,14 +48,15 @@ class MorphemeImpl implements Morpheme {
 
     @Override
     public List<String> partOfSpeech() {
-        WordInfo wi = getWordInfo();
-        return list.grammar.getPartOfSpeechString(wi.getPOSId());
+        return list.grammar.getPartOfSpeechString(partOfSpeechId());
     }
 
     @Override
     public short partOfSpeechId() {
-        WordInfo wi = getWordInfo();
-        return wi.getPOSId();
+        if (wordInfo != null) {
+            return wordInfo.getPOSId();
+        }
+        return list.getPosId(index);
     }
 
     @Override
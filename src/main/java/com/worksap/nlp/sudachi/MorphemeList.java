@@ -16,6 +16,7 @@
 
 package com.worksap.nlp.sudachi;
 
+import java.nio.CharBuffer;
 import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -25,7 +26,19 @@ import com.worksap.nlp.sudachi.dictionary.Grammar;
 import com.worksap.nlp.sudachi.dictionary.Lexicon;
 import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
+/**
+ * The morphemes of a tokenized text.
+ *
+ * <p>
+ * Besides the {@link Morpheme} views returned by {@link #get(int)}, the
+ * offsets, word ids and part-of-speech ids of the morphemes can be read with
+ * primitive accessors such as {@link #getBegin(int)} and
+ * {@link #getPosId(int)}. They are stored in arrays computed on first use, so
+ * that iterating over them does not allocate objects.
+ */
 public class MorphemeList extends AbstractList<Morpheme> {
+    private static final byte FLAG_OOV = 1;
+
     final InputText inputText;
     final Grammar grammar;
     final Lexicon lexicon;
@@ -34,6 +47,12 @@ public class MorphemeList extends AbstractList<Morpheme> {
 
     final Tokenizer.SplitMode mode;
 
+    private int[] begins;
+    private int[] ends;
+    private int[] wordIds;
+    private byte[] flags;
+    private short[] posIds;
+
     public final static MorphemeList EMPTY = new MorphemeList(null, null, null, Collections.emptyList(), true,
             Tokenizer.SplitMode.C);
 
@@ -57,32 +76,100 @@ public class MorphemeList extends AbstractList<Morpheme> {
         return path.size();
     }
 
-    int getBegin(int index) {
-        int begin = inputText.getOriginalIndex(path.get(index).getBegin());
-        if (!allowEmptyMorpheme) {
-            int end = inputText.getOriginalIndex(path.get(index).getEnd());
-            if (begin == end && index != 0) {
-                return getBegin(index - 1);
+    private void computeColumns() {
+        int size = path.size();
+        int[] begins = new int[size];
+        int[] ends = new int[size];
+        int[] wordIds = new int[size];
+        byte[] flags = new byte[size];
+        for (int i = 0; i < size; i++) {
+            LatticeNode node = path.get(i);
+            int begin = inputText.getOriginalIndex(node.getBegin());
+            int end = inputText.getOriginalIndex(node.getEnd());
+            if (!allowEmptyMorpheme && begin == end && i != 0) {
+                begin = begins[i - 1];
+                end = ends[i - 1];
             }
+            begins[i] = begin;
+            ends[i] = end;
+            wordIds[i] = node.getWordId();
+            flags[i] = node.isOOV() ? FLAG_OOV : 0;
         }
-        return begin;
+        this.begins = begins;
+        this.ends = ends;
+        this.wordIds = wordIds;
+        this.flags = flags;
     }
 
-    int getEnd(int index) {
-        int end = inputText.getOriginalIndex(path.get(index).getEnd());
-        if (!allowEmptyMorpheme) {
-            int begin = inputText.getOriginalIndex(path.get(index).getBegin());
-            if (begin == end && index != 0) {
-                return getEnd(index - 1);
-            }
+    /**
+     * Returns the offset of the beginning of a morpheme in the original text.
+     *
+     * @param index
+     *            the index of the morpheme
+     * @return the offset of the beginning
+     * @see Morpheme#begin()
+     */
+    public int getBegin(int index) {
+        if (begins == null) {
+            computeColumns();
+        }
+        return begins[index];
+    }
+
+    /**
+     * Returns the offset of the end of a morpheme in the original text.
+     *
+     * @param index
+     *            the index of the morpheme
+     * @return the offset of the end
+     * @see Morpheme#end()
+     */
+    public int getEnd(int index) {
+        if (ends == null) {
+            computeColumns();
         }
-        return end;
+        return ends[index];
+    }
+
+    /**
+     * Returns the surface of a morpheme as a read-only view of the original text,
+     * without copying the characters.
+     *
+     * @param index
+     *            the index of the morpheme
+     * @return the surface of the morpheme
+     * @see Morpheme#surface()
+     */
+    public CharSequence surfaceAsCharSequence(int index) {
+        return CharBuffer.wrap(inputText.getOriginalText(), getBegin(index), getEnd(index));
     }
 
     String getSurface(int index) {
-        int begin = getBegin(index);
-        int end = getEnd(index);
-        return inputText.getOriginalText().substring(begin, end);
+        return inputText.getOriginalText().substring(getBegin(index), getEnd(index));
+    }
+
+    void appendSurface(int index, StringBuilder output) {
+        output.append(inputText.getOriginalText(), getBegin(index), getEnd(index));
+    }
+
+    /**
+     * Returns the part-of-speech ID of a morpheme. The word information of
+     * dictionary words is not decoded.
+     *
+     * @param index
+     *            the index of the morpheme
+     * @return the part-of-speech ID
+     * @see Morpheme#partOfSpeechId()
+     */
+    public short getPosId(int index) {
+        if (posIds == null) {
+            short[] posIds = new short[path.size()];
+            for (int i = 0; i < posIds.length; i++) {
+                posIds[i] = ((LatticeNodeImpl) path.get(i)).getPOSId();
+            }
+            this.posIds = posIds;
+        }
+        return posIds[index];
     }
 
     WordInfo getWordInfo(int index) {
@@ -120,12 +207,34 @@ public class MorphemeList extends AbstractList<Morpheme> {
         return new MorphemeList(inputText, grammar, lexicon, nodes, allowEmptyMorpheme, mode);
     }
 
-    boolean isOOV(int index) {
-        return path.get(index).isOOV();
+    /**
+     * Returns whether a morpheme is out of vocabulary.
+     *
+     * @param index
+     *            the index of the morpheme
+     * @return {@code true} if the morpheme is out of vocabulary
+     * @see Morpheme#isOOV()
+     */
+    public boolean isOOV(int index) {
+        if (flags == null) {
+            computeColumns();
+        }
+        return (flags[index] & FLAG_OOV) != 0;
     }
 
-    int getWordId(int index) {
-        return path.get(index).getWordId();
+    /**
+     * Returns the word ID of a morpheme.
+     *
+     * @param index
+     *            the index of the morpheme
+     * @return the word ID
+     * @see Morpheme#getWordId()
+     */
+    public int getWordId(int index) {
+        if (wordIds == null) {
+            computeColumns();
+        }
+        return wordIds[index];
     }
 
     int getDictionaryId(int index) {
@@ -0,0 +1,145 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The morphemes of a text in A, B and C units, split from the result of a
+ * single analysis.
+ *
+ * <p>
+ * Each A-unit or B-unit morpheme belongs to the C-unit morpheme it was split
+ * from. The units of the C-unit morpheme at {@code index} are the morphemes of
+ * {@code get(mode)} from {@code getFirstUnit(mode, index)} to
+ * {@code getEndUnit(mode, index)}, and {@link #getParentUnit} returns the index
+ * of the C-unit morpheme of a unit.
+ *
+ * <p>
+ * Morphemes which are not split are shared by the lists, and the splits are
+ * read from the dictionary once for each mode.
+ */
+public class MorphemeUnits {
+    private final MorphemeList cUnits;
+    private final MorphemeList aUnits;
+    private final MorphemeList bUnits;
+    private final int[] aStarts;
+    private final int[] bStarts;
+
+    /**
+     * Splits a list of C-unit morphemes.
+     *
+     * @param cUnits
+     *            the morphemes in C units
+     * @throws IllegalArgumentException
+     *             if the morphemes are not in C units
+     */
+    MorphemeUnits(MorphemeList cUnits) {
+        if (cUnits.mode != Tokenizer.SplitMode.C) {
+            throw new IllegalArgumentException("morphemes must be in C units, but are in " + cUnits.mode);
+        }
+        int size = cUnits.size();
+        List<LatticeNode> aNodes = new ArrayList<>(size);
+        List<LatticeNode> bNodes = new ArrayList<>(size);
+        aStarts = new int[size + 1];
+        bStarts = new int[size + 1];
+        for (int i = 0; i < size; i++) {
+            LatticeNodeImpl node = (LatticeNodeImpl) cUnits.path.get(i);
+            aStarts[i] = aNodes.size();
+            node.appendSplitsTo(aNodes, Tokenizer.SplitMode.A);
+            bStarts[i] = bNodes.size();
+            node.appendSplitsTo(bNodes, Tokenizer.SplitMode.B);
+        }
+        aStarts[size] = aNodes.size();
+        bStarts[size] = bNodes.size();
+
+        this.cUnits = cUnits;
+        aUnits = new MorphemeList(cUnits.inputText, cUnits.grammar, cUnits.lexicon, aNodes,
+                cUnits.allowEmptyMorpheme, Tokenizer.SplitMode.A);
+        bUnits = new MorphemeList(cUnits.inputText, cUnits.grammar, cUnits.lexicon, bNodes,
+                cUnits.allowEmptyMorpheme, Tokenizer.SplitMode.B);
+    }
+
+    /**
+     * Returns the morphemes in a split mode.
+     *
+     * @param mode
+     *            the split mode
+     * @return the morphemes in the units of the mode
+     */
+    public MorphemeList get(Tokenizer.SplitMode mode) {
+        switch (mode) {
+        case A:
+            return aUnits;
+        case B:
+            return bUnits;
+        default:
+            return cUnits;
+        }
+    }
+
+    /**
+     * Returns the index of the first unit of a C-unit morpheme in a split mode.
+     *
+     * @param mode
+     *            the split mode
+     * @param index
+     *            the index of the C-unit morpheme
+     * @return the index of its first morpheme in {@code get(mode)}
+     */
+    public int getFirstUnit(Tokenizer.SplitMode mode, int index) {
+        return mode == Tokenizer.SplitMode.C ? index : starts(mode)[index];
+    }
+
+    /**
+     * Returns the index after the last unit of a C-unit morpheme in a split mode.
+     *
+     * @param mode
+     *            the split mode
+     * @param index
+     *            the index of the C-unit morpheme
+     * @return the index after its last morpheme in {@code get(mode)}
+     */
+    public int getEndUnit(Tokenizer.SplitMode mode, int index) {
+        return mode == Tokenizer.SplitMode.C ? index + 1 : starts(mode)[index + 1];
+    }
+
+    /**
+     * Returns the index of the C-unit morpheme which a morpheme was split from.
+     *
+     * @param mode
+     *            the split mode of the morpheme
+     * @param index
+     *            the index of the morpheme in {@code get(mode)}
+     * @return the index of the C-unit morpheme
+     */
+    public int getParentUnit(Tokenizer.SplitMode mode, int index) {
+        if (mode == Tokenizer.SplitMode.C) {
+            return index;
+        }
+        int[] starts = starts(mode);
+        // every C-unit morpheme has at least one unit, so starts are increasing
+        int found = Arrays.binarySearch(starts, 0, starts.length - 1, index);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private int[] starts(Tokenizer.SplitMode mode) {
+        return mode == Tokenizer.SplitMode.A ? aStarts : bStarts;
+    }
+}
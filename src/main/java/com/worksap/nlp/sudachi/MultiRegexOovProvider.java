@@ -0,0 +1,225 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import com.worksap.nlp.sudachi.dictionary.Grammar;
+import com.worksap.nlp.sudachi.dictionary.WordInfo;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Provides OOVs based on several regular expressions, like the same number of
+ * {@link RegexOovProvider}s, but evaluates all of them at once.
+ *
+ * <p>
+ * The expressions are compiled into a single pattern which is tried once at
+ * each boundary of a sentence, and all the matches of the sentence are
+ * computed at its first boundary. Nodes are then provided from this index.
+ * Each entry of {@code patterns} takes the options of {@link RegexOovProvider},
+ * options which are set outside of {@code patterns} are used for all entries.
+ *
+ * <p>
+ * Configuration example:
+ *
+ * <pre>
+ * {@code
+ *  {
+ *      "class": "com.worksap.nlp.sudachi.MultiRegexOovProvider",
+ *      "leftId": 5968,
+ *      "rightId": 5968,
+ *      "userPOS": "allow",
+ *      "patterns": [
+ *          {
+ *              "regex": "[0-9a-z-]+",
+ *              "oovPOS": [ "補助記号", "一般", "*", "*", "*", "*" ],
+ *              "cost": 5000
+ *          },
+ *          {
+ *              "regex": "@[0-9a-z_]{4,}",
+ *              "oovPOS": [ "補助記号", "一般", "twitter", "*", "*", "*" ],
+ *              "cost": 500,
+ *              "boundaries": "relaxed"
+ *          }
+ *      ]
+ *  }
+ * }
+ * </pre>
+ *
+ * Expressions are always matched from the boundary. They must not contain
+ * backreferences, as their groups are renumbered in the compiled pattern.
+ * Expressions ending with {@code $} or a word boundary can match differently
+ * than with {@link RegexOovProvider}, because the text after
+ * {@code maxLength} is visible to them.
+ */
+public class MultiRegexOovProvider extends OovProviderPlugin {
+    private RegexOovProvider[] rules;
+    private int[] groups;
+    private int[] relaxedGroups;
+    private Pattern combined;
+    private Pattern relaxed;
+    private int maxLength;
+    private int relaxedMaxLength;
+    private final ThreadLocal<Matches> matches = ThreadLocal.withInitial(Matches::new);
+
+    @Override
+    public void setUp(Grammar grammar) throws IOException {
+        super.setUp(grammar);
+        List<Settings> patterns = settings.getSettingsList("patterns");
+        if (patterns.isEmpty()) {
+            throw new IllegalArgumentException("patterns must not be empty");
+        }
+        rules = new RegexOovProvider[patterns.size()];
+        groups = new int[patterns.size()];
+        relaxedGroups = new int[patterns.size()];
+        StringBuilder all = new StringBuilder();
+        StringBuilder relaxedOnly = new StringBuilder();
+        int group = 1;
+        int relaxedGroup = 1;
+        for (int i = 0; i < rules.length; i++) {
+            RegexOovProvider rule = new RegexOovProvider();
+            rule.setSettings(patterns.get(i).withFallback(settings));
+            rule.setUp(grammar);
+            rules[i] = rule;
+            int groupCount = 1 + rule.pattern.matcher("").groupCount();
+            groups[i] = group;
+            group += groupCount;
+            all.append("(?=(").append(rule.pattern.pattern()).append("))?");
+            maxLength = Math.max(maxLength, rule.maxLength);
+            if (rule.strictBoundaries) {
+                relaxedGroups[i] = -1;
+            } else {
+                relaxedGroups[i] = relaxedGroup;
+                relaxedGroup += groupCount;
+                relaxedOnly.append("(?=(").append(rule.pattern.pattern()).append("))?");
+                relaxedMaxLength = Math.max(relaxedMaxLength, rule.maxLength);
+            }
+        }
+        combined = Pattern.compile(all.toString());
+        // strict expressions can't match inside a character category
+        relaxed = relaxedOnly.length() == 0 ? null : Pattern.compile(relaxedOnly.toString());
+    }
+
+    @Override
+    public int provideOOV(InputText inputText, int offset, long otherWords, List<LatticeNodeImpl> nodes) {
+        Matches m = matches.get();
+        if (m.input != inputText) {
+            m.input = inputText;
+            if (m.spans == null) {
+                m.spans = createSpans();
+            }
+            m.spans.fill(inputText);
+        }
+        OovSpans spans = m.spans;
+        int added = 0;
+        for (int i = spans.first(offset); i < spans.first(offset + 1); i++) {
+            int end = spans.end(i);
+            int oovLength = end - offset;
+            if (WordMask.hasNth(otherWords, oovLength) && JapaneseTokenizer.hasNodeEndingAt(nodes, oovLength, end)) {
+                continue;
+            }
+            nodes.add(spans.createNode(i, offset, inputText));
+            otherWords = WordMask.addNth(otherWords, oovLength);
+            added += 1;
+        }
+        return added;
+    }
+
+    @Override
+    OovSpans createSpans() {
+        return new OovSpans(this::createWordInfo, -1, (input, spans) -> matches.get().scan(input, spans));
+    }
+
+    private WordInfo createWordInfo(InputText text, int begin, int end, int template) {
+        String oov = text.getSubstring(begin, end);
+        return new WordInfo(oov, (short) (end - begin), rules[template].posId, oov, oov, "");
+    }
+
+    /**
+     * Matchers of a thread, and the matches of the last sentence given to
+     * {@link #provideOOV}.
+     */
+    private final class Matches {
+        InputText input;
+        OovSpans spans;
+        Matcher matcher;
+        Matcher relaxedMatcher;
+
+        void scan(InputText inputText, OovSpans spans) {
+            String text = inputText.getText();
+            int length = inputText.getByteText().length;
+            matcher = reset(matcher, combined, text);
+            relaxedMatcher = reset(relaxedMatcher, relaxed, text);
+            for (int offset = 0; offset < length; offset++) {
+                if (!inputText.canBow(offset)) {
+                    continue;
+                }
+                if (!RegexOovProvider.isInsideCategory(inputText, offset)) {
+                    find(inputText, offset, matcher, maxLength, groups, spans);
+                } else if (relaxedMatcher != null) {
+                    find(inputText, offset, relaxedMatcher, relaxedMaxLength, relaxedGroups, spans);
+                }
+            }
+        }
+
+        private Matcher reset(Matcher matcher, Pattern pattern, String text) {
+            if (pattern == null) {
+                return null;
+            }
+            return matcher == null ? pattern.matcher(text) : matcher.reset(text);
+        }
+
+        private void find(InputText inputText, int offset, Matcher matcher, int maxLength, int[] groups,
+                OovSpans spans) {
+            int start = inputText.modifiedOffset(offset);
+            int end = Math.min(offset + maxLength, inputText.getByteText().length);
+            matcher.region(start, inputText.modifiedOffset(end));
+            if (!matcher.lookingAt()) {
+                return;
+            }
+            for (int r = 0; r < groups.length; r++) {
+                if (groups[r] < 0 || matcher.start(groups[r]) < 0) {
+                    continue;
+                }
+                RegexOovProvider rule = rules[r];
+                int length = inputText.getCodePointsOffsetLength(offset, matcher.end(groups[r]) - start);
+                if (length > rule.maxLength) {
+                    length = matchShorter(rule, inputText, offset, start);
+                }
+                if (length > 0) {
+                    spans.add(offset, offset + length, rule.leftId, rule.rightId, rule.cost, r);
+                }
+            }
+        }
+
+        /**
+         * Matches an expression alone in its own {@code maxLength}, when the combined
+         * pattern found a longer match.
+         */
+        private int matchShorter(RegexOovProvider rule, InputText inputText, int offset, int start) {
+            Matcher single = rule.pattern.matcher(inputText.getText());
+            int end = Math.min(offset + rule.maxLength, inputText.getByteText().length);
+            single.region(start, inputText.modifiedOffset(end));
+            if (!single.lookingAt()) {
+                return -1;
+            }
+            return inputText.getCodePointsOffsetLength(offset, single.end() - start);
+        }
+    }
+}
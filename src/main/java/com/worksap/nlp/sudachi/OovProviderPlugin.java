@@ -81,13 +81,36 @@ public abstract class OovProviderPlugin extends Plugin {
      */
     public abstract int provideOOV(InputText inputText, int offset, long otherWords, List<LatticeNodeImpl> result);
 
+    /**
+     * Returns a new container for the candidates of this plugin, if it computes
+     * them for whole sentences.
+     *
+     * <p>
+     * When it returns a container, {@link JapaneseTokenizer} fills it once per
+     * sentence instead of calling {@link #provideOOV} at each boundary, and
+     * inserts the candidates while building the lattice. The scanner of the
+     * container must add the candidates of a boundary in the order in which
+     * {@link #provideOOV} creates them. Other plugins are called at each boundary.
+     *
+     * @return an empty container, or {@code null} if the plugin only provides
+     *         nodes at each boundary
+     */
+    OovSpans createSpans() {
+        return null;
+    }
+
     int getOOV(UTF8InputText inputText, int offset, long otherWords, List<LatticeNodeImpl> result) {
         int oldSize = result.size();
         int numCreated = provideOOV(inputText, offset, otherWords, result);
         for (int i = 0; i < numCreated; i++) {
             LatticeNodeImpl n = result.get(oldSize + i);
+            if (n.oovFactory != null) {
+                // the word information is not created yet, the node has its length as range
+                n.end = offset + n.end - n.begin;
+            } else {
+                n.end = offset + n.getWordInfo().getLength();
+            }
             n.begin = offset;
-            n.end = offset + n.getWordInfo().getLength();
         }
         return numCreated;
     }
@@ -0,0 +1,157 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import java.util.Arrays;
+
+/**
+ * OOV candidates of a sentence, indexed by their beginnings.
+ *
+ * <p>
+ * Candidates beginning at {@code offset} are the indices from
+ * {@code first(offset)} to {@code first(offset + 1)}. Each candidate has the
+ * parameters of its node and a template passed to the factory of the word
+ * information. A candidate is inserted only if no word at its boundary has its
+ * length.
+ */
+final class OovSpans {
+    /**
+     * Finds the candidates of a sentence.
+     */
+    @FunctionalInterface
+    interface Scanner {
+        /**
+         * Adds the candidates of all boundaries of the input in the order of their
+         * beginnings.
+         *
+         * @param input
+         *            the input text of the sentence
+         * @param spans
+         *            the cleared container
+         */
+        void scan(InputText input, OovSpans spans);
+    }
+
+    private final LatticeNodeImpl.OovFactory factory;
+    private final int wordId;
+    private final Scanner scanner;
+    private int[] first = new int[1];
+    private int length;
+    private int current;
+    private int size;
+    private int[] ends = new int[16];
+    private short[] leftIds = new short[16];
+    private short[] rightIds = new short[16];
+    private short[] costs = new short[16];
+    private int[] templates = new int[16];
+
+    /**
+     * Creates an empty container.
+     *
+     * @param factory
+     *            creates the word information of the candidates from their
+     *            templates
+     * @param wordId
+     *            the word id of the nodes
+     * @param scanner
+     *            finds the candidates of a sentence
+     */
+    OovSpans(LatticeNodeImpl.OovFactory factory, int wordId, Scanner scanner) {
+        this.factory = factory;
+        this.wordId = wordId;
+        this.scanner = scanner;
+    }
+
+    /**
+     * Replaces the candidates with the ones of the input.
+     *
+     * @param input
+     *            the input text of the sentence
+     */
+    void fill(InputText input) {
+        clear(input.getByteText().length);
+        scanner.scan(input, this);
+        complete();
+    }
+
+    void clear(int length) {
+        if (first.length < length + 1) {
+            first = new int[length + 1];
+        }
+        this.length = length;
+        current = 0;
+        size = 0;
+        first[0] = 0;
+    }
+
+    void add(int begin, int end, short leftId, short rightId, short cost, int template) {
+        if (begin < current || begin >= length || end <= begin || end > length) {
+            throw new IllegalArgumentException(
+                    String.format("span [%d, %d) must be in order and inside the input", begin, end));
+        }
+        moveTo(begin);
+        if (size == ends.length) {
+            int capacity = size * 2;
+            ends = Arrays.copyOf(ends, capacity);
+            leftIds = Arrays.copyOf(leftIds, capacity);
+            rightIds = Arrays.copyOf(rightIds, capacity);
+            costs = Arrays.copyOf(costs, capacity);
+            templates = Arrays.copyOf(templates, capacity);
+        }
+        ends[size] = end;
+        leftIds[size] = leftId;
+        rightIds[size] = rightId;
+        costs[size] = cost;
+        templates[size] = template;
+        size += 1;
+    }
+
+    /**
+     * Marks that all candidates were added.
+     */
+    void complete() {
+        moveTo(length);
+        first[length] = size;
+    }
+
+    private void moveTo(int begin) {
+        while (current < begin) {
+            current += 1;
+            first[current] = size;
+        }
+    }
+
+    int first(int offset) {
+        return first[offset];
+    }
+
+    int size() {
+        return size;
+    }
+
+    int end(int index) {
+        return ends[index];
+    }
+
+    LatticeNodeImpl createNode(int index, int begin, InputText input) {
+        LatticeNodeImpl node = new LatticeNodeImpl(null, leftIds[index], rightIds[index], costs[index], wordId);
+        node.setOOV();
+        node.setRange(begin, ends[index]);
+        node.setOOVTemplate(factory, input, templates[index]);
+        return node;
+    }
+}
@@ -16,6 +16,7 @@
 
 package com.worksap.nlp.sudachi;
 
+import com.worksap.nlp.sudachi.dictionary.GrammarImpl;
 import com.worksap.nlp.sudachi.dictionary.POS;
 
 import java.util.AbstractList;
@@ -68,6 +69,40 @@ public class PartialPOS extends AbstractList<String> {
         return true;
     }
 
+    /**
+     * Resolves the components to their ids in the grammar. Unspecified components
+     * are -1.
+     *
+     * @return the ids of the components, or null if some component is not used by
+     *         any POS tag of the grammar
+     */
+    int[] componentIds(GrammarImpl grammar) {
+        int[] ids = new int[data.size()];
+        for (int level = 0; level < ids.length; ++level) {
+            String s = data.get(level);
+            if (s == null) {
+                ids[level] = -1;
+                continue;
+            }
+            int id = grammar.getPartOfSpeechComponentId(level, s);
+            if (id < 0) {
+                return null;
+            }
+            ids[level] = id;
+        }
+        return ids;
+    }
+
+    static boolean matches(int[] componentIds, GrammarImpl grammar, short posId) {
+        for (int level = 0; level < componentIds.length; ++level) {
+            int id = componentIds[level];
+            if (id >= 0 && id != grammar.getPartOfSpeechComponentId(posId, level)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     @Override
     public String toString() {
         return String.join(",", data);
@@ -57,13 +57,13 @@ import java.util.regex.Pattern;
  * </ul>
  */
 public class RegexOovProvider extends OovProviderPlugin {
-    private Pattern pattern;
-    private short posId = -1;
-    private short cost = Short.MIN_VALUE;
-    private short leftId = Short.MIN_VALUE;
-    private short rightId = Short.MIN_VALUE;
-    private int maxLength = 32;
-    private boolean strictBoundaries = true;
+    Pattern pattern;
+    short posId = -1;
+    short cost = Short.MIN_VALUE;
+    short leftId = Short.MIN_VALUE;
+    short rightId = Short.MIN_VALUE;
+    int maxLength = 32;
+    boolean strictBoundaries = true;
 
     @Override
     public void setUp(Grammar grammar) throws IOException {
@@ -88,52 +88,79 @@ public class RegexOovProvider extends OovProviderPlugin {
 
     @Override
     public int provideOOV(InputText inputText, int offset, long otherWords, List<LatticeNodeImpl> nodes) {
-        if (strictBoundaries && offset > 0) {
-            int currentContinuity = inputText.getCharCategoryContinuousLength(offset);
-            int previousContinuity = inputText.getCharCategoryContinuousLength(offset - 1);
-            // if inside single character category
-            if (currentContinuity + 1 == previousContinuity) {
-                return 0;
-            }
+        if (strictBoundaries && isInsideCategory(inputText, offset)) {
+            return 0;
         }
 
         String text = inputText.getText();
         Matcher matcher = pattern.matcher(text);
-        byte[] byteText = inputText.getByteText();
-        int textLength = byteText.length;
+        int oovLength = match(inputText, matcher, offset);
+        if (oovLength < 0) {
+            return 0;
+        }
+        if (WordMask.hasNth(otherWords, oovLength)
+                && JapaneseTokenizer.hasNodeEndingAt(nodes, oovLength, offset + oovLength)) {
+            // there was already created word of length
+            return 0;
+        }
+
+        LatticeNodeImpl node = new LatticeNodeImpl(null, leftId, rightId, cost, -1);
+        node.setOOV();
+        String oov = text.substring(matcher.start(), matcher.end());
+        WordInfo info = new WordInfo(oov, (short) oovLength, posId, oov, oov, "");
+        node.setWordInfo(info);
+        nodes.add(node);
+        return 1;
+    }
+
+    @Override
+    OovSpans createSpans() {
+        return new OovSpans(this::createWordInfo, -1, this::scan);
+    }
+
+    private void scan(InputText input, OovSpans spans) {
+        Matcher matcher = pattern.matcher(input.getText());
+        int length = input.getByteText().length;
+        for (int offset = 0; offset < length; offset++) {
+            if (!input.canBow(offset) || (strictBoundaries && isInsideCategory(input, offset))) {
+                continue;
+            }
+            int oovLength = match(input, matcher, offset);
+            if (oovLength > 0) {
+                spans.add(offset, offset + oovLength, leftId, rightId, cost, 0);
+            }
+        }
+    }
+
+    /**
+     * Returns the length of the match at the offset in bytes, or -1 if there is no
+     * match.
+     */
+    private int match(InputText inputText, Matcher matcher, int offset) {
+        int textLength = inputText.getByteText().length;
         int regionStartChars = inputText.modifiedOffset(offset);
         int regionEndBytes = Math.min(offset + maxLength, textLength);
         int regionEndChars = inputText.modifiedOffset(regionEndBytes);
         matcher.region(regionStartChars, regionEndChars);
+        if (!matcher.find()) {
+            return -1;
+        }
+        return inputText.getCodePointsOffsetLength(offset, matcher.end() - regionStartChars);
+    }
 
-        if (matcher.find()) {
-            int endChar = matcher.end();
-            int oovLength = inputText.getCodePointsOffsetLength(offset, endChar - regionStartChars);
-            if (WordMask.hasNth(otherWords, oovLength)) {
-                // there was already created word of length
-                if (oovLength > WordMask.MAX_LENGTH) {
-                    // handle case if there are more than 63 symbols
-                    int byteEnd = offset + oovLength;
-                    for (LatticeNodeImpl node : nodes) {
-                        if (node.end == byteEnd) {
-                            return 0;
-                        }
-                    }
-                } else {
-                    return 0;
-                }
-            }
+    private WordInfo createWordInfo(InputText text, int begin, int end, int template) {
+        String oov = text.getSubstring(begin, end);
+        return new WordInfo(oov, (short) (end - begin), posId, oov, oov, "");
+    }
 
-            LatticeNodeImpl node = new LatticeNodeImpl(null, leftId, rightId, cost, -1);
-            node.setOOV();
-            String oov = text.substring(matcher.start(), matcher.end());
-            WordInfo info = new WordInfo(oov, (short) oovLength, posId, oov, oov, "");
-            node.setWordInfo(info);
-            nodes.add(node);
-            return 1;
-        } else {
-            return 0;
+    static boolean isInsideCategory(InputText inputText, int offset) {
+        if (offset == 0) {
+            return false;
         }
+        int currentContinuity = inputText.getCharCategoryContinuousLength(offset);
+        int previousContinuity = inputText.getCharCategoryContinuousLength(offset - 1);
+        // if inside single character category
+        return currentContinuity + 1 == previousContinuity;
     }
 
     private static short checkedShort(Settings settings, String name) {
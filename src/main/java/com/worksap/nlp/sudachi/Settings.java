@@ -397,6 +397,26 @@ public class Settings {
         }
     }
 
+    /**
+     * Returns the value as the list of objects to which the specified key is
+     * mapped, or an empty list if the Settings contains no mapping for the key.
+     * Paths in the objects are resolved with the anchor of this Settings.
+     *
+     * @param setting
+     *            the key
+     * @return the value or an empty list if the Settings has no key
+     * @throws IllegalArgumentException
+     *             if the value is not an array of objects
+     */
+    public List<Settings> getSettingsList(String setting) {
+        try {
+            return getList(setting, JsonObject.class).stream().map(o -> new Settings(o, base))
+                    .collect(Collectors.toList());
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException(setting + " is not an array of objects", e);
+        }
+    }
+
     /**
      * Returns resolved path mapped by the key, or {@code null} if the Settings
      * contains no such key. Paths are resolved using {@link PathAnchor}.
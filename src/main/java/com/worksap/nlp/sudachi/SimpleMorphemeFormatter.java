@@ -17,7 +17,9 @@
 package com.worksap.nlp.sudachi;
 
 import java.io.IOException;
-import java.util.Arrays;
+
+import com.worksap.nlp.sudachi.dictionary.Grammar;
+import com.worksap.nlp.sudachi.dictionary.GrammarImpl;
 
 /**
  * Provides a formatter for {@link Morpheme}
@@ -43,6 +45,7 @@ import java.util.Arrays;
 public class SimpleMorphemeFormatter extends MorphemeFormatterPlugin {
 
     protected String columnDelimiter;
+    private final boolean formatsStrings = overridesFormatMorpheme(SimpleMorphemeFormatter.class);
 
     @Override
     public void setUp() throws IOException {
@@ -52,14 +55,53 @@ public class SimpleMorphemeFormatter extends MorphemeFormatterPlugin {
 
     @Override
     public String formatMorpheme(Morpheme morpheme) {
-        String output = morpheme.surface() + columnDelimiter + String.join(",", morpheme.partOfSpeech())
-                + columnDelimiter + morpheme.normalizedForm();
+        StringBuilder output = new StringBuilder();
+        appendMorpheme(morpheme, output);
+        return output.toString();
+    }
+
+    @Override
+    public void formatMorpheme(Morpheme morpheme, StringBuilder output) {
+        if (formatsStrings) {
+            super.formatMorpheme(morpheme, output);
+        } else {
+            appendMorpheme(morpheme, output);
+        }
+    }
+
+    private void appendMorpheme(Morpheme morpheme, StringBuilder output) {
+        appendSurface(morpheme, output);
+        output.append(columnDelimiter).append(partOfSpeech(morpheme));
+        output.append(columnDelimiter).append(morpheme.normalizedForm());
         if (showDetails) {
-            output += columnDelimiter + morpheme.dictionaryForm() + columnDelimiter + morpheme.readingForm()
-                    + columnDelimiter + morpheme.getDictionaryId() + columnDelimiter
-                    + Arrays.toString(morpheme.getSynonymGroupIds()) + columnDelimiter
-                    + ((morpheme.isOOV()) ? "(OOV)" : "");
+            output.append(columnDelimiter).append(morpheme.dictionaryForm());
+            output.append(columnDelimiter).append(morpheme.readingForm());
+            output.append(columnDelimiter).append(morpheme.getDictionaryId());
+            output.append(columnDelimiter).append('[');
+            int[] synonymGroupIds = morpheme.getSynonymGroupIds();
+            for (int i = 0; i < synonymGroupIds.length; i++) {
+                if (i > 0) {
+                    output.append(", ");
+                }
+                output.append(synonymGroupIds[i]);
+            }
+            output.append(']');
+            output.append(columnDelimiter).append(morpheme.isOOV() ? "(OOV)" : "");
+        }
+    }
+
+    /**
+     * Returns the part-of-speech of a morpheme joined with commas. The joined
+     * strings are precomputed by the grammar when it is available.
+     */
+    private static String partOfSpeech(Morpheme morpheme) {
+        if (morpheme instanceof MorphemeImpl) {
+            Grammar grammar = ((MorphemeImpl) morpheme).list.grammar;
+            short posId = morpheme.partOfSpeechId();
+            if (grammar instanceof GrammarImpl && posId >= 0) {
+                return ((GrammarImpl) grammar).getPartOfSpeechJoined(posId);
+            }
         }
-        return output;
+        return String.join(",", morpheme.partOfSpeech());
     }
 }
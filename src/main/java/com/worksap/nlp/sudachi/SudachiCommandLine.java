@@ -16,7 +16,9 @@
 
 package com.worksap.nlp.sudachi;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.UnsupportedEncodingException;
@@ -43,6 +45,9 @@ import java.util.logging.Logger;
 public class SudachiCommandLine {
     static Logger logger = Logger.getLogger(SudachiCommandLine.class.getName());
 
+    /** The formatted output is written when it reaches this number of chars */
+    static final int OUTPUT_CHUNK_SIZE = 1 << 16;
+
     public static class FileOrStdoutPrintStream extends PrintStream {
         private boolean isFile;
 
@@ -52,7 +57,7 @@ public class SudachiCommandLine {
         }
 
         public FileOrStdoutPrintStream(String fileName) throws FileNotFoundException, UnsupportedEncodingException {
-            super(new FileOutputStream(fileName), false, "UTF-8");
+            super(new BufferedOutputStream(new FileOutputStream(fileName), OUTPUT_CHUNK_SIZE), false, "UTF-8");
             isFile = true;
         }
 
@@ -66,20 +71,36 @@ public class SudachiCommandLine {
         }
     }
 
+    /**
+     * Tokenizes the lines of the input and writes the formatted morphemes.
+     *
+     * <p>
+     * The formatted morphemes are collected in a buffer, which is written to the
+     * output when it has {@code chunkSize} chars or bytes or more after a line,
+     * and at the end of the input. Binary formatters write bytes instead of text,
+     * see {@link MorphemeFormatterPlugin#isBinary()}.
+     */
     static void run(Tokenizer tokenizer, Tokenizer.SplitMode mode, InputStream input, PrintStream output,
-            MorphemeFormatterPlugin formatter, boolean ignoreError, boolean isFileInput, boolean isWordSegmentation)
-            throws IOException {
+            MorphemeFormatterPlugin formatter, boolean ignoreError, boolean isFileInput, boolean isWordSegmentation,
+            int chunkSize) throws IOException {
 
+        boolean isBinary = formatter.isBinary();
+        StringBuilder buffer = new StringBuilder();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
         try (InputStreamReader inputReader = isFileInput ? new InputStreamReader(input, StandardCharsets.UTF_8)
                 : new InputStreamReader(input); BufferedReader reader = new BufferedReader(inputReader)) {
 
             for (String line = reader.readLine(); line != null; line = reader.readLine()) {
                 try {
-                    for (List<Morpheme> sentence : tokenizer.tokenizeSentences(mode, line)) {
-                        formatter.printSentence(sentence, output);
+                    for (MorphemeList sentence : tokenizer.tokenizeSentences(mode, line)) {
+                        if (isBinary) {
+                            formatter.writeSentence(sentence, bytes);
+                        } else {
+                            formatter.formatSentence(sentence, buffer);
+                        }
                     }
-                    if (isWordSegmentation) {
-                        output.print("\n");
+                    if (isWordSegmentation && !isBinary) {
+                        buffer.append('\n');
                     }
                 } catch (RuntimeException e) {
                     if (ignoreError) {
@@ -88,10 +109,23 @@ public class SudachiCommandLine {
                         throw e;
                     }
                 }
+                if (buffer.length() + bytes.size() >= chunkSize) {
+                    writeChunk(output, buffer, bytes);
+                }
             }
+        } finally {
+            writeChunk(output, buffer, bytes);
         }
     }
 
+    private static void writeChunk(PrintStream output, StringBuilder buffer, ByteArrayOutputStream bytes)
+            throws IOException {
+        output.append(buffer);
+        buffer.setLength(0);
+        bytes.writeTo(output);
+        bytes.reset();
+    }
+
     static MorphemeFormatterPlugin makeFormatter(boolean isWordSegmentation, boolean isLineBreakAtEosInWordSegmentation,
             String formatterKind, Settings settings) throws IOException {
         MorphemeFormatterPlugin formatter;
@@ -264,6 +298,8 @@ public class SudachiCommandLine {
                 stderr.print("\t-d\tdebug mode\n");
                 stderr.print("\t--systemDict file\tpath to a system dictionary (overrides everything)\n");
                 stderr.print("\t--userDict file\tpath to an additional user dictionary (appended to -s)\n");
+                stderr.print("\t--format class\tformatter class, com.worksap.nlp.sudachi.BinaryMorphemeFormatter "
+                        + "writes binary output\n");
                 return;
             } else if (args[i].equals("--userDict")) {
                 Path resolved = anchor.resolve(args[++i]);
@@ -287,23 +323,30 @@ public class SudachiCommandLine {
         if (showDetails) {
             formatter.showDetails();
         }
+        if (isEnableDump && formatter.isBinary()) {
+            throw new IllegalArgumentException("debug mode (-d) can't be used with a binary formatter");
+        }
 
         try (PrintStream output = outputFileName == null ? new FileOrStdoutPrintStream()
                 : new FileOrStdoutPrintStream(outputFileName);
                 Dictionary dict = new DictionaryFactory().create(config)) {
             Tokenizer tokenizer = dict.create();
+            // the dump is written to the output while tokenizing, each line must be written before it
+            int chunkSize = OUTPUT_CHUNK_SIZE;
             if (isEnableDump) {
                 tokenizer.setDumpOutput(output);
+                chunkSize = 0;
             }
 
             if (i < args.length) {
                 for (; i < args.length; i++) {
                     try (FileInputStream input = new FileInputStream(args[i])) {
-                        run(tokenizer, mode, input, output, formatter, ignoreError, false, isWordSegmentation);
+                        run(tokenizer, mode, input, output, formatter, ignoreError, false, isWordSegmentation,
+                                chunkSize);
                     }
                 }
             } else {
-                run(tokenizer, mode, System.in, output, formatter, ignoreError, true, isWordSegmentation);
+                run(tokenizer, mode, System.in, output, formatter, ignoreError, true, isWordSegmentation, chunkSize);
             }
         }
     }
@@ -52,6 +52,20 @@ public interface Tokenizer {
         return tokenize(SplitMode.C, text);
     }
 
+    /**
+     * Tokenize a text in A, B and C units at once. The text is analyzed once and
+     * the A-unit and B-unit morphemes are split from the C-unit ones, with links
+     * to them.
+     *
+     * @param text
+     *            input text
+     * @return the morphemes in every split mode
+     * @see MorphemeUnits
+     */
+    default MorphemeUnits tokenizeUnits(final String text) {
+        return new MorphemeUnits(tokenize(SplitMode.C, text));
+    }
+
     /**
      * Tokenize sentences. This method divide an input text into sentences and
      * tokenizes them. When the text is long, it uses a lot of memory.
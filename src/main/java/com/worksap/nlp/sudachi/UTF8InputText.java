@@ -33,20 +33,23 @@ class UTF8InputText implements InputText {
     private final byte[] bytes;
     private final int[] byteToOriginal;
     private final int[] byteToModified;
+    private final int[] modifiedToByte;
     private final List<Integer> modifiedToOriginal;
     private final List<EnumSet<CategoryType>> charCategories;
     private final List<Integer> charCategoryContinuities;
     private final List<Boolean> canBowList;
 
     UTF8InputText(Grammar grammar, String originalText, String modifiedText, byte[] bytes, int[] byteToOriginal,
-            int[] byteToModified, List<Integer> modifiedToOriginal, List<EnumSet<CategoryType>> charCategories,
-            List<Integer> charCategoryContinuities, List<Boolean> canBowList) {
+            int[] byteToModified, int[] modifiedToByte, List<Integer> modifiedToOriginal,
+            List<EnumSet<CategoryType>> charCategories, List<Integer> charCategoryContinuities,
+            List<Boolean> canBowList) {
 
         this.originalText = originalText;
         this.modifiedText = modifiedText;
         this.bytes = bytes;
         this.byteToOriginal = byteToOriginal;
         this.byteToModified = byteToModified;
+        this.modifiedToByte = modifiedToByte;
         this.modifiedToOriginal = modifiedToOriginal;
         this.charCategories = charCategories;
         this.charCategoryContinuities = charCategoryContinuities;
@@ -110,6 +113,10 @@ class UTF8InputText implements InputText {
         for (int i = 0; i < length + 1; i++) {
             byteToModified[i] = this.byteToModified[byteBegin + i] - begin;
         }
+        int[] modifiedToByte = new int[end - begin + 1];
+        for (int i = 0; i < end - begin + 1; i++) {
+            modifiedToByte[i] = this.modifiedToByte[begin + i] - byteBegin;
+        }
         List<Integer> modifiedToOriginal = new ArrayList<>();
         for (int i = 0; i < end + 1; i++) {
             modifiedToOriginal.add(this.modifiedToOriginal.get(i) - this.modifiedToOriginal.get(begin));
@@ -129,7 +136,7 @@ class UTF8InputText implements InputText {
         List<Boolean> canBowList = this.canBowList.subList(begin, end);
 
         return new UTF8InputText(null, originalText, modifiedText, bytes, byteToOriginal, byteToModified,
-                modifiedToOriginal, charCategories, charCategoryContinuities, canBowList);
+                modifiedToByte, modifiedToOriginal, charCategories, charCategoryContinuities, canBowList);
     }
 
     public int modifiedOffset(int index) {
@@ -167,15 +174,11 @@ class UTF8InputText implements InputText {
 
     @Override
     public int getCodePointsOffsetLength(int index, int codePointOffset) {
-        int length = 0;
         int target = byteToModified[index] + codePointOffset;
-        for (int i = index; i < bytes.length; i++) {
-            if (byteToModified[i] >= target) {
-                return length;
-            }
-            length++;
+        if (target >= modifiedToByte.length) {
+            return bytes.length - index;
         }
-        return length;
+        return Math.max(modifiedToByte[Math.max(target, 0)], index) - index;
     }
 
     @Override
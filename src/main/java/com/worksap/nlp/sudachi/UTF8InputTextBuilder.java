@@ -117,7 +117,9 @@ class UTF8InputTextBuilder implements InputTextBuilder {
         int length = byteText.length;
         int[] byteToModified = new int[length + 1];
         int[] byteToOriginal = new int[length + 1];
+        int[] modifiedToByte = new int[modifiedStringText.length() + 1];
         for (int i = 0, j = 0; i < modifiedText.length(); i++) {
+            modifiedToByte[i] = j;
             if (Character.isLowSurrogate(modifiedText.charAt(i))) {
                 continue;
             }
@@ -128,6 +130,7 @@ class UTF8InputTextBuilder implements InputTextBuilder {
             }
         }
         byteToModified[length] = modifiedStringText.length();
+        modifiedToByte[modifiedStringText.length()] = length;
         byteToOriginal[length] = modifiedToOriginal.get(modifiedToOriginal.size() - 1);
 
         List<EnumSet<CategoryType>> charCategories = getCharCategoryTypes(modifiedStringText);
@@ -136,8 +139,9 @@ class UTF8InputTextBuilder implements InputTextBuilder {
         List<Boolean> canBowList = buildCanBowList(modifiedStringText, charCategories);
 
         return new UTF8InputText(grammar, originalText, modifiedStringText, byteText, byteToOriginal, byteToModified,
-                Collections.unmodifiableList(modifiedToOriginal), Collections.unmodifiableList(charCategories),
-                charCategoryContinuities, Collections.unmodifiableList(canBowList));
+                modifiedToByte, Collections.unmodifiableList(modifiedToOriginal),
+                Collections.unmodifiableList(charCategories), charCategoryContinuities,
+                Collections.unmodifiableList(canBowList));
     }
 
     private List<EnumSet<CategoryType>> getCharCategoryTypes(String text) {
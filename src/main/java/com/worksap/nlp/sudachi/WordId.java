@@ -26,7 +26,11 @@ public class WordId {
     public static final int MAX_WORD_ID = 0x0fffffff;
 
     /**
-     * Dictionary ids can't be larger than this number
+     * Dictionary ids can't be larger than this number. A
+     * {@link com.worksap.nlp.sudachi.dictionary.LexiconSet} with more dictionaries
+     * gives this id to all the dictionaries from this one on and offsets their
+     * word parts, see
+     * {@link com.worksap.nlp.sudachi.dictionary.LexiconSet#dictionaryOf(int)}.
      */
     public static final int MAX_DIC_ID = 0xe;
 
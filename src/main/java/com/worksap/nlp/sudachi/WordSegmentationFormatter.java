@@ -17,7 +17,6 @@
 package com.worksap.nlp.sudachi;
 
 import java.io.IOException;
-import java.io.PrintStream;
 import java.util.List;
 
 /**
@@ -41,6 +40,8 @@ import java.util.List;
  */
 public class WordSegmentationFormatter extends MorphemeFormatterPlugin {
 
+    private final boolean formatsStrings = overridesFormatMorpheme(WordSegmentationFormatter.class);
+
     @Override
     public void setUp() throws IOException {
         super.setUp();
@@ -54,23 +55,42 @@ public class WordSegmentationFormatter extends MorphemeFormatterPlugin {
     }
 
     @Override
-    void printSentence(List<Morpheme> sentence, PrintStream output) {
+    public void formatMorpheme(Morpheme morpheme, StringBuilder output) {
+        if (formatsStrings) {
+            super.formatMorpheme(morpheme, output);
+        } else {
+            appendSurface(morpheme, output);
+        }
+    }
+
+    @Override
+    void formatSentence(List<Morpheme> sentence, StringBuilder output) {
         boolean isFirst = true;
         for (Morpheme m : sentence) {
-            String morpheme = formatMorpheme(m);
-            if (morpheme.equals("")) {
-                continue;
+            int start = output.length();
+            if (!isFirst) {
+                output.append(delimiter);
             }
-            if (morpheme.equals(delimiter)) {
+            int morphemeStart = output.length();
+            formatMorpheme(m, output);
+            if (output.length() == morphemeStart || isDelimiter(output, morphemeStart)) {
+                output.setLength(start);
                 continue;
             }
-            if (isFirst) {
-                isFirst = false;
-            } else {
-                output.print(delimiter);
+            isFirst = false;
+        }
+        output.append(eosString);
+    }
+
+    private boolean isDelimiter(StringBuilder output, int start) {
+        if (output.length() - start != delimiter.length()) {
+            return false;
+        }
+        for (int i = 0; i < delimiter.length(); i++) {
+            if (output.charAt(start + i) != delimiter.charAt(i)) {
+                return false;
             }
-            output.print(morpheme);
         }
-        output.print(eosString);
+        return true;
     }
 }
@@ -18,7 +18,9 @@ package com.worksap.nlp.sudachi.dictionary;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.nio.Buffer;
 import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
 
 import com.worksap.nlp.sudachi.Config;
 import com.worksap.nlp.sudachi.MMap;
@@ -89,6 +91,55 @@ public class BinaryDictionary implements Closeable, DictionaryAccess {
         return resource.consume(res -> loadUser(res.asByteBuffer()));
     }
 
+    /**
+     * Writes this dictionary in the binary format.
+     *
+     * <p>
+     * Word costs are written as they are currently stored. For a user dictionary
+     * which was added to a {@link com.worksap.nlp.sudachi.Dictionary}, this
+     * includes the costs calculated when it was added.
+     *
+     * @param channel
+     *            the channel to write to
+     * @throws IOException
+     *             when IO fails
+     */
+    public void writeTo(WritableByteChannel channel) throws IOException {
+        int paramsBegin = lexicon.getWordParametersOffset();
+        int paramsEnd = paramsBegin + lexicon.getWordParametersSize();
+        writeFully(channel, region(0, paramsBegin));
+        writeFully(channel, lexicon.serializeWordParameters());
+        writeFully(channel, region(paramsEnd, bytes.limit()));
+    }
+
+    private ByteBuffer region(int begin, int end) {
+        ByteBuffer view = bytes.duplicate();
+        Buffer buffer = view; // a kludge for Java 9
+        buffer.position(begin);
+        buffer.limit(end);
+        return view;
+    }
+
+    private static void writeFully(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    int storageSize() {
+        return bytes.limit();
+    }
+
+    /**
+     * Loads the whole dictionary into the physical memory if it is mapped from a
+     * file.
+     *
+     * @see MMap#prefault(ByteBuffer)
+     */
+    public void prefault() {
+        MMap.prefault(bytes);
+    }
+
     @Override
     public void close() throws IOException {
         MMap.unmap(bytes);
@@ -19,6 +19,9 @@ package com.worksap.nlp.sudachi.dictionary;
 import com.worksap.nlp.sudachi.Config;
 
 import java.io.*;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.EnumSet;
@@ -148,6 +151,55 @@ public class CharacterCategory {
         }
     }
 
+    /**
+     * Returns the compiled definitions in a binary form, which can be read by
+     * {@link #readFrom(ByteBuffer)}.
+     *
+     * @return a new little endian buffer with the definitions
+     */
+    public ByteBuffer serialize() {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 12 * rangeList.size());
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(rangeList.size());
+        for (Range range : rangeList) {
+            int mask = 0;
+            for (CategoryType type : range.categories) {
+                mask |= type.getId();
+            }
+            buffer.putInt(range.low);
+            buffer.putInt(range.high);
+            buffer.putInt(mask);
+        }
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+
+    /**
+     * Reads the definitions written by {@link #serialize()} from the current
+     * position of the buffer. The position is advanced past the definitions.
+     *
+     * @param buffer
+     *            the buffer to read from
+     * @return the character category
+     */
+    public static CharacterCategory readFrom(ByteBuffer buffer) {
+        CharacterCategory result = new CharacterCategory();
+        int size = buffer.getInt();
+        for (int i = 0; i < size; ++i) {
+            Range range = new Range();
+            range.low = buffer.getInt();
+            range.high = buffer.getInt();
+            int mask = buffer.getInt();
+            for (CategoryType type : CategoryType.values()) {
+                if ((mask & type.getId()) != 0) {
+                    range.categories.add(type);
+                }
+            }
+            result.rangeList.add(range);
+        }
+        return result;
+    }
+
     public static CharacterCategory load(Config.Resource<CharacterCategory> resource) throws IOException {
         return resource.consume(res -> {
             CharacterCategory result = new CharacterCategory();
@@ -16,6 +16,7 @@
 
 package com.worksap.nlp.sudachi.dictionary;
 
+import java.nio.Buffer;
 import java.nio.ShortBuffer;
 
 /**
@@ -62,6 +63,16 @@ public final class Connection {
         matrix.put(ix(left, right), cost);
     }
 
+    /**
+     * @return a read-only view of the weights, indexed by
+     *         {@code right * leftSize + left}
+     */
+    public ShortBuffer asShortBuffer() {
+        ShortBuffer view = matrix.asReadOnlyBuffer();
+        ((Buffer) view).clear(); // a kludge for Java 9
+        return view;
+    }
+
     /**
      * @return a copy of itself with the buffer owned, instead of slice
      */
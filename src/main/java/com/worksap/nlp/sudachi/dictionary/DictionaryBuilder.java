@@ -20,6 +20,7 @@ import java.io.Console;
 import java.io.IOException;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.Duration;
@@ -38,10 +39,13 @@ public class DictionaryBuilder {
 
     static void printUsage() {
         Console console = System.console();
-        console.printf("usage: DictionaryBuilder -o file -m file [-d description] files...\n");
+        console.printf(
+                "usage: DictionaryBuilder -o file -m file [-d description] [-j threads] [-t directory] files...\n");
         console.printf("\t-o file\toutput to file\n");
         console.printf("\t-m file\tmatrix file\n");
         console.printf("\t-d description\tcomment\n");
+        console.printf("\t-j threads\tnumber of threads used to build\n");
+        console.printf("\t-t directory\tsort the index in temporary files in directory\n");
     }
 
     /**
@@ -54,6 +58,10 @@ public class DictionaryBuilder {
      * matrix.def format</li>
      * <li>{@code -d string} (optional) the description which is embedded in the
      * dictionary</li>
+     * <li>{@code -j threads} (optional) the number of threads used to build the
+     * dictionary</li>
+     * <li>{@code -t directory} (optional) sort the index in temporary files in
+     * the directory, to reduce memory usage for large lexicons</li>
      * <li>the paths of the source files in the CSV format</li>
      * </ol>
      *
@@ -64,6 +72,8 @@ public class DictionaryBuilder {
      */
     public static void main(String[] args) throws IOException {
         String description = "";
+        int parallelism = 1;
+        Path tempDirectory = null;
         String outputPath = null;
         String matrixPath = null;
 
@@ -75,6 +85,10 @@ public class DictionaryBuilder {
                 matrixPath = args[++i];
             } else if (args[i].equals("-d") && i + 1 < args.length) {
                 description = args[++i];
+            } else if (args[i].equals("-j") && i + 1 < args.length) {
+                parallelism = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-t") && i + 1 < args.length) {
+                tempDirectory = Paths.get(args[++i]);
             } else if (args[i].equals("-h")) {
                 printUsage();
                 return;
@@ -90,8 +104,11 @@ public class DictionaryBuilder {
 
         List<String> lexiconPaths = Arrays.asList(args).subList(i, args.length);
 
-        DicBuilder.System builder = DicBuilder.system().matrix(Paths.get(matrixPath)).description(description)
-                .progress(new Progress(20, new StderrProgress()));
+        DicBuilder.System builder = DicBuilder.system().parallelism(parallelism).matrix(Paths.get(matrixPath))
+                .description(description).progress(new Progress(20, new StderrProgress()));
+        if (tempDirectory != null) {
+            builder.indexSpill(tempDirectory);
+        }
 
         for (String lexiconPath : lexiconPaths) {
             builder = builder.lexicon(Paths.get(lexiconPath));
@@ -0,0 +1,297 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary;
+
+import com.worksap.nlp.sudachi.Config;
+import com.worksap.nlp.sudachi.MMap;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A snapshot of a fully set up dictionary.
+ *
+ * <p>
+ * Setting up a dictionary copies some of its parts to the heap: the connection
+ * matrix when it is edited by plugins, the word costs of user dictionaries when
+ * they are calculated, and the POS tags. A snapshot stores the result of the
+ * setup (the edited matrix, the merged POS table, the character categories and
+ * all dictionaries with their calculated costs) in a single file. The file is
+ * memory mapped read-only when loaded, so processes loading the same snapshot
+ * share one copy in the page cache.
+ *
+ * <p>
+ * The snapshot format is the following, all numbers are little endian.
+ *
+ * <pre>
+ * {@code
+ * long   magic
+ * int    version
+ * short  number of all POS tags, then the number of POS tags of the system dictionary
+ *        each POS tag is six strings of a short length and UTF-16 characters
+ * short  left size, then the right size of the connection matrix, then the matrix
+ * int    number of character category ranges, then (low, high, category mask) ints
+ * int    number of dictionaries, then (long offset, int length, short POS offset)
+ *        for each, the system dictionary being the first one
+ *        dictionaries in the binary dictionary format, aligned to 8 bytes
+ * }
+ * </pre>
+ */
+public class DictionarySnapshot implements Closeable {
+    private static final long MAGIC = 0x5375646163686953L;
+    private static final int VERSION = 1;
+    private static final int ALIGNMENT = 8;
+
+    private final ByteBuffer bytes;
+    private final GrammarImpl grammar;
+    private final LexiconSet lexicon;
+    private final List<BinaryDictionary> dictionaries;
+
+    private DictionarySnapshot(ByteBuffer bytes) throws IOException {
+        this.bytes = bytes;
+        ByteBuffer buffer = bytes.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getLong() != MAGIC) {
+            throw new IOException("invalid dictionary snapshot");
+        }
+        int version = buffer.getInt();
+        if (version != VERSION) {
+            throw new IOException("unsupported dictionary snapshot version: " + version);
+        }
+
+        int posSize = Short.toUnsignedInt(buffer.getShort());
+        short systemPosSize = buffer.getShort();
+        List<POS> posList = new ArrayList<>(posSize);
+        for (int i = 0; i < posSize; ++i) {
+            String[] elems = new String[POS.DEPTH];
+            for (int j = 0; j < POS.DEPTH; ++j) {
+                elems[j] = readString(buffer);
+            }
+            posList.add(new POS(elems));
+        }
+
+        int leftSize = buffer.getShort();
+        int rightSize = buffer.getShort();
+        ByteBuffer matrixView = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+        ((Buffer) matrixView).limit(2 * leftSize * rightSize);
+        Connection matrix = new Connection(matrixView.asShortBuffer(), leftSize, rightSize);
+        ((Buffer) buffer).position(buffer.position() + 2 * leftSize * rightSize);
+
+        CharacterCategory category = CharacterCategory.readFrom(buffer);
+        grammar = new GrammarImpl(posList, systemPosSize, matrix);
+        grammar.setCharacterCategory(category);
+
+        int numDictionaries = buffer.getInt();
+        long[] offsets = new long[numDictionaries];
+        int[] lengths = new int[numDictionaries];
+        short[] posOffsets = new short[numDictionaries];
+        for (int i = 0; i < numDictionaries; ++i) {
+            offsets[i] = buffer.getLong();
+            lengths[i] = buffer.getInt();
+            posOffsets[i] = buffer.getShort();
+        }
+
+        List<BinaryDictionary> loaded = new ArrayList<>(numDictionaries);
+        LexiconSet lexiconSet = null;
+        for (int i = 0; i < numDictionaries; ++i) {
+            ByteBuffer view = bytes.duplicate();
+            ((Buffer) view).position((int) offsets[i]);
+            ((Buffer) view).limit((int) offsets[i] + lengths[i]);
+            BinaryDictionary dictionary = new BinaryDictionary(view.slice().order(ByteOrder.LITTLE_ENDIAN));
+            loaded.add(dictionary);
+            if (i == 0) {
+                lexiconSet = new LexiconSet(dictionary.getLexicon(), systemPosSize);
+            } else {
+                lexiconSet.add(dictionary.getLexicon(), posOffsets[i]);
+            }
+        }
+        if (lexiconSet == null) {
+            throw new IOException("dictionary snapshot has no system dictionary");
+        }
+        lexicon = lexiconSet;
+        dictionaries = Collections.unmodifiableList(loaded);
+    }
+
+    /**
+     * Loads a snapshot written by
+     * {@link #write(GrammarImpl, LexiconSet, List, Path)}.
+     *
+     * @param resource
+     *            the snapshot file, it is memory mapped if it is in the filesystem
+     * @return the loaded snapshot
+     * @throws IOException
+     *             when IO fails or the file is not a snapshot
+     */
+    public static DictionarySnapshot load(Config.Resource<DictionarySnapshot> resource) throws IOException {
+        return resource.consume(res -> {
+            ByteBuffer bytes = res.asByteBuffer();
+            try {
+                return new DictionarySnapshot(bytes);
+            } catch (IOException | RuntimeException e) {
+                MMap.unmap(bytes);
+                throw e;
+            }
+        });
+    }
+
+    /**
+     * Writes a snapshot of a set up dictionary.
+     *
+     * @param grammar
+     *            the grammar of the dictionary
+     * @param lexicon
+     *            the lexicon of the dictionary
+     * @param dictionaries
+     *            the binary dictionaries in the order they were added to the
+     *            lexicon, starting with the system dictionary
+     * @param path
+     *            the file to write to
+     * @throws IOException
+     *             when IO fails
+     */
+    public static void write(GrammarImpl grammar, LexiconSet lexicon, List<BinaryDictionary> dictionaries,
+            Path path) throws IOException {
+        if (lexicon.lexicons.size() != dictionaries.size()) {
+            throw new IllegalArgumentException("the number of dictionaries does not match the lexicon");
+        }
+        for (int i = 0; i < dictionaries.size(); ++i) {
+            if (lexicon.lexicons.get(i) != dictionaries.get(i).getLexicon()) {
+                throw new IllegalArgumentException("dictionary " + i + " does not match the lexicon");
+            }
+        }
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, serializeHeader(grammar));
+
+            ShortBuffer matrix = grammar.getConnection().asShortBuffer();
+            ByteBuffer matrixBytes = ByteBuffer.allocate(4 + 2 * matrix.remaining());
+            matrixBytes.order(ByteOrder.LITTLE_ENDIAN);
+            matrixBytes.putShort((short) grammar.getConnection().getLeftSize());
+            matrixBytes.putShort((short) grammar.getConnection().getRightSize());
+            matrixBytes.asShortBuffer().put(matrix);
+            ((Buffer) matrixBytes).rewind();
+            writeFully(channel, matrixBytes);
+
+            writeFully(channel, grammar.getCharacterCategory().serialize());
+
+            int numDictionaries = dictionaries.size();
+            ByteBuffer directory = ByteBuffer.allocate(4 + 14 * numDictionaries);
+            directory.order(ByteOrder.LITTLE_ENDIAN);
+            directory.putInt(numDictionaries);
+            long offset = align(channel.position() + directory.capacity());
+            for (int i = 0; i < numDictionaries; ++i) {
+                int length = dictionaries.get(i).storageSize();
+                directory.putLong(offset);
+                directory.putInt(length);
+                directory.putShort(lexicon.posOffsets.get(i));
+                offset = align(offset + length);
+            }
+            ((Buffer) directory).flip();
+            writeFully(channel, directory);
+
+            for (BinaryDictionary dictionary : dictionaries) {
+                writeFully(channel, ByteBuffer.allocate((int) (align(channel.position()) - channel.position())));
+                dictionary.writeTo(channel);
+            }
+        }
+    }
+
+    private static ByteBuffer serializeHeader(GrammarImpl grammar) {
+        int posSize = grammar.getPartOfSpeechSize();
+        int size = 8 + 4 + 2 + 2;
+        for (int i = 0; i < posSize; ++i) {
+            for (String elem : grammar.getPartOfSpeechString((short) i)) {
+                size += 2 + 2 * elem.length();
+            }
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putLong(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putShort((short) posSize);
+        buffer.putShort(grammar.getSystemPartOfSpeechSize());
+        for (int i = 0; i < posSize; ++i) {
+            for (String elem : grammar.getPartOfSpeechString((short) i)) {
+                buffer.putShort((short) elem.length());
+                for (int j = 0; j < elem.length(); ++j) {
+                    buffer.putChar(elem.charAt(j));
+                }
+            }
+        }
+        ((Buffer) buffer).flip();
+        return buffer;
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        char[] chars = new char[length];
+        for (int i = 0; i < length; ++i) {
+            chars[i] = buffer.getChar();
+        }
+        return new String(chars);
+    }
+
+    private static long align(long offset) {
+        return (offset + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return the grammar with the merged POS tags, the edited connection matrix
+     *         and the character categories
+     */
+    public GrammarImpl getGrammar() {
+        return grammar;
+    }
+
+    /**
+     * @return the lexicon with all dictionaries
+     */
+    public LexiconSet getLexicon() {
+        return lexicon;
+    }
+
+    /**
+     * @return the binary dictionaries, starting with the system dictionary
+     */
+    public List<BinaryDictionary> getDictionaries() {
+        return dictionaries;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (BinaryDictionary dictionary : dictionaries) {
+            dictionary.close();
+        }
+        MMap.unmap(bytes);
+    }
+}
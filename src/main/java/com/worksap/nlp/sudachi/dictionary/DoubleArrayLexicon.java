@@ -19,7 +19,17 @@ package com.worksap.nlp.sudachi.dictionary;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 
 import com.worksap.nlp.dartsclone.DoubleArray;
 import com.worksap.nlp.sudachi.MorphemeList;
@@ -28,11 +38,15 @@ import com.worksap.nlp.sudachi.Tokenizer;
 public class DoubleArrayLexicon implements Lexicon {
 
     static final int USER_DICT_COST_PAR_MORPH = -20;
+    static final int COST_BLOCK_SIZE = 256;
 
     private final WordIdTable wordIdTable;
     private final WordParameterList wordParams;
     private final WordInfoList wordInfos;
     private final DoubleArray trie;
+    private final int wordParamsOffset;
+    private volatile WordKeyIndex wordKeyIndex;
+    private volatile long[] firstCharBuckets;
 
     public DoubleArrayLexicon(ByteBuffer bytes, int offset, boolean hasSynonymGid) {
         trie = new DoubleArray();
@@ -46,6 +60,7 @@ public class DoubleArrayLexicon implements Lexicon {
         wordIdTable = new WordIdTable(bytes, offset);
         offset += wordIdTable.storageSize();
 
+        wordParamsOffset = offset;
         wordParams = new WordParameterList(bytes, offset);
         offset += wordParams.storageSize();
 
@@ -117,16 +132,160 @@ public class DoubleArrayLexicon implements Lexicon {
         }
     }
 
+    /**
+     * Finds the word with the given surface, POS id and reading form.
+     * <p>
+     * The first call builds a hash index over all words of the lexicon.
+     *
+     * @return the id of the first such word in the lexicon, or -1 if there is none
+     */
     @Override
     public int getWordId(String headword, short posId, String readingForm) {
-        for (int wid = 0; wid < wordInfos.size(); wid++) {
-            WordInfo info = wordInfos.getWordInfo(wid);
-            if (info.getSurface().equals(headword) && info.getPOSId() == posId
-                    && info.getReadingForm().equals(readingForm)) {
-                return wid;
+        WordKeyIndex index = wordKeyIndex;
+        if (index == null) {
+            index = buildWordKeyIndex();
+        }
+        return index.find(headword, posId, readingForm);
+    }
+
+    private synchronized WordKeyIndex buildWordKeyIndex() {
+        if (wordKeyIndex == null) {
+            wordKeyIndex = WordKeyIndex.build(wordInfos);
+        }
+        return wordKeyIndex;
+    }
+
+    /**
+     * Returns the serialized form of a word, which can be copied into a new
+     * dictionary as long as the word ids it refers to are the same.
+     *
+     * @param wordId
+     *            word id
+     * @return a read-only buffer of the bytes of the word
+     */
+    public ByteBuffer getSerializedWordInfo(int wordId) {
+        return wordInfos.getSerialized(wordId);
+    }
+
+    /**
+     * Recovers the keys of the words by traversing the trie.
+     *
+     * @return for each word id, the UTF-8 bytes of its key, or null if the word
+     *         is not in the trie
+     */
+    public byte[][] getWordKeys() {
+        byte[][] keys = new byte[size()][];
+        IntBuffer units = trie.array();
+        int numUnits = trie.size();
+        if (numUnits == 0) {
+            return keys;
+        }
+        // depth-first traversal, each node is (index of its children, unit, depth)
+        int[] stack = new int[3 * 64];
+        byte[] path = new byte[64];
+        int top = 0;
+        int root = units.get(0);
+        stack[top++] = unitOffset(root);
+        stack[top++] = root;
+        stack[top++] = 0;
+        while (top > 0) {
+            int depth = stack[--top];
+            int unit = stack[--top];
+            int children = stack[--top];
+            if (depth > 0) {
+                path[depth - 1] = (byte) unit;
+            }
+            if (unitHasLeaf(unit)) {
+                int value = units.get(children) & Integer.MAX_VALUE;
+                for (Integer wordId : wordIdTable.get(value)) {
+                    keys[wordId] = Arrays.copyOf(path, depth);
+                }
+            }
+            for (int label = 1; label < 256; label++) {
+                int child = children ^ label;
+                if (child >= numUnits) {
+                    continue;
+                }
+                int childUnit = units.get(child);
+                if ((childUnit & (Integer.MIN_VALUE | 0xFF)) != label) {
+                    continue;
+                }
+                if (top + 3 > stack.length) {
+                    stack = Arrays.copyOf(stack, stack.length * 2);
+                }
+                if (depth + 1 > path.length) {
+                    path = Arrays.copyOf(path, path.length * 2);
+                }
+                stack[top++] = child ^ unitOffset(childUnit);
+                stack[top++] = childUnit;
+                stack[top++] = depth + 1;
+            }
+        }
+        return keys;
+    }
+
+    /**
+     * Returns the buckets of {@link FirstCharIndex} of the first characters of the
+     * keys in the trie. It is computed at the first call.
+     *
+     * @return bitmap of the buckets
+     */
+    long[] getFirstCharBuckets() {
+        long[] buckets = firstCharBuckets;
+        if (buckets == null) {
+            buckets = buildFirstCharBuckets();
+        }
+        return buckets;
+    }
+
+    private synchronized long[] buildFirstCharBuckets() {
+        if (firstCharBuckets == null) {
+            long[] buckets = new long[FirstCharIndex.BUCKETS / 64];
+            IntBuffer units = trie.array();
+            if (trie.size() > 0) {
+                markFirstChars(units, unitOffset(units.get(0)), 0, 0, 0, buckets);
             }
+            firstCharBuckets = buckets;
         }
-        return -1;
+        return firstCharBuckets;
+    }
+
+    /**
+     * Visits the nodes of the trie until the end of the first character of their
+     * keys. A key which ends inside a character can not be bucketed, so all
+     * buckets are marked for it.
+     */
+    private void markFirstChars(IntBuffer units, int children, int code, int depth, int length, long[] buckets) {
+        int numUnits = trie.size();
+        for (int label = 1; label < 256; label++) {
+            int child = children ^ label;
+            if (child >= numUnits) {
+                continue;
+            }
+            int childUnit = units.get(child);
+            if ((childUnit & (Integer.MIN_VALUE | 0xFF)) != label) {
+                continue;
+            }
+            int charLength = depth == 0 ? FirstCharIndex.charLength(label) : length;
+            int childCode = (code << 8) | label;
+            if (depth + 1 == charLength) {
+                int bucket = FirstCharIndex.bucket(childCode);
+                buckets[bucket >>> 6] |= 1L << bucket;
+            } else if (unitHasLeaf(childUnit)) {
+                Arrays.fill(buckets, -1L);
+                return;
+            } else {
+                markFirstChars(units, child ^ unitOffset(childUnit), childCode, depth + 1, charLength, buckets);
+            }
+        }
+    }
+
+    private static boolean unitHasLeaf(int unit) {
+        return ((unit >>> 8) & 1) == 1;
+    }
+
+    private static int unitOffset(int unit) {
+        return (unit >>> 10) << ((unit & (1 << 9)) >>> 6);
     }
 
     @Override
@@ -149,6 +308,19 @@ public class DoubleArrayLexicon implements Lexicon {
         return wordInfos.getWordInfo(wordId);
     }
 
+    @Override
+    public short getPOSId(int wordId) {
+        return wordInfos.getPOSId(wordId);
+    }
+
+    short getLength(int wordId) {
+        return wordInfos.getLength(wordId);
+    }
+
+    int[] getSplit(int wordId, Tokenizer.SplitMode mode) {
+        return wordInfos.getSplit(wordId, mode);
+    }
+
     @Override
     public int size() {
         return wordParams.size();
@@ -160,19 +332,145 @@ public class DoubleArrayLexicon implements Lexicon {
                 continue;
             }
             String surface = getWordInfo(wordId).getSurface();
-            MorphemeList ms = tokenizer.tokenize(surface);
-            int cost = ms.getInternalCost() + USER_DICT_COST_PAR_MORPH * ms.size();
-            if (cost > Short.MAX_VALUE) {
-                cost = Short.MAX_VALUE;
-            } else if (cost < Short.MIN_VALUE) {
-                cost = Short.MIN_VALUE;
+            wordParams.setCost(wordId, calculateCost(tokenizer, surface));
+        }
+    }
+
+    /**
+     * Computes the costs of the words which do not specify them using several
+     * threads.
+     * <p>
+     * Each thread uses its own tokenizer and computes the costs of disjoint
+     * ranges of words. The cost of a word depends only on the tokenizer, so the
+     * result is the same as with {@link #calculateCost(Tokenizer)}. The tokenizers
+     * must not use this lexicon. Small lexicons are processed in the calling
+     * thread.
+     *
+     * @param tokenizers
+     *            creates a tokenizer for each thread
+     * @param parallelism
+     *            the maximum number of threads
+     */
+    public void calculateCost(Supplier<Tokenizer> tokenizers, int parallelism) {
+        int[] wordIds = wordsWithoutCost();
+        if (wordIds.length == 0) {
+            return;
+        }
+        int numThreads = Math.min(parallelism, (wordIds.length + COST_BLOCK_SIZE - 1) / COST_BLOCK_SIZE);
+        if (numThreads <= 1) {
+            calculateCost(tokenizers.get(), wordIds, 0, wordIds.length);
+            return;
+        }
+
+        // copy parameters before workers write into them
+        wordParams.ensureCopied();
+        AtomicInteger nextBlock = new AtomicInteger();
+        Callable<Void> worker = () -> {
+            Tokenizer tokenizer = tokenizers.get();
+            while (true) {
+                int start = nextBlock.getAndIncrement() * COST_BLOCK_SIZE;
+                if (start >= wordIds.length) {
+                    return null;
+                }
+                calculateCost(tokenizer, wordIds, start, Math.min(start + COST_BLOCK_SIZE, wordIds.length));
+            }
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads, r -> {
+            Thread thread = new Thread(r, "sudachi-user-cost");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            List<Future<Void>> results = new ArrayList<>(numThreads);
+            for (int i = 0; i < numThreads; ++i) {
+                results.add(executor.submit(worker));
             }
-            wordParams.setCost(wordId, (short) cost);
+            for (Future<Void> result : results) {
+                result.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("interrupted while calculating costs", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException(cause);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
+    private int[] wordsWithoutCost() {
+        int size = wordParams.size();
+        int[] wordIds = new int[size];
+        int count = 0;
+        for (int wordId = 0; wordId < size; wordId++) {
+            if (getCost(wordId) == Short.MIN_VALUE) {
+                wordIds[count++] = wordId;
+            }
+        }
+        return Arrays.copyOf(wordIds, count);
+    }
+
+    private void calculateCost(Tokenizer tokenizer, int[] wordIds, int start, int end) {
+        for (int i = start; i < end; i++) {
+            int wordId = wordIds[i];
+            String surface = getWordInfo(wordId).getSurface();
+            wordParams.setCost(wordId, calculateCost(tokenizer, surface));
+        }
+    }
+
+    /**
+     * Computes the cost of a user word whose cost is not specified in the
+     * dictionary source.
+     * <p>
+     * The cost is derived from the analysis of the surface with the given
+     * tokenizer, so the result depends on the dictionaries the tokenizer uses.
+     *
+     * @param tokenizer
+     *            the tokenizer which analyzes the surface
+     * @param surface
+     *            the surface of the word
+     * @return the cost of the word
+     */
+    public static short calculateCost(Tokenizer tokenizer, String surface) {
+        MorphemeList ms = tokenizer.tokenize(surface);
+        int cost = ms.getInternalCost() + USER_DICT_COST_PAR_MORPH * ms.size();
+        if (cost > Short.MAX_VALUE) {
+            cost = Short.MAX_VALUE;
+        } else if (cost < Short.MIN_VALUE) {
+            cost = Short.MIN_VALUE;
+        }
+        return (short) cost;
+    }
+
+    int getWordParametersOffset() {
+        return wordParamsOffset;
+    }
+
+    int getWordParametersSize() {
+        return wordParams.storageSize();
+    }
+
+    ByteBuffer serializeWordParameters() {
+        return wordParams.serialize();
+    }
+
+    /**
+     * Does nothing. Dictionary parts of word ids are assigned by
+     * {@link LexiconSet}, so a lexicon can be shared by several sets.
+     *
+     * @param id
+     *            ignored
+     * @deprecated word ids do not depend on the lexicon anymore
+     */
+    @Deprecated
     public void setDictionaryId(int id) {
-        wordIdTable.setDictionaryId(id);
     }
 
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Merged index of the first characters of the keys of several lexicons.
+ * Characters are hashed into buckets, and each bucket lists the lexicons which
+ * have a key starting with a character of the bucket, in the reverse order of
+ * the lexicons. A lookup only visits the lexicons of the bucket of the character
+ * at its start, so its cost does not grow with lexicons which can not match.
+ */
+final class FirstCharIndex {
+    static final int BITS = 14;
+    static final int BUCKETS = 1 << BITS;
+    private static final int[] NONE = new int[0];
+
+    private final int[][] candidates = new int[BUCKETS][];
+
+    FirstCharIndex() {
+        Arrays.fill(candidates, NONE);
+    }
+
+    /**
+     * Adds a lexicon, its index must be larger than the indices of all lexicons
+     * added before. Buckets which had the same lexicons before share their new
+     * list as well.
+     *
+     * @param index
+     *            index of the lexicon
+     * @param buckets
+     *            bitmap of the buckets of the first characters of its keys
+     */
+    void add(int index, long[] buckets) {
+        Map<int[], int[]> extended = new IdentityHashMap<>();
+        for (int i = 0; i < buckets.length; ++i) {
+            long bits = buckets[i];
+            while (bits != 0) {
+                int bucket = i * 64 + Long.numberOfTrailingZeros(bits);
+                bits &= bits - 1;
+                int[] previous = candidates[bucket];
+                int[] next = extended.get(previous);
+                if (next == null) {
+                    next = new int[previous.length + 1];
+                    next[0] = index;
+                    System.arraycopy(previous, 0, next, 1, previous.length);
+                    extended.put(previous, next);
+                }
+                candidates[bucket] = next;
+            }
+        }
+    }
+
+    /**
+     * Returns the lexicons which can have a key starting at the offset.
+     *
+     * @return indices of the lexicons, the last one first; must not be modified
+     */
+    int[] candidates(byte[] text, int offset, int limit) {
+        return candidates[bucket(text, offset, limit)];
+    }
+
+    /**
+     * Returns the number of bytes of an UTF-8 character with the leading byte.
+     * Invalid leading bytes are treated as characters of a single byte.
+     */
+    static int charLength(int lead) {
+        if (lead < 0xC0) {
+            return 1;
+        } else if (lead < 0xE0) {
+            return 2;
+        } else if (lead < 0xF0) {
+            return 3;
+        }
+        return 4;
+    }
+
+    static int bucket(int code) {
+        return (code * 0x9E3779B1) >>> (32 - BITS);
+    }
+
+    static int bucket(byte[] text, int offset, int limit) {
+        int lead = Byte.toUnsignedInt(text[offset]);
+        int end = Math.min(offset + charLength(lead), limit);
+        int code = lead;
+        for (int i = offset + 1; i < end; ++i) {
+            code = (code << 8) | Byte.toUnsignedInt(text[i]);
+        }
+        return bucket(code);
+    }
+}
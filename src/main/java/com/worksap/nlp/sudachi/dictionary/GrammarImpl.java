@@ -17,9 +17,12 @@
 package com.worksap.nlp.sudachi.dictionary;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public class GrammarImpl implements Grammar {
     private static final int POS_DEPTH = POS.DEPTH;
@@ -35,6 +38,7 @@ public class GrammarImpl implements Grammar {
     private CharacterCategory charCategory;
 
     private int storageSize;
+    private volatile PosTable posTable;
 
     public GrammarImpl(ByteBuffer bytes, int offset) {
         int originalOffset = offset;
@@ -64,6 +68,25 @@ public class GrammarImpl implements Grammar {
         storageSize = (offset - originalOffset) + 2 * leftIdSize * rightIdSize;
     }
 
+    /**
+     * Creates a grammar from already decoded parts.
+     *
+     * @param posList
+     *            all POS tags, starting with the ones of the system dictionary
+     * @param systemPosSize
+     *            the number of POS tags of the system dictionary
+     * @param matrix
+     *            the connection matrix, it is copied before the first
+     *            modification
+     */
+    public GrammarImpl(List<POS> posList, short systemPosSize, Connection matrix) {
+        bytes = ByteBuffer.allocate(0);
+        this.posList = new ArrayList<>(posList);
+        originalPosSize = systemPosSize;
+        this.matrix = matrix;
+        isCopiedConnectTable = false;
+    }
+
     public GrammarImpl() {
         bytes = ByteBuffer.allocate(0);
         posList = Collections.emptyList();
@@ -74,6 +97,25 @@ public class GrammarImpl implements Grammar {
         return storageSize;
     }
 
+    /**
+     * Creates a grammar with the first POS tags of this grammar only. The
+     * connection matrix and the character category are shared with this grammar,
+     * the matrix is copied before the first modification.
+     *
+     * @param size
+     *            the number of POS tags to keep, at least the number of POS tags
+     *            of the system dictionary
+     * @return a new grammar without the POS tags after the first {@code size} ones
+     */
+    public GrammarImpl withFirstPos(int size) {
+        if (size < originalPosSize || size > posList.size()) {
+            throw new IllegalArgumentException("invalid number of POS tags: " + size);
+        }
+        GrammarImpl grammar = new GrammarImpl(posList.subList(0, size), originalPosSize, matrix);
+        grammar.setCharacterCategory(charCategory);
+        return grammar;
+    }
+
     public void addPosList(GrammarImpl grammar) {
         posList.addAll(grammar.posList);
     }
@@ -92,6 +134,70 @@ public class GrammarImpl implements Grammar {
         return posList.get(posId);
     }
 
+    /**
+     * Returns the POS tag joined with commas. The same string instance is returned
+     * for each call with the same id.
+     *
+     * @param posId
+     *            the id of the POS tag
+     * @return the joined POS tag
+     */
+    public String getPartOfSpeechJoined(short posId) {
+        return posTable().joined[posId];
+    }
+
+    /**
+     * Returns the POS tag joined with commas and encoded in UTF-8. The returned
+     * array is shared and must not be modified.
+     *
+     * @param posId
+     *            the id of the POS tag
+     * @return the joined POS tag in UTF-8
+     */
+    public byte[] getPartOfSpeechUtf8(short posId) {
+        return posTable().utf8[posId];
+    }
+
+    /**
+     * Returns the id of a component of the POS tag. Components are numbered
+     * separately for each level, equal strings on the same level have the same id.
+     *
+     * @param posId
+     *            the id of the POS tag
+     * @param level
+     *            the level of the component, from 0 to {@link POS#DEPTH} - 1
+     * @return the id of the component
+     */
+    public int getPartOfSpeechComponentId(short posId, int level) {
+        return posTable().componentIds[level][posId];
+    }
+
+    /**
+     * Returns the id of a POS component string on the given level.
+     *
+     * @param level
+     *            the level of the component, from 0 to {@link POS#DEPTH} - 1
+     * @param component
+     *            the component string
+     * @return the id of the component, or -1 if no POS tag has it on this level
+     */
+    public int getPartOfSpeechComponentId(int level, String component) {
+        return posTable().componentIndex.get(level).getOrDefault(component, -1);
+    }
+
+    /**
+     * POS tags can only be appended, so the table is rebuilt when their number
+     * changes.
+     */
+    private PosTable posTable() {
+        PosTable table = posTable;
+        if (table == null || table.joined.length != posList.size()) {
+            table = new PosTable(posList);
+            posTable = table;
+        }
+        return table;
+    }
+
     @Override
     public short getPartOfSpeechId(List<String> pos) {
         // POS.equals() is compatible with List<String>, this is OK
@@ -173,4 +279,31 @@ public class GrammarImpl implements Grammar {
     public void invalidate() {
         matrix = null;
     }
+
+    private static final class PosTable {
+        final String[] joined;
+        final byte[][] utf8;
+        final int[][] componentIds;
+        final List<Map<String, Integer>> componentIndex;
+
+        PosTable(List<POS> posList) {
+            int size = posList.size();
+            joined = new String[size];
+            utf8 = new byte[size][];
+            componentIds = new int[POS_DEPTH][size];
+            componentIndex = new ArrayList<>(POS_DEPTH);
+            for (int level = 0; level < POS_DEPTH; level++) {
+                componentIndex.add(new HashMap<>());
+            }
+            for (int i = 0; i < size; i++) {
+                POS pos = posList.get(i);
+                joined[i] = pos.toString();
+                utf8[i] = joined[i].getBytes(StandardCharsets.UTF_8);
+                for (int level = 0; level < POS_DEPTH; level++) {
+                    Map<String, Integer> index = componentIndex.get(level);
+                    componentIds[level][i] = index.computeIfAbsent(pos.get(level), k -> index.size());
+                }
+            }
+        }
+    }
 }
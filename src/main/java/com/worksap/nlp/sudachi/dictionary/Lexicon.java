@@ -78,6 +78,21 @@ public interface Lexicon {
      */
     WordInfo getWordInfo(int wordId);
 
+    /**
+     * Returns the part-of-speech ID of the morpheme specified by the word ID.
+     *
+     * <p>
+     * when the word ID is out of range, the behavior is undefined.
+     *
+     * @param wordId
+     *            the word ID of the morpheme
+     * @return the part-of-speech ID, same as the one of
+     *         {@link #getWordInfo(int)}
+     */
+    default short getPOSId(int wordId) {
+        return getWordInfo(wordId).getPOSId();
+    }
+
     /**
      * Returns the ID of the dictionary containing the morpheme specified by the
      * word ID.
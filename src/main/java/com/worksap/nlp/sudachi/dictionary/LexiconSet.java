@@ -16,16 +16,44 @@
 
 package com.worksap.nlp.sudachi.dictionary;
 
+import com.worksap.nlp.sudachi.Tokenizer;
 import com.worksap.nlp.sudachi.WordId;
 
 import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+/**
+ * The system lexicon and the user lexicons used together.
+ *
+ * <p>
+ * Word ids of the first {@link WordId#MAX_DIC_ID} lexicons have the index of the
+ * lexicon as their dictionary part. The following lexicons share the dictionary
+ * part {@link WordId#MAX_DIC_ID}, and the word parts of their ids are offset by
+ * the sizes of the lexicons before them, so they must have
+ * {@link WordId#MAX_WORD_ID} words in total at most. Use
+ * {@link #dictionaryOf(int)} instead of {@link WordId#dic(int)} to get the index
+ * of the lexicon of a word id.
+ *
+ * <p>
+ * Lookups only visit the lexicons which have a key starting with the character
+ * at the start of the lookup, see {@link FirstCharIndex}.
+ *
+ * <p>
+ * The A-unit and B-unit splits of recently split words are cached with the
+ * lengths of their parts, see {@link #getSplitWithLengths}.
+ */
 public class LexiconSet implements Lexicon {
-    static final int MAX_DICTIONARIES = 15;
+    static final int MAX_DICTIONARIES = 256;
+    private static final int SPLIT_CACHE_BITS = 12;
 
     List<DoubleArrayLexicon> lexicons = new ArrayList<>();
     final short systemPartOfSpeechSize;
     List<Short> posOffsets = new ArrayList<>();
+    private int[] idBases = new int[4];
+    private int sharedWords;
+    private final FirstCharIndex firstChars = new FirstCharIndex();
+    private AtomicReferenceArray<int[]> aUnitSplits;
+    private AtomicReferenceArray<int[]> bUnitSplits;
 
     public LexiconSet(Lexicon systemLexicon, short systemPartOfSpeechSize) {
         this.systemPartOfSpeechSize = systemPartOfSpeechSize;
@@ -34,9 +62,42 @@ public class LexiconSet implements Lexicon {
 
     public void add(Lexicon lexicon, short posOffset) {
         DoubleArrayLexicon daLexicon = (DoubleArrayLexicon) lexicon;
-        daLexicon.setDictionaryId(lexicons.size());
+        int index = lexicons.size();
+        if (index >= MAX_DICTIONARIES) {
+            throw new IllegalArgumentException("too many dictionaries");
+        }
+        int idBase;
+        if (index < WordId.MAX_DIC_ID) {
+            idBase = WordId.dicIdMask(index);
+        } else {
+            if ((long) sharedWords + daLexicon.size() > WordId.MAX_WORD_ID + 1L) {
+                throw new IllegalArgumentException("too many words in user dictionaries");
+            }
+            idBase = WordId.dicIdMask(WordId.MAX_DIC_ID) | sharedWords;
+            sharedWords += daLexicon.size();
+        }
+        if (index == idBases.length) {
+            idBases = Arrays.copyOf(idBases, index * 2);
+        }
+        idBases[index] = idBase;
+        firstChars.add(index, daLexicon.getFirstCharBuckets());
         lexicons.add(daLexicon);
         posOffsets.add(posOffset);
+        aUnitSplits = new AtomicReferenceArray<>(1 << SPLIT_CACHE_BITS);
+        bUnitSplits = new AtomicReferenceArray<>(1 << SPLIT_CACHE_BITS);
+    }
+
+    /**
+     * Returns the id of the first POS tag of a user dictionary. POS tags before
+     * the ones of the first user dictionary belong to the system dictionary or
+     * were registered by plugins.
+     *
+     * @param dictionaryId
+     *            the id of the user dictionary
+     * @return the POS offset of the dictionary
+     */
+    public short getPosOffset(int dictionaryId) {
+        return posOffsets.get(dictionaryId);
     }
 
     public boolean isFull() {
@@ -45,13 +106,17 @@ public class LexiconSet implements Lexicon {
 
     @Override
     public Iterator<int[]> lookup(byte[] text, int offset) {
-        if (lexicons.isEmpty()) {
+        if (lexicons.isEmpty() || offset >= text.length) {
             return Collections.emptyIterator();
         }
         if (lexicons.size() == 1) {
             return lexicons.get(0).lookup(text, offset);
         }
-        return new Itr(text, offset, lexicons.size() - 1);
+        int[] candidates = firstChars.candidates(text, offset, text.length);
+        if (candidates.length == 0) {
+            return Collections.emptyIterator();
+        }
+        return new Itr(text, offset, candidates);
     }
 
     /**
@@ -66,25 +131,26 @@ public class LexiconSet implements Lexicon {
     private class Itr implements Iterator<int[]> {
         byte[] text;
         int offset;
-        int dictId;
+        int[] candidates;
+        int position;
         Iterator<int[]> iterator;
 
-        Itr(byte[] text, int offset, int start) {
+        Itr(byte[] text, int offset, int[] candidates) {
             this.text = text;
             this.offset = offset;
-            dictId = start;
-            iterator = lexicons.get(dictId).lookup(text, offset);
+            this.candidates = candidates;
+            iterator = lexicons.get(candidates[0]).lookup(text, offset);
         }
 
         @Override
         public boolean hasNext() {
             while (!iterator.hasNext()) {
-                int nextId = dictId - 1;
-                if (nextId < 0) {
+                int next = position + 1;
+                if (next >= candidates.length) {
                     return false;
                 }
-                iterator = lexicons.get(nextId).lookup(text, offset);
-                dictId = nextId;
+                iterator = lexicons.get(candidates[next]).lookup(text, offset);
+                position = next;
             }
             return true;
         }
@@ -93,7 +159,7 @@ public class LexiconSet implements Lexicon {
         public int[] next() {
             if (hasNext()) {
                 int[] r = iterator.next();
-                r[0] = buildWordId(dictId, r[0]);
+                r[0] = buildWordId(candidates[position], r[0]);
                 return r;
             }
             throw new NoSuchElementException();
@@ -113,23 +179,26 @@ public class LexiconSet implements Lexicon {
 
     @Override
     public short getLeftId(int wordId) {
-        return lexicons.get(WordId.dic(wordId)).getLeftId(getWordId(wordId));
+        int dictionaryId = dictionaryOf(wordId);
+        return lexicons.get(dictionaryId).getLeftId(localWordId(dictionaryId, wordId));
     }
 
     @Override
     public short getRightId(int wordId) {
-        return lexicons.get(WordId.dic(wordId)).getRightId(getWordId(wordId));
+        int dictionaryId = dictionaryOf(wordId);
+        return lexicons.get(dictionaryId).getRightId(localWordId(dictionaryId, wordId));
     }
 
     @Override
     public short getCost(int wordId) {
-        return lexicons.get(WordId.dic(wordId)).getCost(getWordId(wordId));
+        int dictionaryId = dictionaryOf(wordId);
+        return lexicons.get(dictionaryId).getCost(localWordId(dictionaryId, wordId));
     }
 
     @Override
     public WordInfo getWordInfo(int wordId) {
-        int dictionaryId = WordId.dic(wordId);
-        int internalId = WordId.word(wordId);
+        int dictionaryId = dictionaryOf(wordId);
+        int internalId = localWordId(dictionaryId, wordId);
         WordInfo wordInfo = lexicons.get(dictionaryId).getWordInfo(internalId);
         short posId = wordInfo.getPOSId();
         if (dictionaryId > 0 && posId >= systemPartOfSpeechSize) { // user defined part-of-speech
@@ -141,32 +210,130 @@ public class LexiconSet implements Lexicon {
         return wordInfo;
     }
 
+    @Override
+    public short getPOSId(int wordId) {
+        int dictionaryId = dictionaryOf(wordId);
+        short posId = lexicons.get(dictionaryId).getPOSId(localWordId(dictionaryId, wordId));
+        if (dictionaryId > 0 && posId >= systemPartOfSpeechSize) { // user defined part-of-speech
+            return (short) (posId - systemPartOfSpeechSize + posOffsets.get(dictionaryId));
+        }
+        return posId;
+    }
+
     @Override
     public int size() {
         return lexicons.stream().mapToInt(Lexicon::size).sum();
     }
 
-    private static int getWordId(int wordId) {
-        return WordId.word(wordId);
+    /**
+     * Returns the index of the lexicon of a word id of this set. It is the same as
+     * {@link WordId#dic(int)} for the first {@link WordId#MAX_DIC_ID} lexicons.
+     *
+     * @param wordId
+     *            word id returned by this set
+     * @return the index of the lexicon, 0 for the system lexicon
+     */
+    public int dictionaryOf(int wordId) {
+        int dic = WordId.dic(wordId);
+        if (dic < WordId.MAX_DIC_ID || lexicons.size() <= WordId.MAX_DIC_ID + 1) {
+            return dic;
+        }
+        int[] bases = idBases;
+        int low = WordId.MAX_DIC_ID;
+        int high = lexicons.size() - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (bases[mid] <= wordId) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the dictionary id of a word, see {@link #dictionaryOf(int)}.
+     */
+    @Override
+    @Deprecated
+    public int getDictionaryId(int wordId) {
+        return dictionaryOf(wordId);
+    }
+
+    /**
+     * Returns the word id of the first word of a lexicon. Word ids of the lexicon
+     * are this value plus the ids of words inside the lexicon.
+     *
+     * @param dictionaryId
+     *            index of the lexicon
+     * @return the base of the word ids of the lexicon
+     */
+    int idBase(int dictionaryId) {
+        return idBases[dictionaryId];
+    }
+
+    private int localWordId(int dictionaryId, int wordId) {
+        return wordId - idBases[dictionaryId];
     }
 
     private int buildWordId(int dictId, int wordId) {
         if (dictId >= lexicons.size()) {
             throw new IndexOutOfBoundsException("dictionaryId is too large: " + dictId);
         }
-        return WordId.make(dictId, wordId);
+        if (wordId > WordId.MAX_WORD_ID) {
+            throw new IndexOutOfBoundsException("wordId is too large: " + wordId);
+        }
+        return idBases[dictId] + wordId;
     }
 
     private void convertSplit(int[] split, int dictionaryId) {
         for (int i = 0; i < split.length; i++) {
             if (WordId.dic(split[i]) > 0) {
-                split[i] = buildWordId(dictionaryId, getWordId(split[i]));
+                split[i] = buildWordId(dictionaryId, WordId.word(split[i]));
             }
         }
     }
 
+    /**
+     * Returns the A-unit or B-unit split of a word with the lengths of its parts,
+     * without decoding the word information.
+     *
+     * <p>
+     * The returned array starts with the word id, followed by pairs of the word
+     * id and the length in bytes of each part. It is shared by the callers and
+     * must not be modified.
+     *
+     * @param wordId
+     *            word id returned by this set
+     * @param mode
+     *            {@link Tokenizer.SplitMode#A} or {@link Tokenizer.SplitMode#B}
+     * @return the word id followed by the parts of the split, only the word id if
+     *         the word has no split
+     */
+    public int[] getSplitWithLengths(int wordId, Tokenizer.SplitMode mode) {
+        AtomicReferenceArray<int[]> cache = mode == Tokenizer.SplitMode.A ? aUnitSplits : bUnitSplits;
+        int slot = (wordId * 0x9E3779B9) >>> (32 - SPLIT_CACHE_BITS);
+        int[] split = cache.get(slot);
+        if (split != null && split[0] == wordId) {
+            return split;
+        }
+        int dictionaryId = dictionaryOf(wordId);
+        int[] parts = lexicons.get(dictionaryId).getSplit(localWordId(dictionaryId, wordId), mode);
+        convertSplit(parts, dictionaryId);
+        split = new int[1 + 2 * parts.length];
+        split[0] = wordId;
+        for (int i = 0; i < parts.length; i++) {
+            int partDictionaryId = dictionaryOf(parts[i]);
+            split[1 + 2 * i] = parts[i];
+            split[2 + 2 * i] = lexicons.get(partDictionaryId).getLength(localWordId(partDictionaryId, parts[i]));
+        }
+        cache.set(slot, split);
+        return split;
+    }
+
     public WordLookup makeLookup() {
-        return new WordLookup(this.lexicons);
+        return new WordLookup(this.lexicons, Arrays.copyOf(idBases, lexicons.size()), firstChars);
     }
 
     public boolean isValid() {
@@ -16,9 +16,14 @@
 
 package com.worksap.nlp.sudachi.dictionary;
 
+import com.worksap.nlp.sudachi.Config;
+import com.worksap.nlp.sudachi.Dictionary;
+import com.worksap.nlp.sudachi.DictionaryFactory;
+import com.worksap.nlp.sudachi.PathAnchor;
 import com.worksap.nlp.sudachi.dictionary.build.DicBuilder;
 import com.worksap.nlp.sudachi.dictionary.build.Progress;
 
+import java.io.ByteArrayInputStream;
 import java.io.Console;
 import java.io.IOException;
 import java.nio.channels.SeekableByteChannel;
@@ -36,10 +41,16 @@ import java.util.List;
 public class UserDictionaryBuilder {
     static void printUsage() {
         Console console = System.console();
-        console.printf("usage: UserDictionaryBuilder -o file -s file [-d description] files...\n");
+        console.printf("usage: UserDictionaryBuilder -o file -s file [-d description] [-j threads] [-c] [-r file]"
+                + " [-p file [-x file]] files...\n");
         console.printf("\t-o file\toutput to file\n");
         console.printf("\t-s file\tsystem dictionary\n");
         console.printf("\t-d description\tcomment\n");
+        console.printf("\t-j threads\tnumber of threads used to build\n");
+        console.printf("\t-c\tcompute unspecified word costs when building\n");
+        console.printf("\t-r file\tsettings used to compute word costs (implies -c)\n");
+        console.printf("\t-p file\tprevious user dictionary to update with the added files\n");
+        console.printf("\t-x file\tlines removed from the previous user dictionary\n");
     }
 
     /**
@@ -51,7 +62,21 @@ public class UserDictionaryBuilder {
      * <li>{@code -s file} the path of the system dictionary</li>
      * <li>{@code -d string} (optional) the description which is embedded in the
      * dictionary</li>
-     * <li>the paths of the source file in the CSV format</li>
+     * <li>{@code -c} (optional) compute the costs of the words which do not
+     * specify them when building, instead of each time the dictionary is
+     * loaded</li>
+     * <li>{@code -r file} (optional) the settings which are used to compute the
+     * costs, implies {@code -c}. The system dictionary is replaced by the one
+     * given with {@code -s}; user dictionaries in the settings should be the ones
+     * which precede the built dictionary at runtime.</li>
+     * <li>{@code -j threads} (optional) the number of threads used to build the
+     * dictionary</li>
+     * <li>{@code -p file} (optional) the previous user dictionary, whose words are
+     * kept in the output followed by the words of the source files</li>
+     * <li>{@code -x file} (optional) the lines in the CSV format which are removed
+     * from the previous user dictionary</li>
+     * <li>the paths of the source file in the CSV format, which may be omitted
+     * with {@code -p}</li>
      * </ol>
      *
      * @param args
@@ -61,8 +86,13 @@ public class UserDictionaryBuilder {
      */
     public static void main(String[] args) throws IOException {
         String description = "";
+        int parallelism = 1;
         Path outputPath = null;
         String sysDictPath = null;
+        boolean computeCosts = false;
+        Path settingsPath = null;
+        Path previousPath = null;
+        Path removedPath = null;
 
         int i;
         for (i = 0; i < args.length; i++) {
@@ -72,6 +102,17 @@ public class UserDictionaryBuilder {
                 sysDictPath = args[++i];
             } else if (args[i].equals("-d") && i + 1 < args.length) {
                 description = args[++i];
+            } else if (args[i].equals("-j") && i + 1 < args.length) {
+                parallelism = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("-c")) {
+                computeCosts = true;
+            } else if (args[i].equals("-r") && i + 1 < args.length) {
+                settingsPath = Paths.get(args[++i]);
+                computeCosts = true;
+            } else if (args[i].equals("-p") && i + 1 < args.length) {
+                previousPath = Paths.get(args[++i]);
+            } else if (args[i].equals("-x") && i + 1 < args.length) {
+                removedPath = Paths.get(args[++i]);
             } else if (args[i].equals("-h")) {
                 printUsage();
                 return;
@@ -80,25 +121,77 @@ public class UserDictionaryBuilder {
             }
         }
 
-        if (args.length <= i || outputPath == null || sysDictPath == null) {
+        if ((args.length <= i && previousPath == null) || outputPath == null || sysDictPath == null
+                || (removedPath != null && previousPath == null)) {
             printUsage();
             return;
         }
+        if (previousPath != null && previousPath.toAbsolutePath().normalize()
+                .equals(outputPath.toAbsolutePath().normalize())) {
+            throw new IllegalArgumentException("output must differ from the previous dictionary");
+        }
 
         List<String> lexiconPaths = Arrays.asList(args).subList(i, args.length);
 
-        try (BinaryDictionary system = new BinaryDictionary(sysDictPath)) {
-            DicBuilder.User builder = DicBuilder.user(system).description(description)
+        try (BinaryDictionary system = new BinaryDictionary(sysDictPath);
+                BinaryDictionary previous = previousPath == null ? null
+                        : BinaryDictionary.loadUser(previousPath.toString())) {
+            DicBuilder.User builder = DicBuilder.user(system).description(description).parallelism(parallelism)
                     .progress(new Progress(20, new DictionaryBuilder.StderrProgress()));
 
+            if (previous != null) {
+                if (removedPath == null) {
+                    builder.update(previous, new ByteArrayInputStream(new byte[0]));
+                } else {
+                    builder.update(previous, removedPath);
+                }
+                printMapping(builder.getWordIdMapping());
+            }
+
             for (String lexicon : lexiconPaths) {
                 builder.lexicon(Paths.get(lexicon));
             }
 
-            try (SeekableByteChannel channel = Files.newByteChannel(outputPath, StandardOpenOption.WRITE,
-                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
-                builder.build(channel);
+            if (computeCosts) {
+                try (Dictionary dictionary = new DictionaryFactory()
+                        .create(costConfig(settingsPath).systemDictionary(Paths.get(sysDictPath)))) {
+                    builder.costs(dictionary.create());
+                    build(builder, outputPath);
+                }
+            } else {
+                build(builder, outputPath);
             }
         }
     }
+
+    private static void printMapping(int[] mapping) {
+        int removed = 0;
+        int remapped = 0;
+        for (int i = 0; i < mapping.length; i++) {
+            if (mapping[i] < 0) {
+                removed += 1;
+            } else if (mapping[i] != i) {
+                remapped += 1;
+            }
+        }
+        System.err.printf("kept %d words of the previous dictionary, removed %d, remapped word ids of %d%n",
+                mapping.length - removed, removed, remapped);
+    }
+
+    private static Config costConfig(Path settingsPath) throws IOException {
+        Config defaults = Config.defaultConfig();
+        if (settingsPath == null) {
+            return defaults;
+        }
+        Path parent = settingsPath.toAbsolutePath().getParent();
+        PathAnchor anchor = PathAnchor.filesystem(parent).andThen(PathAnchor.classpath());
+        return Config.fromFile(settingsPath, anchor).withFallback(defaults);
+    }
+
+    private static void build(DicBuilder.User builder, Path outputPath) throws IOException {
+        try (SeekableByteChannel channel = Files.newByteChannel(outputPath, StandardOpenOption.WRITE,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            builder.build(channel);
+        }
+    }
 }
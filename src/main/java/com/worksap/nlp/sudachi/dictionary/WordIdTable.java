@@ -16,15 +16,12 @@
 
 package com.worksap.nlp.sudachi.dictionary;
 
-import com.worksap.nlp.sudachi.WordId;
-
 import java.nio.ByteBuffer;
 
 class WordIdTable {
     private final ByteBuffer bytes;
     private final int size;
     private final int offset;
-    private int dicIdMask = 0;
 
     WordIdTable(ByteBuffer bytes, int offset) {
         this.bytes = bytes;
@@ -53,24 +50,21 @@ class WordIdTable {
      *            index in the word array
      * @param lookup
      *            object to read word IDs into
+     * @param idBase
+     *            the word id of the first word of the lexicon in its lexicon set,
+     *            see {@link LexiconSet#idBase(int)}
      * @return number of read IDs
      */
-    int readWordIds(int index, WordLookup lookup) {
+    int readWordIds(int index, WordLookup lookup, int idBase) {
         int offset = this.offset + index;
         ByteBuffer bytes = this.bytes;
         int length = Byte.toUnsignedInt(bytes.get(offset));
         offset += 1;
         int[] result = lookup.outputBuffer(length);
-        int dicIdMask = this.dicIdMask;
         for (int i = 0; i < length; i++) {
-            int wordId = bytes.getInt(offset);
-            result[i] = WordId.applyMask(wordId, dicIdMask);
+            result[i] = idBase + bytes.getInt(offset);
             offset += 4;
         }
         return length;
     }
-
-    void setDictionaryId(int id) {
-        dicIdMask = WordId.dicIdMask(id);
-    }
 }
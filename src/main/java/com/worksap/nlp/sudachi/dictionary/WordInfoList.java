@@ -19,6 +19,8 @@ package com.worksap.nlp.sudachi.dictionary;
 import java.nio.Buffer;
 import java.nio.ByteBuffer;
 
+import com.worksap.nlp.sudachi.Tokenizer;
+
 class WordInfoList {
 
     private final ByteBuffer bytes;
@@ -69,10 +71,185 @@ class WordInfoList {
                 readingForm, aUnitSplit, bUnitSplit, wordStructure, synonymGids);
     }
 
+    short getPOSId(int wordId) {
+        int position = skipString(wordIdToOffset(wordId)); // surface
+        position += lengthSize(stringLengthAt(position)); // headword length
+        return bytes.getShort(position);
+    }
+
+    /**
+     * Reads the length of the headword of a word without decoding it.
+     *
+     * @param wordId
+     *            word id
+     * @return the length of the headword in bytes
+     */
+    short getLength(int wordId) {
+        return (short) stringLengthAt(skipString(wordIdToOffset(wordId))); // after surface
+    }
+
+    /**
+     * Reads the A-unit or B-unit split of a word without decoding the other
+     * fields.
+     *
+     * @param wordId
+     *            word id
+     * @param mode
+     *            {@link Tokenizer.SplitMode#A} or {@link Tokenizer.SplitMode#B}
+     * @return the word ids of the split, which can be empty
+     */
+    int[] getSplit(int wordId, Tokenizer.SplitMode mode) {
+        if (mode == Tokenizer.SplitMode.C) {
+            throw new IllegalArgumentException("words have no split in mode C");
+        }
+        int position = skipString(wordIdToOffset(wordId)); // surface
+        position += lengthSize(stringLengthAt(position)); // headword length
+        position += 2; // POS id
+        position = skipString(position); // normalized form
+        position += 4; // dictionary form
+        position = skipString(position); // reading form
+        if (mode == Tokenizer.SplitMode.B) {
+            position += 1 + 4 * Byte.toUnsignedInt(bytes.get(position)); // A-unit split
+        }
+        int[] split = new int[Byte.toUnsignedInt(bytes.get(position))];
+        for (int i = 0; i < split.length; i++) {
+            split[i] = bytes.getInt(position + 1 + 4 * i);
+        }
+        return split;
+    }
+
     int size() {
         return wordSize;
     }
 
+    /**
+     * Returns the serialized form of a word, as written by the dictionary
+     * builder.
+     *
+     * @param wordId
+     *            word id
+     * @return a read-only buffer of the bytes of the word
+     */
+    ByteBuffer getSerialized(int wordId) {
+        int start = wordIdToOffset(wordId);
+        int position = skipString(start); // surface
+        position += lengthSize(stringLengthAt(position)); // headword length
+        position += 2; // POS id
+        position = skipString(position); // normalized form
+        position += 4; // dictionary form
+        position = skipString(position); // reading form
+        int arrays = hasSynonymGid ? 4 : 3;
+        for (int i = 0; i < arrays; i++) {
+            position += 1 + 4 * bytes.get(position);
+        }
+        ByteBuffer buf = bytes.asReadOnlyBuffer();
+        ((Buffer) buf).limit(position);
+        ((Buffer) buf).position(start);
+        return buf.slice().order(bytes.order());
+    }
+
+    private int skipString(int position) {
+        int length = stringLengthAt(position);
+        return position + lengthSize(length) + 2 * length;
+    }
+
+    /**
+     * Computes {@link #keyHash(CharSequence, short, CharSequence)} of a word
+     * without decoding it.
+     *
+     * @param wordId
+     *            word id
+     * @return hash of the surface, POS id and reading form of the word
+     */
+    int keyHash(int wordId) {
+        int[] key = locateKey(wordId);
+        int hash = hashChars(0, key[0], key[1]);
+        hash = 31 * hash + key[2];
+        return hashChars(hash, key[3], key[4]);
+    }
+
+    /**
+     * Compares the surface, POS id and reading form of a word without decoding
+     * it.
+     *
+     * @return true if the word has the given fields
+     */
+    boolean keyEquals(int wordId, String surface, short posId, String readingForm) {
+        int[] key = locateKey(wordId);
+        return key[2] == posId && charsEqual(key[0], key[1], surface) && charsEqual(key[3], key[4], readingForm);
+    }
+
+    static int keyHash(CharSequence surface, short posId, CharSequence readingForm) {
+        int hash = 0;
+        for (int i = 0; i < surface.length(); i++) {
+            hash = 31 * hash + surface.charAt(i);
+        }
+        hash = 31 * hash + posId;
+        for (int i = 0; i < readingForm.length(); i++) {
+            hash = 31 * hash + readingForm.charAt(i);
+        }
+        return hash;
+    }
+
+    /**
+     * Finds the fields used as the key of a word.
+     *
+     * @return the position and the length of the surface, the POS id and the
+     *         position and the length of the reading form
+     */
+    private int[] locateKey(int wordId) {
+        int position = wordIdToOffset(wordId);
+        int surfaceLength = stringLengthAt(position);
+        int surfacePosition = position + lengthSize(surfaceLength);
+        position = surfacePosition + 2 * surfaceLength;
+        position += lengthSize(stringLengthAt(position)); // headword length
+        short posId = bytes.getShort(position);
+        position += 2;
+        int normalizedLength = stringLengthAt(position);
+        position += lengthSize(normalizedLength) + 2 * normalizedLength;
+        position += 4; // dictionary form
+        int readingLength = stringLengthAt(position);
+        int readingPosition = position + lengthSize(readingLength);
+        if (readingLength == 0) {
+            readingLength = surfaceLength;
+            readingPosition = surfacePosition;
+        }
+        return new int[] { surfacePosition, surfaceLength, posId, readingPosition, readingLength };
+    }
+
+    private int stringLengthAt(int position) {
+        byte length = bytes.get(position);
+        if (length < 0) {
+            int high = Byte.toUnsignedInt(length);
+            int low = Byte.toUnsignedInt(bytes.get(position + 1));
+            return ((high & 0x7F) << 8) | low;
+        }
+        return length;
+    }
+
+    private static int lengthSize(int length) {
+        return length > Byte.MAX_VALUE ? 2 : 1;
+    }
+
+    private int hashChars(int hash, int position, int length) {
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + bytes.getChar(position + 2 * i);
+        }
+        return hash;
+    }
+
+    private boolean charsEqual(int position, int length, String str) {
+        if (length != str.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (bytes.getChar(position + 2 * i) != str.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     private int wordIdToOffset(int wordId) {
         return bytes.getInt(offset + 4 * wordId);
     }
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary;
+
+/**
+ * Hash index from the surface, POS id and reading form of words to their ids.
+ * <p>
+ * Open addressing table with linear probing. Words are inserted in the order of
+ * their ids, so the word with the smallest id is found first when several words
+ * have the same key. Only hashes and ids are stored, keys are compared directly
+ * in the dictionary buffer.
+ */
+class WordKeyIndex {
+    private final WordInfoList wordInfos;
+    private final int[] hashes;
+    private final int[] wordIds;
+    private final int mask;
+
+    private WordKeyIndex(WordInfoList wordInfos, int capacity) {
+        this.wordInfos = wordInfos;
+        hashes = new int[capacity];
+        wordIds = new int[capacity];
+        mask = capacity - 1;
+    }
+
+    static WordKeyIndex build(WordInfoList wordInfos) {
+        int size = wordInfos.size();
+        // keep the load factor below 0.75
+        int capacity = Integer.highestOneBit(Math.max(size + size / 3, 1)) << 1;
+        WordKeyIndex index = new WordKeyIndex(wordInfos, capacity);
+        for (int wordId = 0; wordId < size; wordId++) {
+            index.insert(wordInfos.keyHash(wordId), wordId);
+        }
+        return index;
+    }
+
+    private void insert(int hash, int wordId) {
+        int slot = mix(hash) & mask;
+        while (wordIds[slot] != 0) {
+            slot = (slot + 1) & mask;
+        }
+        hashes[slot] = hash;
+        wordIds[slot] = wordId + 1;
+    }
+
+    int find(String headword, short posId, String readingForm) {
+        int hash = WordInfoList.keyHash(headword, posId, readingForm);
+        int slot = mix(hash) & mask;
+        while (true) {
+            int stored = wordIds[slot];
+            if (stored == 0) {
+                return -1;
+            }
+            int wordId = stored - 1;
+            if (hashes[slot] == hash && wordInfos.keyEquals(wordId, headword, posId, readingForm)) {
+                return wordId;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -35,15 +35,50 @@ public final class WordLookup {
     private int[] wordIds = new int[16];
     private int numWords;
     private final List<DoubleArrayLexicon> lexicons;
-    private int currentLexicon = -1;
+    private final int[] idBases;
+    private final FirstCharIndex firstChars;
+    private final int[] allLexicons;
+    private int[] candidates;
+    private int currentCandidate = -1;
+    private int idBase;
 
+    /**
+     * Creates a lookup which visits all the lexicons. The dictionary part of word
+     * ids is the index of their lexicon, so there can be at most
+     * {@link WordId#MAX_DIC_ID} + 1 lexicons.
+     *
+     * @param lexicons
+     *            lexicons, the system one first
+     */
     public WordLookup(List<DoubleArrayLexicon> lexicons) {
+        this(lexicons, directIdBases(lexicons.size()), null);
+    }
+
+    WordLookup(List<DoubleArrayLexicon> lexicons, int[] idBases, FirstCharIndex firstChars) {
         this.lexicons = lexicons;
+        this.idBases = idBases;
+        this.firstChars = firstChars;
+        allLexicons = new int[lexicons.size()];
+        for (int i = 0; i < allLexicons.length; ++i) {
+            allLexicons[i] = allLexicons.length - 1 - i;
+        }
     }
 
-    private void rebind(DoubleArrayLexicon lexicon) {
+    private static int[] directIdBases(int size) {
+        int[] bases = new int[size];
+        for (int i = 0; i < size; ++i) {
+            bases[i] = WordId.make(i, 0);
+        }
+        return bases;
+    }
+
+    private void rebind(int candidate) {
+        int index = candidates[candidate];
+        DoubleArrayLexicon lexicon = lexicons.get(index);
         lookup.setArray(lexicon.getTrieArray());
         words = lexicon.getWordIdTable();
+        idBase = idBases[index];
+        currentCandidate = candidate;
     }
 
     /**
@@ -57,8 +92,18 @@ public final class WordLookup {
      *            offset of key end
      */
     public void reset(byte[] key, int offset, int limit) {
-        currentLexicon = lexicons.size() - 1;
-        rebind(lexicons.get(currentLexicon));
+        if (firstChars == null || lexicons.size() == 1) {
+            candidates = allLexicons;
+        } else if (offset < limit) {
+            candidates = firstChars.candidates(key, offset, limit);
+        } else {
+            candidates = allLexicons;
+        }
+        if (candidates.length == 0) {
+            currentCandidate = -1;
+            return;
+        }
+        rebind(0);
         lookup.reset(key, offset, limit);
     }
 
@@ -83,16 +128,18 @@ public final class WordLookup {
      * @return true if there was an entry in any of binary dictionaries
      */
     public boolean next() {
+        if (currentCandidate < 0) {
+            return false;
+        }
         while (!lookup.next()) {
-            int nextLexicon = currentLexicon - 1;
-            if (nextLexicon < 0) {
+            int nextCandidate = currentCandidate + 1;
+            if (nextCandidate >= candidates.length) {
                 return false;
             }
-            rebind(lexicons.get(nextLexicon));
-            currentLexicon = nextLexicon;
+            rebind(nextCandidate);
         }
         int wordGroupId = lookup.getValue();
-        numWords = words.readWordIds(wordGroupId, this);
+        numWords = words.readWordIds(wordGroupId, this, idBase);
         return true;
     }
 
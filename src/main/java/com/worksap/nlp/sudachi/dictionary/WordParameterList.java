@@ -57,16 +57,39 @@ class WordParameterList {
     }
 
     void setCost(int wordId, short cost) {
-        if (!isCopied) {
-            copyBuffer();
-        }
+        ensureCopied();
         bytes.putShort(offset + ELEMENT_SIZE * wordId + 4, cost);
     }
 
+    /**
+     * Returns the parameters in the binary dictionary format, including the number
+     * of words. Calculated costs are included if they were set.
+     *
+     * @return a new buffer with the serialized parameters
+     */
+    ByteBuffer serialize() {
+        ByteBuffer result = ByteBuffer.allocate(storageSize());
+        result.order(ByteOrder.LITTLE_ENDIAN);
+        result.putInt(size);
+        ByteBuffer srcBuffer = bytes.duplicate();
+        Buffer buffer = srcBuffer; // a kludge for Java 9
+        buffer.position(offset);
+        buffer.limit(offset + ELEMENT_SIZE * size);
+        result.put(srcBuffer);
+        ((Buffer) result).flip();
+        return result;
+    }
+
     int endOffset() {
         return offset + 4 + ELEMENT_SIZE * size;
     }
 
+    void ensureCopied() {
+        if (!isCopied) {
+            copyBuffer();
+        }
+    }
+
     synchronized void copyBuffer() {
         ByteBuffer newBuffer = ByteBuffer.allocate(ELEMENT_SIZE * size);
         newBuffer.order(ByteOrder.LITTLE_ENDIAN);
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary.build;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads CSV records from a buffer of UTF-8 text, with the same syntax as
+ * {@link com.worksap.nlp.sudachi.dictionary.CSVParser}.
+ * <p>
+ * Fields are kept as ranges of the buffer and are decoded only when requested,
+ * numbers can be parsed without decoding them. Fields of the selected columns
+ * are decoded while reading and deduplicated, because they have few distinct
+ * values.
+ */
+final class ByteCsvReader {
+    static final String INVALID_FORMAT_ERROR_MESSAGE = "invalid format";
+
+    private final ByteBuffer data;
+    private final int limit;
+    private final long internedColumns;
+    private final Interner interner = new Interner();
+    private int position;
+
+    /**
+     * @param data
+     *            text to read, between the position and the limit
+     * @param internedColumns
+     *            bit mask of the columns to intern, for example
+     *            {@code 1L << 5} for the sixth column
+     */
+    ByteCsvReader(ByteBuffer data, long internedColumns) {
+        this.data = data;
+        this.limit = data.limit();
+        this.internedColumns = internedColumns;
+        this.position = data.position();
+    }
+
+    /**
+     * @return the position in the buffer after the last read record
+     */
+    int position() {
+        return position;
+    }
+
+    /**
+     * Reads the next record. Empty lines are empty records.
+     *
+     * @return the record, or null at the end of the buffer
+     * @throws IllegalArgumentException
+     *             if quotes are misplaced
+     */
+    Record next() {
+        if (position >= limit) {
+            return null;
+        }
+        Record record = new Record(data);
+        int pos = position;
+        if (isLineEnd(data.get(pos))) {
+            position = skipLineEnd(pos);
+            return record;
+        }
+        while (true) {
+            int column = record.size;
+            if (pos < limit && data.get(pos) == '"') {
+                pos = readQuoted(record, pos + 1);
+            } else {
+                int start = pos;
+                while (pos < limit) {
+                    byte b = data.get(pos);
+                    if (b == ',' || isLineEnd(b)) {
+                        break;
+                    }
+                    if (b == '"') {
+                        throw new IllegalArgumentException(INVALID_FORMAT_ERROR_MESSAGE);
+                    }
+                    pos++;
+                }
+                record.add(start, pos);
+                if (column < 64 && (internedColumns & (1L << column)) != 0) {
+                    record.set(column, interner.intern(data, start, pos));
+                }
+            }
+            if (pos < limit && data.get(pos) == ',') {
+                pos++;
+                continue;
+            }
+            position = skipLineEnd(pos);
+            return record;
+        }
+    }
+
+    /**
+     * Reads a quoted field, which can contain commas, quotes written as
+     * {@code ""} and line breaks.
+     *
+     * @return the position after the closing quote
+     */
+    private int readQuoted(Record record, int start) {
+        byte[] content = new byte[16];
+        int length = 0;
+        int pos = start;
+        while (true) {
+            if (pos >= limit) {
+                throw new IllegalArgumentException(INVALID_FORMAT_ERROR_MESSAGE);
+            }
+            byte b = data.get(pos);
+            if (b == '"') {
+                if (pos + 1 < limit && data.get(pos + 1) == '"') {
+                    b = '"';
+                    pos += 2;
+                } else {
+                    pos += 1;
+                    break;
+                }
+            } else if (isLineEnd(b)) {
+                b = '\n';
+                pos = skipLineEnd(pos);
+            } else {
+                pos += 1;
+            }
+            if (length == content.length) {
+                content = Arrays.copyOf(content, length * 2);
+            }
+            content[length++] = b;
+        }
+        if (pos < limit && data.get(pos) != ',' && !isLineEnd(data.get(pos))) {
+            throw new IllegalArgumentException(INVALID_FORMAT_ERROR_MESSAGE);
+        }
+        record.add(start, start);
+        record.set(record.size - 1, new String(content, 0, length, StandardCharsets.UTF_8));
+        return pos;
+    }
+
+    private static boolean isLineEnd(byte b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Skips a line break like {@link java.io.BufferedReader#readLine()}.
+     */
+    private int skipLineEnd(int pos) {
+        if (pos >= limit) {
+            return limit;
+        }
+        if (data.get(pos) == '\r' && pos + 1 < limit && data.get(pos + 1) == '\n') {
+            return pos + 2;
+        }
+        return pos + 1;
+    }
+
+    /**
+     * A record whose fields refer to the buffer. Fields can be read concurrently
+     * from several threads.
+     */
+    static final class Record implements CsvColumns {
+        private final ByteBuffer data;
+        private int[] bounds = new int[40];
+        private String[] strings;
+        private int size;
+
+        private Record(ByteBuffer data) {
+            this.data = data;
+        }
+
+        private void add(int start, int end) {
+            if (size * 2 == bounds.length) {
+                bounds = Arrays.copyOf(bounds, bounds.length * 2);
+            }
+            bounds[size * 2] = start;
+            bounds[size * 2 + 1] = end;
+            size += 1;
+        }
+
+        private void set(int index, String value) {
+            if (strings == null) {
+                strings = new String[Math.max(bounds.length / 2, index + 1)];
+            } else if (strings.length <= index) {
+                strings = Arrays.copyOf(strings, Math.max(strings.length * 2, index + 1));
+            }
+            strings[index] = value;
+        }
+
+        private String string(int index) {
+            if (strings == null || strings.length <= index) {
+                return null;
+            }
+            return strings[index];
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+
+        @Override
+        public String get(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+            }
+            String value = string(index);
+            if (value != null) {
+                return value;
+            }
+            return new String(copy(data, bounds[index * 2], bounds[index * 2 + 1]), StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public int parseShort(int index) {
+            if (index >= size) {
+                throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+            }
+            if (string(index) != null) {
+                return NOT_A_SHORT;
+            }
+            return MatrixParser.parseShort(data, bounds[index * 2], bounds[index * 2 + 1]);
+        }
+    }
+
+    private static byte[] copy(ByteBuffer data, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = data.get(start + i);
+        }
+        return bytes;
+    }
+
+    /**
+     * Deduplicates decoded fields. It stops adding new values when it is full, so
+     * columns with many distinct values don't use much memory.
+     */
+    private static final class Interner {
+        private static final int CAPACITY = 16 * 1024;
+        private static final int MAX_SIZE = CAPACITY / 2;
+        private final byte[][] keys = new byte[CAPACITY][];
+        private final String[] values = new String[CAPACITY];
+        private int size;
+
+        String intern(ByteBuffer data, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = hash * 31 + data.get(i);
+            }
+            int mask = CAPACITY - 1;
+            for (int slot = (hash ^ (hash >>> 16)) & mask;; slot = (slot + 1) & mask) {
+                byte[] key = keys[slot];
+                if (key == null) {
+                    byte[] bytes = copy(data, start, end);
+                    String value = new String(bytes, StandardCharsets.UTF_8);
+                    if (size < MAX_SIZE) {
+                        keys[slot] = bytes;
+                        values[slot] = value;
+                        size += 1;
+                    }
+                    return value;
+                }
+                if (matches(key, data, start, end)) {
+                    return values[slot];
+                }
+            }
+        }
+
+        private static boolean matches(byte[] key, ByteBuffer data, int start, int end) {
+            if (key.length != end - start) {
+                return false;
+            }
+            for (int i = 0; i < key.length; i++) {
+                if (key[i] != data.get(start + i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
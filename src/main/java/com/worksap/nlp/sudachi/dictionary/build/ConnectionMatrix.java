@@ -16,21 +16,29 @@
 
 package com.worksap.nlp.sudachi.dictionary.build;
 
+import com.worksap.nlp.sudachi.MMap;
 import com.worksap.nlp.sudachi.dictionary.Connection;
 
 import java.io.*;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.ShortBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
-import java.util.regex.Pattern;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
 
 public class ConnectionMatrix implements WriteDictionary {
     private short numLeft;
     private short numRight;
     private ByteBuffer compiled;
-    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
-    private static final Pattern OPT_WHITESPACE = Pattern.compile("\\s*");
+    private static final int BLOCK_SIZE = 64 * 1024;
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
 
     /**
      * @return compiled binary matrix representation with header
@@ -65,14 +73,136 @@ public class ConnectionMatrix implements WriteDictionary {
      *             when IO fails
      */
     public long readEntries(InputStream data) throws IOException {
-        LineNumberReader reader = new LineNumberReader(new InputStreamReader(data, StandardCharsets.UTF_8));
+        byte[] block = new byte[BLOCK_SIZE];
+        int filled = 0;
+        boolean eof = false;
+        MatrixParser parser = null;
+        while (!eof) {
+            int read = data.read(block, filled, block.length - filled);
+            if (read < 0) {
+                eof = true;
+            } else {
+                filled += read;
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(block, 0, filled);
+            int start = 0;
+            if (parser == null) {
+                int headerEnd = MatrixParser.findLineEnd(buffer, 0, filled);
+                // wait for \n which may follow \r at the end of the block
+                if (!eof && headerEnd >= filled - 1) {
+                    block = growIfFull(block, filled);
+                    continue;
+                }
+                if (filled == 0) {
+                    throw new IllegalArgumentException("invalid format at line 0");
+                }
+                parser = new MatrixParser(readHeader(buffer, 0, headerEnd)::setCost, 2);
+                start = MatrixParser.skipLineEnd(buffer, headerEnd, filled);
+            }
+            int end = eof ? filled : completeLinesEnd(block, start, filled);
+            parser.parse(buffer, start, end);
+            System.arraycopy(block, end, block, 0, filled - end);
+            filled -= end;
+            block = growIfFull(block, filled);
+        }
+        if (parser == null) {
+            throw new IllegalArgumentException("invalid format at line 0");
+        }
+        return parser.getEntries();
+    }
 
-        String header = reader.readLine();
-        if (header == null) {
-            throw new IllegalArgumentException("invalid format at line " + reader.getLineNumber());
+    /**
+     * Read connection matrix in text format from a file. Lines are parsed in
+     * parallel chunks if parallelism is larger than 1, with the same result as
+     * {@link #readEntries(InputStream)}.
+     *
+     * @param path
+     *            the matrix file
+     * @param parallelism
+     *            the number of threads to use
+     * @return number read of matrix values
+     * @throws IOException
+     *             when IO fails
+     */
+    public long readEntries(Path path, int parallelism) throws IOException {
+        if (parallelism > 1) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > 0 && size <= Integer.MAX_VALUE) {
+                    ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    long entries;
+                    try (BuildWorkers workers = new BuildWorkers(parallelism)) {
+                        entries = readParallel(data, workers);
+                    } finally {
+                        MMap.unmap(data);
+                    }
+                    if (entries >= 0) {
+                        return entries;
+                    }
+                    // fall back to the sequential parser, which reports the line number
+
+                }
+            }
+        }
+        try (InputStream is = Files.newInputStream(path)) {
+            return readEntries(is);
+        }
+    }
+
+    /**
+     * @return number read of matrix values, or -1 if some line can't be parsed
+     *         without its line number
+     */
+    private long readParallel(ByteBuffer data, BuildWorkers workers) throws IOException {
+        int size = data.limit();
+        int headerEnd = MatrixParser.findLineEnd(data, 0, size);
+        Connection conn = readHeader(data, 0, headerEnd);
+        int position = MatrixParser.skipLineEnd(data, headerEnd, size);
+        long entries = 0;
+        while (position < size) {
+            List<Callable<MatrixChunk>> tasks = new ArrayList<>(workers.parallelism());
+            for (int i = 0; i < workers.parallelism() && position < size; i++) {
+                int start = position;
+                int end = chunkEnd(data, start, size);
+                tasks.add(() -> MatrixChunk.parse(data, start, end));
+                position = end;
+            }
+            // apply in the order of the file, so later lines win as in sequential parsing
+            for (MatrixChunk chunk : workers.invokeAll(tasks)) {
+                if (chunk.malformed) {
+                    return -1;
+                }
+                chunk.applyTo(conn);
+                entries += chunk.size;
+            }
+        }
+        return entries;
+    }
+
+    private static int chunkEnd(ByteBuffer data, int start, int size) {
+        if (size - start <= CHUNK_SIZE) {
+            return size;
+        }
+        for (int i = start + CHUNK_SIZE; i < size; i++) {
+            if (data.get(i) == '\n') {
+                return i + 1;
+            }
         }
+        return size;
+    }
 
-        String[] lr = WHITESPACE.split(header, 2);
+    /**
+     * Parses the header and allocates the matrix.
+     *
+     * @return the allocated matrix
+     */
+    private Connection readHeader(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        String header = new String(bytes, StandardCharsets.UTF_8);
+        String[] lr = MatrixParser.WHITESPACE.split(header, 2);
         if (lr.length != 2) {
             throw new IllegalArgumentException("invalid header " + header + ", expected two 16-bit integers");
         }
@@ -84,46 +214,71 @@ public class ConnectionMatrix implements WriteDictionary {
             throw new IllegalArgumentException("invalid header " + header + ", expected two 16-bit integers");
         }
 
-        ByteBuffer buffer = ByteBuffer.allocate(2 * numLeft * numRight + 4);
-        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer data = ByteBuffer.allocate(2 * numLeft * numRight + 4);
+        data.order(ByteOrder.LITTLE_ENDIAN);
 
-        ShortBuffer matrix = buffer.asShortBuffer();
+        ShortBuffer matrix = data.asShortBuffer();
         matrix.put(numLeft);
         matrix.put(numRight);
 
         matrix = matrix.slice();
-        Connection conn = new Connection(matrix, numLeft, numRight);
-
-        long numLines = 0;
+        compiled = data;
+        return new Connection(matrix, numLeft, numRight);
+    }
 
-        while (true) {
-            String line = reader.readLine();
-            if (line == null) {
-                break;
-            }
-            if (OPT_WHITESPACE.matcher(line).matches()) {
-                continue;
+    /**
+     * @return the end of the last complete line in the range, which is not between
+     *         {@code \r} and {@code \n}
+     */
+    private static int completeLinesEnd(byte[] block, int start, int filled) {
+        for (int i = filled - 1; i >= start; i--) {
+            if (block[i] == '\n') {
+                return i + 1;
             }
-            String[] cols = WHITESPACE.split(line);
-            if (cols.length < 3) {
-                throw new InputFileException(reader.getLineNumber(), line,
-                        new IllegalArgumentException("not enough entries"));
+            if (block[i] == '\r' && i < filled - 1) {
+                return i + 1;
             }
+        }
+        return start;
+    }
+
+    private static byte[] growIfFull(byte[] block, int filled) {
+        if (filled < block.length) {
+            return block;
+        }
+        return Arrays.copyOf(block, block.length * 2);
+    }
+
+    /**
+     * Entries of a part of the matrix file, parsed without line numbers.
+     */
+    private static final class MatrixChunk {
+        private int[] indices = new int[1024];
+        private short[] costs = new short[1024];
+        private int size = 0;
+        private boolean malformed = false;
+
+        static MatrixChunk parse(ByteBuffer data, int start, int end) {
+            MatrixChunk chunk = new MatrixChunk();
+            chunk.malformed = !new MatrixParser(chunk::add, -1).parse(data, start, end);
+            return chunk;
+        }
 
-            try {
-                short left = Short.parseShort(cols[0]);
-                short right = Short.parseShort(cols[1]);
-                short cost = Short.parseShort(cols[2]);
-                conn.setCost(left, right, cost);
-            } catch (NumberFormatException e) {
-                throw new InputFileException(reader.getLineNumber(), "", e);
+        private void add(short left, short right, short cost) {
+            if (size == costs.length) {
+                indices = Arrays.copyOf(indices, size * 2);
+                costs = Arrays.copyOf(costs, size * 2);
             }
+            indices[size] = (left << 16) | (right & 0xffff);
+            costs[size] = cost;
+            size += 1;
+        }
 
-            numLines += 1;
+        void applyTo(Connection conn) {
+            for (int i = 0; i < size; i++) {
+                conn.setCost((short) (indices[i] >> 16), (short) indices[i], costs[i]);
+            }
         }
-        buffer.position(0);
-        compiled = buffer;
-        return numLines;
     }
 
     public void makeEmpty() {
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary.build;
+
+import java.util.List;
+
+/**
+ * Fields of a record of a lexicon file.
+ */
+interface CsvColumns {
+    /**
+     * Returned by {@link #parseShort(int)} for fields which are not plain numbers.
+     */
+    int NOT_A_SHORT = Integer.MIN_VALUE;
+
+    int size();
+
+    /**
+     * @param index
+     *            the index of the field
+     * @return the field as it is in the file, without resolving unicode escapes
+     */
+    String get(int index);
+
+    /**
+     * Parses a field without decoding it, if possible.
+     *
+     * @param index
+     *            the index of the field
+     * @return the value of a field consisting of ASCII digits in the range of
+     *         short, or {@link #NOT_A_SHORT} otherwise
+     */
+    int parseShort(int index);
+
+    static CsvColumns of(List<String> fields) {
+        return new CsvColumns() {
+            @Override
+            public int size() {
+                return fields.size();
+            }
+
+            @Override
+            public String get(int index) {
+                return fields.get(index);
+            }
+
+            @Override
+            public int parseShort(int index) {
+                return NOT_A_SHORT;
+            }
+        };
+    }
+}
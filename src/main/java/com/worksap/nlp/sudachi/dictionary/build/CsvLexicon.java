@@ -16,7 +16,9 @@
 
 package com.worksap.nlp.sudachi.dictionary.build;
 
+import com.worksap.nlp.sudachi.Tokenizer;
 import com.worksap.nlp.sudachi.WordId;
+import com.worksap.nlp.sudachi.dictionary.DoubleArrayLexicon;
 import com.worksap.nlp.sudachi.dictionary.POS;
 import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
@@ -27,18 +29,28 @@ import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 public class CsvLexicon implements WriteDictionary {
     static final int ARRAY_MAX_LENGTH = Byte.MAX_VALUE;
     static final int MIN_REQUIRED_NUMBER_OF_COLUMNS = 18;
+    static final int ENTRIES_PER_CHUNK = 16 * 1024;
+    /**
+     * Columns with few distinct values: part of speech, split mode, dictionary
+     * form and splits.
+     */
+    static final long INTERNED_COLUMNS = 0x3FL << 5 | 0x1FL << 13;
+    private static final int UNESCAPED_COLUMNS = 15;
     static final Pattern unicodeLiteral = Pattern.compile("\\\\u([0-9a-fA-F]{4}|\\{[0-9a-fA-F]+})");
     private static final Pattern PATTERN_ID = Pattern.compile("U?\\d+");
     private final Parameters parameters = new Parameters();
     private final POSTable posTable;
     private final List<WordEntry> entries = new ArrayList<>();
     private WordIdResolver widResolver = new WordLookup.Noop();
+    private BuildWorkers workers;
+    private List<Future<EntryChunk>> pendingChunks;
 
     public CsvLexicon(POSTable pos) {
         posTable = pos;
@@ -60,6 +72,9 @@ public class CsvLexicon implements WriteDictionary {
      * @return string with unicode escapes resolved
      */
     public static String unescape(String text) {
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
         Matcher m = unicodeLiteral.matcher(text);
         if (!m.find()) {
             return text;
@@ -83,45 +98,81 @@ public class CsvLexicon implements WriteDictionary {
     }
 
     WordEntry parseLine(List<String> cols) {
+        return parseLine(CsvColumns.of(cols));
+    }
+
+    WordEntry parseLine(CsvColumns cols) {
+        WordEntry entry = parseEntry(cols);
+        commitEntry(entry);
+        return entry;
+    }
+
+    /**
+     * Parses a line of the lexicon without modifying the state of this lexicon,
+     * so lines can be parsed concurrently. The entry must be passed to
+     * {@link #commitEntry(WordEntry)} in the order of lines afterwards.
+     *
+     * @param cols
+     *            fields of the line
+     * @return parsed entry
+     */
+    WordEntry parseEntry(List<String> cols) {
+        return parseEntry(CsvColumns.of(cols));
+    }
+
+    /**
+     * Parses a line of the lexicon without modifying the state of this lexicon.
+     * Numeric columns are parsed without decoding them when possible.
+     *
+     * @param cols
+     *            fields of the line
+     * @return parsed entry
+     * @see #parseEntry(List)
+     */
+    WordEntry parseEntry(CsvColumns cols) {
         if (cols.size() < MIN_REQUIRED_NUMBER_OF_COLUMNS) {
             throw new IllegalArgumentException("invalid format");
         }
-        for (int i = 0; i < 15; i++) {
-            cols.set(i, unescape(cols.get(i)));
-        }
-
-        if (cols.get(0).getBytes(StandardCharsets.UTF_8).length > DicBuffer.MAX_STRING
-                || !DicBuffer.isValidLength(cols.get(4)) || !DicBuffer.isValidLength(cols.get(11))
-                || !DicBuffer.isValidLength(cols.get(12))) {
+        String headword = column(cols, 0);
+        int headwordLength = headword.getBytes(StandardCharsets.UTF_8).length;
+        String surface = column(cols, 4);
+        String reading = column(cols, 11);
+        String normalizedForm = column(cols, 12);
+
+        if (headwordLength > DicBuffer.MAX_STRING || !DicBuffer.isValidLength(surface)
+                || !DicBuffer.isValidLength(reading) || !DicBuffer.isValidLength(normalizedForm)) {
             throw new IllegalArgumentException("string is too long");
         }
 
-        if (cols.get(0).isEmpty()) {
+        if (headword.isEmpty()) {
             throw new IllegalArgumentException("headword is empty");
         }
 
         WordEntry entry = new WordEntry();
 
+        // left-id, right-id, cost
+        entry.leftId = shortColumn(cols, 1);
+        entry.rightId = shortColumn(cols, 2);
+        entry.cost = shortColumn(cols, 3);
+
         // headword for trie
-        if (!cols.get(1).equals("-1")) {
-            entry.headword = cols.get(0);
+        if (entry.leftId != -1 || !column(cols, 1).equals("-1")) {
+            entry.headword = headword;
         }
 
-        // left-id, right-id, cost
-        parameters.add(Short.parseShort(cols.get(1)), Short.parseShort(cols.get(2)), Short.parseShort(cols.get(3)));
-
         // part of speech
-        POS pos = new POS(cols.get(5), cols.get(6), cols.get(7), cols.get(8), cols.get(9), cols.get(10));
-        short posId = posTable.getId(pos);
+        entry.pos = new POS(column(cols, 5), column(cols, 6), column(cols, 7), column(cols, 8), column(cols, 9),
+                column(cols, 10));
 
-        entry.dictionaryFormString = cols.get(13);
+        entry.dictionaryFormString = column(cols, 13);
         entry.aUnitSplitString = cols.get(15);
         entry.bUnitSplitString = cols.get(16);
         entry.wordStructureString = cols.get(17);
         checkSplitInfoFormat(entry.aUnitSplitString);
         checkSplitInfoFormat(entry.bUnitSplitString);
         checkSplitInfoFormat(entry.wordStructureString);
-        if (cols.get(14).equals("A") && (!entry.aUnitSplitString.equals("*") || !entry.bUnitSplitString.equals("*"))) {
+        if (column(cols, 14).equals("A")
+                && (!entry.aUnitSplitString.equals("*") || !entry.bUnitSplitString.equals("*"))) {
             throw new IllegalArgumentException("invalid splitting");
         }
 
@@ -130,15 +181,80 @@ public class CsvLexicon implements WriteDictionary {
             synonymGids = parseSynonymGids(cols.get(18));
         }
 
-        entry.wordInfo = new WordInfo(cols.get(4), // headword
-                (short) cols.get(0).getBytes(StandardCharsets.UTF_8).length, posId, cols.get(12), // normalizedForm
+        entry.wordInfo = new WordInfo(surface, // headword
+                (short) headwordLength, (short) -1, normalizedForm, // normalizedForm
                 -1, "", // dictioanyForm (dummy)
-                cols.get(11), // readingForm
+                reading, // readingForm
                 null, null, null, synonymGids);
 
         return entry;
     }
 
+    /**
+     * Creates an entry from its fields instead of a line of the lexicon and
+     * registers it like {@link #parseLine(List)}. The surface is also the
+     * headword, and the word has no dictionary form and no splits. As for a line,
+     * a word with a left id of -1 is not added to the trie.
+     *
+     * @return created entry
+     */
+    WordEntry makeEntry(String surface, short leftId, short rightId, short cost, POS pos, String reading,
+            String normalizedForm) {
+        int surfaceLength = surface.getBytes(StandardCharsets.UTF_8).length;
+        if (surfaceLength > DicBuffer.MAX_STRING || !DicBuffer.isValidLength(surface)
+                || !DicBuffer.isValidLength(reading) || !DicBuffer.isValidLength(normalizedForm)) {
+            throw new IllegalArgumentException("string is too long");
+        }
+        if (surface.isEmpty()) {
+            throw new IllegalArgumentException("headword is empty");
+        }
+
+        WordEntry entry = new WordEntry();
+        if (leftId != -1) {
+            entry.headword = surface;
+        }
+        entry.leftId = leftId;
+        entry.rightId = rightId;
+        entry.cost = cost;
+        entry.pos = pos;
+        entry.dictionaryFormString = "*";
+        entry.aUnitSplitString = "*";
+        entry.bUnitSplitString = "*";
+        entry.wordStructureString = "*";
+        entry.wordInfo = new WordInfo(surface, (short) surfaceLength, (short) -1, normalizedForm, -1, "", reading,
+                null, null, null, new int[0]);
+        commitEntry(entry);
+        return entry;
+    }
+
+    /**
+     * @return the field with unicode escapes resolved if the column allows them
+     */
+    private static String column(CsvColumns cols, int index) {
+        String value = cols.get(index);
+        return index < UNESCAPED_COLUMNS ? unescape(value) : value;
+    }
+
+    private static short shortColumn(CsvColumns cols, int index) {
+        int value = cols.parseShort(index);
+        if (value != CsvColumns.NOT_A_SHORT) {
+            return (short) value;
+        }
+        return Short.parseShort(column(cols, index));
+    }
+
+    /**
+     * Registers the parameters and the part of speech of a parsed entry.
+     *
+     * @param entry
+     *            entry returned by {@link #parseEntry(List)}
+     */
+    void commitEntry(WordEntry entry) {
+        parameters.add(entry.leftId, entry.rightId, entry.cost);
+        entry.wordInfo.setPOSId(posTable.getId(entry.pos));
+        entry.pos = null;
+    }
+
     /**
      * Parse dictionary_form string in lexicon as referring word id.
      * 
@@ -176,7 +292,7 @@ public class CsvLexicon implements WriteDictionary {
         String[] cols = ref.split(",", 8);
         String headword = unescape(cols[0]);
         POS pos = new POS(Arrays.copyOfRange(cols, 1, 7));
-        short posId = posTable.getId(pos);
+        short posId = posTable.findId(pos);
         String reading = unescape(cols[7]);
 
         return headword.equals(entry.headword) && posId == entry.wordInfo.getPOSId()
@@ -205,7 +321,7 @@ public class CsvLexicon implements WriteDictionary {
         }
         String headword = unescape(cols[0]);
         POS pos = new POS(Arrays.copyOfRange(cols, 1, 7));
-        short posId = posTable.getId(pos);
+        short posId = posTable.findId(pos);
         String reading = unescape(cols[7]);
         return widResolver.lookup(headword, posId, reading);
     }
@@ -275,31 +391,11 @@ public class CsvLexicon implements WriteDictionary {
         output.position(offsetsPosition + offsetsSize);
 
         output.withPart("word entries", () -> {
-            DicBuffer buffer = new DicBuffer(128 * 1024);
-            int offset = (int) output.position();
-            int numEntries = entries.size();
-            for (int i = 0; i < numEntries; ++i) {
-                WordEntry entry = entries.get(i);
-                if (buffer.wontFit(16 * 1024)) {
-                    offset += buffer.consume(output::write);
-                }
-                offsets.putInt(offset + buffer.position());
-
-                WordInfo wi = entry.wordInfo;
-                buffer.put(wi.getSurface());
-                buffer.putLength(wi.getLength());
-                buffer.putShort(wi.getPOSId());
-                buffer.putEmptyIfEqual(wi.getNormalizedForm(), wi.getSurface());
-                buffer.putInt(parseDictionaryForm(entry.dictionaryFormString));
-                buffer.putEmptyIfEqual(wi.getReadingForm(), wi.getSurface());
-                buffer.putInts(parseSplitInfo(entry.aUnitSplitString));
-                buffer.putInts(parseSplitInfo(entry.bUnitSplitString));
-                buffer.putInts(parseSplitInfo(entry.wordStructureString));
-                buffer.putInts(wi.getSynonymGoupIds());
-                output.progress(i, numEntries);
+            if (workers == null) {
+                writeEntries(output, offsets);
+            } else {
+                writeEntriesParallel(output, offsets);
             }
-
-            buffer.consume(output::write);
         });
 
         long pos = output.position();
@@ -308,12 +404,148 @@ public class CsvLexicon implements WriteDictionary {
         output.position(pos);
     }
 
+    private void writeEntries(ModelOutput output, DicBuffer offsets) throws IOException {
+        DicBuffer buffer = new DicBuffer(128 * 1024);
+        int offset = (int) output.position();
+        int numEntries = entries.size();
+        for (int i = 0; i < numEntries; ++i) {
+            if (buffer.wontFit(16 * 1024)) {
+                offset += buffer.consume(output::write);
+            }
+            offsets.putInt(offset + buffer.position());
+            putEntry(buffer, entries.get(i));
+            output.progress(i, numEntries);
+        }
+
+        buffer.consume(output::write);
+    }
+
+    /**
+     * Serializes windows of entries on the worker threads, each window split into
+     * one chunk per thread, while the previous window is written.
+     */
+    private void writeEntriesParallel(ModelOutput output, DicBuffer offsets) throws IOException {
+        int numEntries = entries.size();
+        int window = workers.parallelism() * ENTRIES_PER_CHUNK;
+        long offset = output.position();
+        List<Future<EntryChunk>> next = pendingChunks != null ? pendingChunks : submitChunks(0);
+        pendingChunks = null;
+        for (int start = 0; start < numEntries; start += window) {
+            List<Future<EntryChunk>> current = next;
+            next = submitChunks(start + window);
+            for (Future<EntryChunk> future : current) {
+                EntryChunk chunk = BuildWorkers.await(future);
+                for (int relative : chunk.offsets) {
+                    offsets.putInt((int) (offset + relative));
+                }
+                for (ByteBuffer data : chunk.data) {
+                    output.write(data);
+                }
+                offset += chunk.size;
+            }
+            output.progress(Math.min(start + window, numEntries), numEntries);
+        }
+    }
+
+    private List<Future<EntryChunk>> submitChunks(int start) {
+        int numEntries = entries.size();
+        int end = Math.min(start + workers.parallelism() * ENTRIES_PER_CHUNK, numEntries);
+        List<Future<EntryChunk>> chunks = new ArrayList<>();
+        for (int begin = start; begin < end; begin += ENTRIES_PER_CHUNK) {
+            int chunkBegin = begin;
+            int chunkEnd = Math.min(begin + ENTRIES_PER_CHUNK, end);
+            chunks.add(workers.submit(() -> serializeEntries(chunkBegin, chunkEnd)));
+        }
+        return chunks;
+    }
+
+    private EntryChunk serializeEntries(int begin, int end) throws IOException {
+        EntryChunk chunk = new EntryChunk(end - begin);
+        DicBuffer buffer = new DicBuffer(128 * 1024);
+        for (int i = begin; i < end; ++i) {
+            if (buffer.wontFit(16 * 1024)) {
+                chunk.size += buffer.consume(chunk::add);
+            }
+            chunk.offsets[i - begin] = chunk.size + buffer.position();
+            putEntry(buffer, entries.get(i));
+        }
+        chunk.size += buffer.consume(chunk::add);
+        return chunk;
+    }
+
+    private void putEntry(DicBuffer buffer, WordEntry entry) {
+        if (entry.serialized != null) {
+            buffer.put(entry.serialized);
+            return;
+        }
+        WordInfo wi = entry.wordInfo;
+        buffer.put(wi.getSurface());
+        buffer.putLength(wi.getLength());
+        buffer.putShort(wi.getPOSId());
+        buffer.putEmptyIfEqual(wi.getNormalizedForm(), wi.getSurface());
+        buffer.putInt(parseDictionaryForm(entry.dictionaryFormString));
+        buffer.putEmptyIfEqual(wi.getReadingForm(), wi.getSurface());
+        buffer.putInts(parseSplitInfo(entry.aUnitSplitString));
+        buffer.putInts(parseSplitInfo(entry.bUnitSplitString));
+        buffer.putInts(parseSplitInfo(entry.wordStructureString));
+        buffer.putInts(wi.getSynonymGoupIds());
+    }
+
+    /**
+     * Uses the worker threads to serialize entries. The first entries are
+     * serialized in background from this call on, before {@link #writeTo} is
+     * called, so all entries must be added and the resolver set before.
+     *
+     * @param workers
+     *            worker threads, or null to serialize entries in the calling
+     *            thread
+     */
+    void setWorkers(BuildWorkers workers) {
+        this.workers = workers;
+        pendingChunks = workers == null ? null : submitChunks(0);
+    }
+
+    /**
+     * Replaces unspecified costs ({@link Short#MIN_VALUE}) with the costs
+     * computed by the given tokenizer, in the same way as they would be computed
+     * when the dictionary is loaded.
+     *
+     * @param tokenizer
+     *            the tokenizer which analyzes the surfaces
+     * @return the number of entries whose costs were computed
+     */
+    public int calculateCosts(Tokenizer tokenizer) {
+        int count = 0;
+        int numEntries = entries.size();
+        for (int i = 0; i < numEntries; ++i) {
+            if (parameters.getCost(i) != Short.MIN_VALUE) {
+                continue;
+            }
+            String surface = entries.get(i).wordInfo.getSurface();
+            parameters.setCost(i, DoubleArrayLexicon.calculateCost(tokenizer, surface));
+            count += 1;
+        }
+        return count;
+    }
+
     public int addEntry(WordEntry e) {
         int id = entries.size();
         entries.add(e);
         return id;
     }
 
+    /**
+     * Adds a word which is already serialized, registering its parameters.
+     *
+     * @param e
+     *            entry with its serialized form, POS id and parameters set
+     * @return the word id
+     */
+    int addSerializedEntry(WordEntry e) {
+        parameters.add(e.leftId, e.rightId, e.cost);
+        return addEntry(e);
+    }
+
     public void setLimits(int left, int right) {
         parameters.setLimits(left, right);
     }
@@ -321,9 +553,33 @@ public class CsvLexicon implements WriteDictionary {
     public static class WordEntry {
         String headword;
         WordInfo wordInfo;
+        POS pos;
+        short leftId;
+        short rightId;
+        short cost;
         String dictionaryFormString;
         String aUnitSplitString;
         String bUnitSplitString;
         String wordStructureString;
+        /** the serialized form of a word reused from another dictionary */
+        ByteBuffer serialized;
+    }
+
+    private static class EntryChunk {
+        final int[] offsets;
+        final List<ByteBuffer> data = new ArrayList<>();
+        int size;
+
+        EntryChunk(int numEntries) {
+            offsets = new int[numEntries];
+        }
+
+        int add(ByteBuffer buffer) {
+            ByteBuffer copy = ByteBuffer.allocate(buffer.remaining());
+            copy.put(buffer);
+            copy.flip();
+            data.add(copy);
+            return copy.remaining();
+        }
     }
 }
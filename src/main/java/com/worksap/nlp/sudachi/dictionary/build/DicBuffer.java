@@ -91,6 +91,10 @@ public class DicBuffer {
         return result;
     }
 
+    public void putByte(byte val) {
+        buffer.put(val);
+    }
+
     public void putShort(short val) {
         buffer.putShort(val);
     }
@@ -99,6 +103,16 @@ public class DicBuffer {
         buffer.putInt(val);
     }
 
+    /**
+     * Copies the remaining bytes of the data, without changing its position.
+     *
+     * @param data
+     *            bytes to copy
+     */
+    public void put(ByteBuffer data) {
+        buffer.put(data.duplicate());
+    }
+
     public boolean wontFit(int space) {
         return buffer.remaining() < space;
     }
@@ -16,6 +16,8 @@
 
 package com.worksap.nlp.sudachi.dictionary.build;
 
+import com.worksap.nlp.sudachi.MMap;
+import com.worksap.nlp.sudachi.Tokenizer;
 import com.worksap.nlp.sudachi.dictionary.*;
 
 import java.io.IOException;
@@ -24,12 +26,16 @@ import java.io.InputStreamReader;
 import java.net.URL;
 import java.net.URLConnection;
 import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.channels.SeekableByteChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 public class DicBuilder {
     private DicBuilder() {
@@ -45,6 +51,7 @@ public class DicBuilder {
     }
 
     public static abstract class Base<T extends Base<T>> {
+        private static final int RECORDS_PER_TASK = 4096;
         protected final POSTable pos = new POSTable();
         protected final ConnectionMatrix connection = new ConnectionMatrix();
         protected final Index index = new Index();
@@ -53,6 +60,7 @@ public class DicBuilder {
         protected long creationTime = java.lang.System.currentTimeMillis();
         private final List<ModelOutput.Part> inputs = new ArrayList<>();
         private Progress progress;
+        protected int parallelism = 1;
 
         protected WordIdResolver resolver() {
             return new WordLookup.Csv(lexicon);
@@ -67,10 +75,26 @@ public class DicBuilder {
 
         public BuildStats build(SeekableByteChannel result) throws IOException {
             lexicon.setResolver(resolver());
+            if (parallelism <= 1) {
+                return build(result, null);
+            }
+            try (BuildWorkers workers = new BuildWorkers(parallelism)) {
+                return build(result, workers);
+            } finally {
+                lexicon.setWorkers(null);
+            }
+        }
+
+        private BuildStats build(SeekableByteChannel result, BuildWorkers workers) throws IOException {
             ModelOutput output = new ModelOutput(result);
             if (progress != null) {
                 output.progressor(progress);
             }
+            Future<Index.Prepared> trie = null;
+            if (workers != null) {
+                trie = workers.submit(index::prepare);
+                lexicon.setWorkers(workers);
+            }
             DictionaryHeader header = new DictionaryHeader(version, creationTime, description);
 
             ByteBuffer headerBuffer = ByteBuffer.wrap(header.toByte());
@@ -78,7 +102,11 @@ public class DicBuilder {
             output.write(headerBuffer);
             pos.writeTo(output);
             connection.writeTo(output);
-            index.writeTo(output);
+            if (trie == null) {
+                index.writeTo(output);
+            } else {
+                index.writeTo(output, BuildWorkers.await(trie));
+            }
             lexicon.writeTo(output);
             return new BuildStats(inputs, output.getParts());
         }
@@ -91,9 +119,32 @@ public class DicBuilder {
             }
         }
 
+        /**
+         * Reads a lexicon file. The file is memory mapped and its records are
+         * parsed directly from bytes, decoding only the strings which are stored in
+         * the dictionary.
+         *
+         * @param path
+         *            the lexicon file
+         * @return this builder
+         * @throws IOException
+         *             if reading the file fails
+         */
         public T lexicon(Path path) throws IOException {
+            String name = path.getFileName().toString();
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long size = channel.size();
+                if (size > 0 && size <= Integer.MAX_VALUE) {
+                    ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+                    try {
+                        return lexiconImpl(name, new MappedSource(data), size);
+                    } finally {
+                        MMap.unmap(data);
+                    }
+                }
+            }
             try (InputStream is = Files.newInputStream(path)) {
-                return lexiconImpl(path.getFileName().toString(), is, Files.size(path));
+                return lexiconImpl(name, is, Files.size(path));
             }
         }
 
@@ -102,30 +153,32 @@ public class DicBuilder {
         }
 
         public T lexiconImpl(String name, InputStream data, long size) throws IOException {
+            return lexiconImpl(name, new StreamSource(data), size);
+        }
+
+        private T lexiconImpl(String name, RecordSource source, long size) throws IOException {
             long startTime = java.lang.System.nanoTime();
             if (progress != null) {
                 progress.startBlock(name, startTime, Progress.Kind.INPUT);
             }
 
-            TrackingInputStream tracker = new TrackingInputStream(data);
-            CSVParser parser = new CSVParser(new InputStreamReader(tracker, StandardCharsets.UTF_8));
             int line = 1;
-            while (true) {
-                List<String> fields = parser.getNextRecord();
-                if (fields == null)
-                    break;
-                try {
-                    CsvLexicon.WordEntry e = lexicon.parseLine(fields);
-                    int wordId = lexicon.addEntry(e);
-                    if (e.headword != null) {
-                        index.add(e.headword, wordId);
+            if (parallelism > 1) {
+                line = readParallel(source, size);
+            } else {
+                while (true) {
+                    CsvColumns fields = source.next();
+                    if (fields == null)
+                        break;
+                    try {
+                        addEntry(lexicon.parseLine(fields));
+                        line += 1;
+                    } catch (Exception e) {
+                        throw new InputFileException(line, fields.get(0), e);
+                    }
+                    if (progress != null) {
+                        progress.progress(source.position(), size);
                     }
-                    line += 1;
-                } catch (Exception e) {
-                    throw new InputFileException(line, fields.get(0), e);
-                }
-                if (progress != null) {
-                    progress.progress(tracker.getPosition(), size);
                 }
             }
 
@@ -139,6 +192,172 @@ public class DicBuilder {
             return self();
         }
 
+        /**
+         * Adds a word given by its fields instead of a line of a lexicon. The surface
+         * is also the headword, and the word has no dictionary form, no splits and
+         * no synonym groups.
+         *
+         * @param surface
+         *            the surface of the word
+         * @param leftId
+         *            the left connection id, -1 to keep the word out of the trie
+         *            like a line with a left id of -1
+         * @param rightId
+         *            the right connection id
+         * @param cost
+         *            the cost of the word, {@link Short#MIN_VALUE} to compute it
+         * @param pos
+         *            the part of speech, it is registered if it is not known yet
+         * @param readingForm
+         *            the reading form
+         * @param normalizedForm
+         *            the normalized form
+         * @return this builder
+         * @throws IOException
+         *             if spilling the index fails
+         * @throws IllegalArgumentException
+         *             if a field is invalid
+         */
+        public T entry(String surface, short leftId, short rightId, short cost, POS pos, String readingForm,
+                String normalizedForm) throws IOException {
+            addEntry(lexicon.makeEntry(surface, leftId, rightId, cost, pos, readingForm, normalizedForm));
+            return self();
+        }
+
+        private void addEntry(CsvLexicon.WordEntry e) throws IOException {
+            int wordId = lexicon.addEntry(e);
+            if (e.headword != null) {
+                index.add(e.headword, wordId);
+            }
+        }
+
+        /**
+         * Reads records in batches and parses each batch on the worker threads.
+         * Parsed entries are added in the order of the input, so word ids are the
+         * same as when reading sequentially.
+         *
+         * @return the line number after the last record
+         */
+        private int readParallel(RecordSource source, long size) throws IOException {
+            int batchSize = parallelism * RECORDS_PER_TASK;
+            int line = 1;
+            try (BuildWorkers workers = new BuildWorkers(parallelism)) {
+                List<CsvColumns> batch = new ArrayList<>(batchSize);
+                boolean finished = false;
+                while (!finished) {
+                    CsvColumns fields = source.next();
+                    if (fields != null) {
+                        batch.add(fields);
+                    } else {
+                        finished = true;
+                    }
+                    if (batch.size() < batchSize && !finished) {
+                        continue;
+                    }
+                    List<Object> parsed = parseBatch(workers, batch);
+                    for (int i = 0; i < batch.size(); ++i) {
+                        Object result = parsed.get(i);
+                        try {
+                            if (result instanceof Exception) {
+                                throw (Exception) result;
+                            }
+                            CsvLexicon.WordEntry e = (CsvLexicon.WordEntry) result;
+                            lexicon.commitEntry(e);
+                            addEntry(e);
+                            line += 1;
+                        } catch (Exception e) {
+                            throw new InputFileException(line, batch.get(i).get(0), e);
+                        }
+                    }
+                    batch.clear();
+                    if (progress != null) {
+                        progress.progress(source.position(), size);
+                    }
+                }
+            }
+            return line;
+        }
+
+        /**
+         * Parses records concurrently.
+         *
+         * @return for each record, either the parsed entry or the exception thrown
+         *         while parsing it
+         */
+        private List<Object> parseBatch(BuildWorkers workers, List<CsvColumns> batch) throws IOException {
+            List<Callable<List<Object>>> tasks = new ArrayList<>();
+            for (int start = 0; start < batch.size(); start += RECORDS_PER_TASK) {
+                List<CsvColumns> records = batch.subList(start, Math.min(start + RECORDS_PER_TASK, batch.size()));
+                tasks.add(() -> {
+                    List<Object> results = new ArrayList<>(records.size());
+                    for (CsvColumns fields : records) {
+                        try {
+                            results.add(lexicon.parseEntry(fields));
+                        } catch (Exception e) {
+                            results.add(e);
+                        }
+                    }
+                    return results;
+                });
+            }
+            List<Object> parsed = new ArrayList<>(batch.size());
+            for (List<Object> results : workers.invokeAll(tasks)) {
+                parsed.addAll(results);
+            }
+            return parsed;
+        }
+
+        /**
+         * Uses several threads to build the dictionary. Records of the input are
+         * parsed concurrently, the trie is built in background and word entries are
+         * serialized concurrently. The resulting dictionary is the same as the one
+         * built with a single thread.
+         *
+         * @param parallelism
+         *            the number of threads, 1 to build in the calling thread
+         * @return this builder
+         */
+        public T parallelism(int parallelism) {
+            if (parallelism < 1) {
+                throw new IllegalArgumentException("parallelism must be positive, was " + parallelism);
+            }
+            this.parallelism = parallelism;
+            return self();
+        }
+
+        /**
+         * Sorts the keys of the trie in runs spilled to temporary files instead of
+         * keeping them in memory, which bounds the memory needed for large lexicons.
+         * Keys with too many entries are reported when the dictionary is built
+         * instead of when they are read.
+         *
+         * @param directory
+         *            where to create temporary files
+         * @return this builder
+         * @throws IOException
+         *             if spilling the already read keys failed
+         */
+        public T indexSpill(Path directory) throws IOException {
+            return indexSpill(directory, IndexRuns.DEFAULT_RUN_SIZE);
+        }
+
+        /**
+         * Sorts the keys of the trie in runs spilled to temporary files.
+         *
+         * @param directory
+         *            where to create temporary files
+         * @param runSize
+         *            the number of keys kept in memory
+         * @return this builder
+         * @throws IOException
+         *             if spilling the already read keys failed
+         * @see #indexSpill(Path)
+         */
+        public T indexSpill(Path directory, int runSize) throws IOException {
+            index.spillTo(directory, runSize);
+            return self();
+        }
+
         public T description(String description) {
             this.description = description;
             return self();
@@ -159,10 +378,18 @@ public class DicBuilder {
             connection.readEntries(matrix);
             lexicon.setLimits(connection.getNumLeft(), connection.getNumRight());
         }
+
+        private void readMatrix(Path matrix) throws IOException {
+            connection.readEntries(matrix, parallelism);
+            lexicon.setLimits(connection.getNumLeft(), connection.getNumRight());
+        }
     }
 
     public static final class User extends Base<User> {
+        private static final int IN_MEMORY_CAPACITY = 64 * 1024;
         final DictionaryAccess dictionary;
+        private Tokenizer costTokenizer;
+        private int[] wordIdMapping;
 
         private User(DictionaryAccess dictionary) {
             this.dictionary = dictionary;
@@ -177,6 +404,130 @@ public class DicBuilder {
         protected WordIdResolver resolver() {
             return new WordLookup.Chain(new WordLookup.Prebuilt(dictionary.getLexicon()), new WordLookup.Csv(lexicon));
         }
+
+        /**
+         * Computes the costs of the entries which do not specify them (cost
+         * {@link Short#MIN_VALUE}) when building the dictionary, instead of each
+         * time the dictionary is loaded.
+         * <p>
+         * The tokenizer must be created from the same dictionaries which precede
+         * the user dictionary at runtime, otherwise the stored costs will differ
+         * from the ones computed at loading time.
+         *
+         * @param tokenizer
+         *            the tokenizer which analyzes the surfaces of the entries
+         * @return this builder
+         */
+        public User costs(Tokenizer tokenizer) {
+            this.costTokenizer = tokenizer;
+            return this;
+        }
+
+        /**
+         * Starts the dictionary with the words of a previously built user
+         * dictionary, except the removed ones. The serialized forms of the kept
+         * words are copied, so only the words added with {@code lexicon} are built
+         * from CSV, and the trie is built again.
+         * <p>
+         * Kept words come first in the new dictionary, in their previous order.
+         * Their word ids shift over the removed words, see
+         * {@link #getWordIdMapping()}; word ids in the added lexicons refer to the
+         * new dictionary. This must be called before adding lexicons, and the
+         * previous dictionary must stay open until the dictionary is built.
+         *
+         * @param previous
+         *            user dictionary built with the same system dictionary
+         * @param removed
+         *            CSV lines of the words to remove
+         * @return this builder
+         * @throws IOException
+         *             if reading the removed lines fails
+         * @throws InputFileException
+         *             if a removed line does not match a word of the previous
+         *             dictionary
+         */
+        public User update(BinaryDictionary previous, InputStream removed) throws IOException {
+            return update(previous, new StreamSource(removed));
+        }
+
+        /**
+         * Starts the dictionary with the words of a previously built user
+         * dictionary, except the removed ones.
+         *
+         * @param previous
+         *            user dictionary built with the same system dictionary
+         * @param removed
+         *            CSV file of the words to remove
+         * @return this builder
+         * @throws IOException
+         *             if reading the removed lines fails
+         * @see #update(BinaryDictionary, InputStream)
+         */
+        public User update(BinaryDictionary previous, Path removed) throws IOException {
+            try (InputStream is = Files.newInputStream(removed)) {
+                return update(previous, is);
+            }
+        }
+
+        private User update(BinaryDictionary previous, RecordSource removed) throws IOException {
+            if (wordIdMapping != null || !lexicon.getEntries().isEmpty()) {
+                throw new IllegalStateException("update must be called once, before adding lexicons");
+            }
+            LexiconUpdate update = new LexiconUpdate(previous, pos);
+            int line = 1;
+            while (true) {
+                CsvColumns fields = removed.next();
+                if (fields == null) {
+                    break;
+                }
+                try {
+                    CsvLexicon.WordEntry entry = lexicon.parseEntry(fields);
+                    update.remove(entry);
+                    line += 1;
+                } catch (Exception e) {
+                    throw new InputFileException(line, fields.get(0), e);
+                }
+            }
+            wordIdMapping = update.addTo(lexicon, index);
+            return this;
+        }
+
+        /**
+         * Returns how word ids of the previous dictionary given to
+         * {@link #update(BinaryDictionary, InputStream)} map to the new dictionary.
+         *
+         * @return for each previous word id, the new word id or -1 if the word was
+         *         removed; null if the dictionary is not an update
+         */
+        public int[] getWordIdMapping() {
+            return wordIdMapping;
+        }
+
+        @Override
+        public BuildStats build(SeekableByteChannel result) throws IOException {
+            if (costTokenizer != null) {
+                lexicon.calculateCosts(costTokenizer);
+            }
+            return super.build(result);
+        }
+
+        /**
+         * Builds the dictionary on the heap and loads it, without a round trip
+         * through a file. The result can be given to
+         * {@link com.worksap.nlp.sudachi.Config#addUserDictionary(BinaryDictionary)}
+         * or
+         * {@link com.worksap.nlp.sudachi.JapaneseDictionary#replaceUserDictionaries(List)}.
+         *
+         * @return the loaded user dictionary
+         * @throws IOException
+         *             if building fails
+         * @see #entry(String, short, short, short, POS, String, String)
+         */
+        public BinaryDictionary build() throws IOException {
+            MemoryChannel channel = new MemoryChannel(IN_MEMORY_CAPACITY);
+            build(channel);
+            return BinaryDictionary.loadUser(channel.toBuffer());
+        }
     }
 
     public static final class SystemNoMatrix {
@@ -198,9 +549,76 @@ public class DicBuilder {
         }
 
         public System matrix(Path path) throws IOException {
-            try (InputStream is = Files.newInputStream(path)) {
-                return matrix(is);
-            }
+            inner.readMatrix(path);
+            return inner;
+        }
+
+        /**
+         * Uses several threads to build the dictionary, including the parsing of
+         * the matrix file when it is given as a path.
+         *
+         * @param parallelism
+         *            the number of threads
+         * @return this builder
+         * @see Base#parallelism(int)
+         */
+        public SystemNoMatrix parallelism(int parallelism) {
+            inner.parallelism(parallelism);
+            return this;
+        }
+    }
+
+    /**
+     * Records of a lexicon file.
+     */
+    private interface RecordSource {
+        /**
+         * @return the next record, or null at the end of the input
+         */
+        CsvColumns next() throws IOException;
+
+        /**
+         * @return the number of bytes consumed so far
+         */
+        long position();
+    }
+
+    private static final class StreamSource implements RecordSource {
+        private final TrackingInputStream tracker;
+        private final CSVParser parser;
+
+        StreamSource(InputStream data) {
+            tracker = new TrackingInputStream(data);
+            parser = new CSVParser(new InputStreamReader(tracker, StandardCharsets.UTF_8));
+        }
+
+        @Override
+        public CsvColumns next() throws IOException {
+            List<String> fields = parser.getNextRecord();
+            return fields == null ? null : CsvColumns.of(fields);
+        }
+
+        @Override
+        public long position() {
+            return tracker.getPosition();
+        }
+    }
+
+    private static final class MappedSource implements RecordSource {
+        private final ByteCsvReader reader;
+
+        MappedSource(ByteBuffer data) {
+            reader = new ByteCsvReader(data, CsvLexicon.INTERNED_COLUMNS);
+        }
+
+        @Override
+        public CsvColumns next() {
+            return reader.next();
+        }
+
+        @Override
+        public long position() {
+            return reader.position();
         }
     }
 }
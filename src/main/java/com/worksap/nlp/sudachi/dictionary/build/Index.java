@@ -21,8 +21,13 @@ import com.worksap.nlp.dartsclone.DoubleArray;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.function.BiConsumer;
 
 /**
  * Dictionary Parts: Trie index and entry offsets
@@ -40,11 +45,17 @@ public class Index implements WriteDictionary {
     });
 
     private int count = 0;
+    private IndexRuns runs;
 
-    public int add(String key, int wordId) {
+    public int add(String key, int wordId) throws IOException {
         byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        if (runs != null) {
+            runs.add(bytes, wordId);
+            count += 1;
+            return bytes.length;
+        }
         List<Integer> entries = elements.computeIfAbsent(bytes, k -> new ArrayList<>());
-        if (entries.size() >= 255) {
+        if (entries.size() >= IndexRuns.MAX_ENTRIES_PER_KEY) {
             throw new IllegalArgumentException(String.format("key %s has >= 255 entries in the dictionary", key));
         }
         entries.add(wordId);
@@ -52,20 +63,99 @@ public class Index implements WriteDictionary {
         return bytes.length;
     }
 
+    /**
+     * Collects the keys in sorted runs which are spilled to temporary files
+     * instead of keeping them all in memory. Keys which were already added are
+     * moved to the runs.
+     * <p>
+     * In this mode, keys with too many entries are detected only when the index
+     * is written. The distinct keys are still held in memory while the runs are
+     * merged, because the trie is built from all of them at once.
+     *
+     * @param directory
+     *            where to create temporary files
+     * @param runSize
+     *            the number of keys in a run
+     * @throws IOException
+     *             if spilling the keys added until now failed
+     */
+    public void spillTo(Path directory, int runSize) throws IOException {
+        IndexRuns newRuns = new IndexRuns(directory, runSize);
+        for (Map.Entry<byte[], List<Integer>> entry : elements.entrySet()) {
+            for (int wordId : entry.getValue()) {
+                newRuns.add(entry.getKey(), wordId);
+            }
+        }
+        elements.clear();
+        runs = newRuns;
+    }
+
     public void writeTo(ModelOutput output) throws IOException {
-        DoubleArray trie = new DoubleArray();
+        try (Prepared prepared = new Prepared()) {
+            output.withSizedPart("WordId table", () -> prepared.fillWordIdTable(output::progress));
+            output.withPart("double array Trie", () -> {
+                prepared.buildTrie(output::progress);
+                prepared.writeTrie(output);
+            });
+            prepared.writeWordIdTable(output);
+        }
+    }
+
+    /**
+     * Builds the trie and the WordId table without writing them, so this can run
+     * in background while other parts of the dictionary are written. Keys must not
+     * be added after this call.
+     *
+     * @return the prepared index to pass to {@link #writeTo(ModelOutput, Prepared)}
+     * @throws IOException
+     *             if merging spilled keys failed
+     */
+    Prepared prepare() throws IOException {
+        Prepared prepared = new Prepared();
+        try {
+            prepared.fillWordIdTable((current, max) -> {
+            });
+            prepared.buildTrie((current, max) -> {
+            });
+        } catch (IOException | RuntimeException e) {
+            prepared.close();
+            throw e;
+        }
+        return prepared;
+    }
+
+    void writeTo(ModelOutput output, Prepared prepared) throws IOException {
+        try {
+            output.withSizedPart("WordId table", () -> prepared.tableSize + 4);
+            output.withPart("double array Trie", () -> prepared.writeTrie(output));
+            prepared.writeWordIdTable(output);
+        } finally {
+            prepared.close();
+        }
+    }
 
-        int size = this.elements.size();
+    final class Prepared implements AutoCloseable {
+        private final DoubleArray trie = new DoubleArray();
+        private byte[][] keys;
+        private int[] values;
+        private ByteBuffer wordIdTable;
+        private Path wordIdTableFile;
+        private long tableSize;
 
-        byte[][] keys = new byte[size][];
-        int[] values = new int[size];
-        ByteBuffer wordIdTable = ByteBuffer.allocate(count * (4 + 2));
-        wordIdTable.order(ByteOrder.LITTLE_ENDIAN);
+        private Prepared() {
+        }
 
-        output.withSizedPart("WordId table", () -> {
+        private long fillWordIdTable(BiConsumer<Integer, Integer> progress) throws IOException {
+            if (runs != null) {
+                return fillFromRuns(progress);
+            }
+            int size = elements.size();
+            keys = new byte[size][];
+            values = new int[size];
+            wordIdTable = ByteBuffer.allocate(count * (4 + 2));
+            wordIdTable.order(ByteOrder.LITTLE_ENDIAN);
             int i = 0;
-            int numEntries = this.elements.entrySet().size();
-            for (Map.Entry<byte[], List<Integer>> entry : this.elements.entrySet()) {
+            for (Map.Entry<byte[], List<Integer>> entry : elements.entrySet()) {
                 keys[i] = entry.getKey();
                 values[i] = wordIdTable.position();
                 i++;
@@ -74,23 +164,85 @@ public class Index implements WriteDictionary {
                 for (int wid : wordIds) {
                     wordIdTable.putInt(wid);
                 }
-                output.progress(i, numEntries);
+                progress.accept(i, size);
             }
-            return wordIdTable.position() + 4;
-        });
+            tableSize = wordIdTable.position();
+            return tableSize + 4;
+        }
 
-        DicBuffer buffer = new DicBuffer(4);
-        output.withPart("double array Trie", () -> {
-            trie.build(keys, values, output::progress);
+        /**
+         * Merges the runs, collecting the keys for the trie and streaming the WordId
+         * table to a temporary file.
+         */
+        private long fillFromRuns(BiConsumer<Integer, Integer> progress) throws IOException {
+            List<byte[]> keyList = new ArrayList<>();
+            int[][] valueHolder = { new int[1024] };
+            int[] written = { 0 };
+            wordIdTableFile = Files.createTempFile(runs.directory(), "sudachi-wordids", ".bin");
+            try (FileChannel channel = FileChannel.open(wordIdTableFile, StandardOpenOption.WRITE)) {
+                DicBuffer buffer = new DicBuffer(64 * 1024);
+                runs.merge((key, wordIds, length) -> {
+                    int index = keyList.size();
+                    if (index == valueHolder[0].length) {
+                        valueHolder[0] = Arrays.copyOf(valueHolder[0], index * 2);
+                    }
+                    keyList.add(key);
+                    if (buffer.wontFit(1 + 4 * length)) {
+                        tableSize += buffer.consume(channel::write);
+                    }
+                    valueHolder[0][index] = (int) (tableSize + buffer.position());
+                    buffer.putByte((byte) length);
+                    for (int i = 0; i < length; i++) {
+                        buffer.putInt(wordIds[i]);
+                    }
+                    // the number of distinct keys is known only after the merge
+                    written[0] += length;
+                    progress.accept(written[0], count);
+                });
+                tableSize += buffer.consume(channel::write);
+            }
+            keys = keyList.toArray(new byte[0][]);
+            values = Arrays.copyOf(valueHolder[0], keys.length);
+            return tableSize + 4;
+        }
+
+        private void buildTrie(BiConsumer<Integer, Integer> progress) {
+            trie.build(keys, values, progress);
+        }
+
+        private void writeTrie(ModelOutput output) throws IOException {
+            DicBuffer buffer = new DicBuffer(4);
             buffer.putInt(trie.size());
             buffer.consume(output::write);
             output.write(trie.byteArray());
-        });
+        }
 
-        buffer.putInt(wordIdTable.position());
-        buffer.consume(output::write);
+        private void writeWordIdTable(ModelOutput output) throws IOException {
+            DicBuffer buffer = new DicBuffer(4);
+            buffer.putInt((int) tableSize);
+            buffer.consume(output::write);
 
-        wordIdTable.flip();
-        output.write(wordIdTable);
+            if (wordIdTable != null) {
+                wordIdTable.flip();
+                output.write(wordIdTable);
+                return;
+            }
+            try (FileChannel channel = FileChannel.open(wordIdTableFile, StandardOpenOption.READ)) {
+                long position = 0;
+                while (position < tableSize) {
+                    position += channel.transferTo(position, tableSize - position, output);
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (wordIdTableFile != null) {
+                Files.deleteIfExists(wordIdTableFile);
+            }
+            if (runs != null) {
+                runs.close();
+            }
+        }
     }
 }
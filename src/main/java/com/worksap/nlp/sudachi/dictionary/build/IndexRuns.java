@@ -0,0 +1,300 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary.build;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Collects (key, word id) pairs of the index with bounded memory.
+ * <p>
+ * Pairs are kept in primitive arrays. When a run of pairs is full, it is sorted
+ * by key and written to a temporary file. The runs are merged when the index
+ * is written, producing the keys in sorted order with their word ids in the
+ * order they were added.
+ */
+class IndexRuns implements Closeable {
+    static final int MAX_ENTRIES_PER_KEY = 255;
+    static final int DEFAULT_RUN_SIZE = 1024 * 1024;
+
+    private final Path directory;
+    private final int runSize;
+    private final List<Path> files = new ArrayList<>();
+
+    private byte[] keyData = new byte[64 * 1024];
+    private int keyDataSize = 0;
+    private final int[] keyOffsets;
+    private final int[] wordIds;
+    private int size = 0;
+
+    IndexRuns(Path directory, int runSize) {
+        if (runSize <= 0) {
+            throw new IllegalArgumentException("run size must be positive, was " + runSize);
+        }
+        this.directory = directory;
+        this.runSize = runSize;
+        keyOffsets = new int[runSize + 1];
+        wordIds = new int[runSize];
+    }
+
+    void add(byte[] key, int wordId) throws IOException {
+        if (keyDataSize + key.length > keyData.length) {
+            keyData = Arrays.copyOf(keyData, Math.max(keyData.length * 2, keyDataSize + key.length));
+        }
+        System.arraycopy(key, 0, keyData, keyDataSize, key.length);
+        keyOffsets[size] = keyDataSize;
+        keyDataSize += key.length;
+        keyOffsets[size + 1] = keyDataSize;
+        wordIds[size] = wordId;
+        size += 1;
+        if (size == runSize) {
+            spill();
+        }
+    }
+
+    Path directory() {
+        return directory;
+    }
+
+    private void spill() throws IOException {
+        int[] order = sortedOrder();
+        Path file = Files.createTempFile(directory, "sudachi-index", ".run");
+        // builders which fail while reading input are not closed
+        file.toFile().deleteOnExit();
+        files.add(file);
+        try (DataOutputStream out = new DataOutputStream(
+                new BufferedOutputStream(Files.newOutputStream(file), 64 * 1024))) {
+            for (int i : order) {
+                int start = keyOffsets[i];
+                int length = keyOffsets[i + 1] - start;
+                out.writeInt(length);
+                out.write(keyData, start, length);
+                out.writeInt(wordIds[i]);
+            }
+        }
+        size = 0;
+        keyDataSize = 0;
+    }
+
+    /**
+     * Sorts the pairs of the current run by key with a stable merge sort, so pairs
+     * with the same key keep the order in which they were added.
+     */
+    private int[] sortedOrder() {
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        int[] buffer = new int[size];
+        for (int width = 1; width < size; width *= 2) {
+            for (int left = 0; left < size; left += 2 * width) {
+                int mid = Math.min(left + width, size);
+                int right = Math.min(left + 2 * width, size);
+                int i = left;
+                int j = mid;
+                int k = left;
+                while (i < mid && j < right) {
+                    if (compare(order[j], order[i]) < 0) {
+                        buffer[k++] = order[j++];
+                    } else {
+                        buffer[k++] = order[i++];
+                    }
+                }
+                while (i < mid) {
+                    buffer[k++] = order[i++];
+                }
+                while (j < right) {
+                    buffer[k++] = order[j++];
+                }
+            }
+            int[] tmp = order;
+            order = buffer;
+            buffer = tmp;
+        }
+        return order;
+    }
+
+    private int compare(int l, int r) {
+        int lstart = keyOffsets[l];
+        int llen = keyOffsets[l + 1] - lstart;
+        int rstart = keyOffsets[r];
+        int rlen = keyOffsets[r + 1] - rstart;
+        return compareKeys(keyData, lstart, llen, keyData, rstart, rlen);
+    }
+
+    static int compareKeys(byte[] l, int lstart, int llen, byte[] r, int rstart, int rlen) {
+        for (int i = 0; i < Math.min(llen, rlen); i++) {
+            if (l[lstart + i] != r[rstart + i]) {
+                return (l[lstart + i] & 0xff) - (r[rstart + i] & 0xff);
+            }
+        }
+        return llen - rlen;
+    }
+
+    /**
+     * Merges all runs and passes each key with its word ids to the consumer, in
+     * the order of keys.
+     *
+     * @param consumer
+     *            receives the keys
+     * @throws IOException
+     *             if reading the runs failed
+     * @throws IllegalArgumentException
+     *             if a key has more than {@value #MAX_ENTRIES_PER_KEY} word ids
+     */
+    void merge(KeyConsumer consumer) throws IOException {
+        PriorityQueue<Cursor> queue = new PriorityQueue<>();
+        List<FileCursor> fileCursors = new ArrayList<>();
+        try {
+            for (int i = 0; i < files.size(); i++) {
+                FileCursor cursor = new FileCursor(files.get(i), i);
+                fileCursors.add(cursor);
+                if (cursor.next()) {
+                    queue.add(cursor);
+                }
+            }
+            MemoryCursor memory = new MemoryCursor(sortedOrder(), files.size());
+            if (memory.next()) {
+                queue.add(memory);
+            }
+
+            int[] group = new int[MAX_ENTRIES_PER_KEY];
+            while (!queue.isEmpty()) {
+                Cursor head = queue.poll();
+                byte[] key = head.key;
+                int length = 0;
+                Cursor cursor = head;
+                while (true) {
+                    if (length == MAX_ENTRIES_PER_KEY) {
+                        String text = new String(key, StandardCharsets.UTF_8);
+                        throw new IllegalArgumentException(
+                                String.format("key %s has >= 255 entries in the dictionary", text));
+                    }
+                    group[length++] = cursor.wordId;
+                    if (cursor.next()) {
+                        queue.add(cursor);
+                    }
+                    Cursor peek = queue.peek();
+                    if (peek == null || !Arrays.equals(peek.key, key)) {
+                        break;
+                    }
+                    cursor = queue.poll();
+                }
+                consumer.accept(key, group, length);
+            }
+        } finally {
+            for (FileCursor cursor : fileCursors) {
+                cursor.close();
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Path file : files) {
+            Files.deleteIfExists(file);
+        }
+        files.clear();
+    }
+
+    @FunctionalInterface
+    interface KeyConsumer {
+        void accept(byte[] key, int[] wordIds, int length) throws IOException;
+    }
+
+    private abstract static class Cursor implements Comparable<Cursor> {
+        private final int run;
+        byte[] key;
+        int wordId;
+
+        Cursor(int run) {
+            this.run = run;
+        }
+
+        abstract boolean next() throws IOException;
+
+        @Override
+        public int compareTo(Cursor o) {
+            int result = compareKeys(key, 0, key.length, o.key, 0, o.key.length);
+            if (result != 0) {
+                return result;
+            }
+            return Integer.compare(run, o.run);
+        }
+    }
+
+    private static class FileCursor extends Cursor implements Closeable {
+        private final DataInputStream input;
+
+        FileCursor(Path file, int run) throws IOException {
+            super(run);
+            input = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 64 * 1024));
+        }
+
+        @Override
+        boolean next() throws IOException {
+            int length;
+            try {
+                length = input.readInt();
+            } catch (EOFException e) {
+                return false;
+            }
+            key = new byte[length];
+            input.readFully(key);
+            wordId = input.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            input.close();
+        }
+    }
+
+    private class MemoryCursor extends Cursor {
+        private final int[] order;
+        private int index = 0;
+
+        MemoryCursor(int[] order, int run) {
+            super(run);
+            this.order = order;
+        }
+
+        @Override
+        boolean next() {
+            if (index >= order.length) {
+                return false;
+            }
+            int i = order[index++];
+            key = Arrays.copyOfRange(keyData, keyOffsets[i], keyOffsets[i + 1]);
+            wordId = wordIds[i];
+            return true;
+        }
+    }
+}
@@ -0,0 +1,256 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary.build;
+
+import com.worksap.nlp.sudachi.WordId;
+import com.worksap.nlp.sudachi.dictionary.BinaryDictionary;
+import com.worksap.nlp.sudachi.dictionary.DictionaryVersion;
+import com.worksap.nlp.sudachi.dictionary.DoubleArrayLexicon;
+import com.worksap.nlp.sudachi.dictionary.Grammar;
+import com.worksap.nlp.sudachi.dictionary.POS;
+import com.worksap.nlp.sudachi.dictionary.WordInfo;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+/**
+ * Words of a previously built user dictionary which are kept in a new one.
+ * <p>
+ * Kept words are added before the words read from CSV, with their serialized
+ * forms copied from the previous dictionary. Word ids of the kept words shift
+ * over the removed ones, and parts of speech are registered again in the order
+ * of the kept words which use them, so serialized forms which refer to shifted
+ * words or parts of speech are patched.
+ */
+final class LexiconUpdate {
+    private final POSTable pos;
+    private final int builtin;
+    private final POS[] previousPos;
+    private final HashMap<POS, Short> previousPosIds = new HashMap<>();
+    private final DoubleArrayLexicon lexicon;
+    private final CsvLexicon.WordEntry[] words;
+    private final boolean[] removed;
+
+    /**
+     * Reads the words of the previous dictionary. Its parts of speech are
+     * registered only when the kept words are added.
+     *
+     * @param previous
+     *            user dictionary built with the same system dictionary
+     * @param pos
+     *            POS table of the new dictionary, with only the POS of the system
+     *            dictionary
+     */
+    LexiconUpdate(BinaryDictionary previous, POSTable pos) {
+        if (previous.getDictionaryHeader().getVersion() != DictionaryVersion.USER_DICT_VERSION_3) {
+            throw new IllegalArgumentException("previous dictionary must be a user dictionary of the latest version");
+        }
+        this.pos = pos;
+        builtin = pos.getList().size();
+        Grammar grammar = previous.getGrammar();
+        previousPos = new POS[grammar.getPartOfSpeechSize()];
+        for (short i = 0; i < previousPos.length; i++) {
+            POS p = grammar.getPartOfSpeechString(i);
+            if (pos.findId(p) >= 0 || previousPosIds.putIfAbsent(p, (short) (builtin + i)) != null) {
+                throw new IllegalArgumentException(
+                        "previous dictionary was built with a different system dictionary, POS " + p);
+            }
+            previousPos[i] = p;
+        }
+
+        lexicon = previous.getLexicon();
+        int size = lexicon.size();
+        byte[][] keys = lexicon.getWordKeys();
+        words = new CsvLexicon.WordEntry[size];
+        removed = new boolean[size];
+        for (int i = 0; i < size; i++) {
+            CsvLexicon.WordEntry entry = new CsvLexicon.WordEntry();
+            entry.leftId = lexicon.getLeftId(i);
+            entry.rightId = lexicon.getRightId(i);
+            entry.cost = lexicon.getCost(i);
+            if (keys[i] != null) {
+                entry.headword = new String(keys[i], StandardCharsets.UTF_8);
+            } else if (entry.leftId != -1) {
+                throw new IllegalArgumentException("word " + i + " is not in the trie of the previous dictionary");
+            }
+            entry.wordInfo = lexicon.getWordInfo(i);
+            if (entry.wordInfo.getPOSId() >= builtin + previousPos.length) {
+                throw new IllegalArgumentException("word " + i + " has an invalid POS id");
+            }
+            entry.serialized = lexicon.getSerializedWordInfo(i);
+            words[i] = entry;
+        }
+    }
+
+    int size() {
+        return words.length;
+    }
+
+    /**
+     * Removes a word which has the same surface, POS, reading and parameters as
+     * the entry. The cost is ignored if it is unspecified in the entry, because
+     * the previous dictionary may store the computed cost.
+     *
+     * @param entry
+     *            entry parsed from CSV
+     * @throws IllegalArgumentException
+     *             if no such word is left
+     */
+    void remove(CsvLexicon.WordEntry entry) {
+        WordInfo wi = entry.wordInfo;
+        short posId = pos.findId(entry.pos);
+        if (posId < 0) {
+            posId = previousPosIds.getOrDefault(entry.pos, (short) -1);
+        }
+        int first = posId < 0 ? -1 : lexicon.getWordId(wi.getSurface(), posId, wi.getReadingForm());
+        if (first >= 0) {
+            for (int i = first; i < words.length; i++) {
+                if (!removed[i] && matches(words[i], entry, posId)) {
+                    removed[i] = true;
+                    return;
+                }
+            }
+        }
+        throw new IllegalArgumentException("word was not found in the previous dictionary");
+    }
+
+    private static boolean matches(CsvLexicon.WordEntry word, CsvLexicon.WordEntry entry, short posId) {
+        WordInfo wi = word.wordInfo;
+        return word.leftId == entry.leftId && word.rightId == entry.rightId
+                && (word.cost == entry.cost || entry.cost == Short.MIN_VALUE) && wi.getPOSId() == posId
+                && wi.getSurface().equals(entry.wordInfo.getSurface())
+                && wi.getReadingForm().equals(entry.wordInfo.getReadingForm());
+    }
+
+    /**
+     * Adds the kept words to the lexicon and the index, which must be empty, and
+     * registers the parts of speech which they use. Parts of speech used only by
+     * removed words are dropped.
+     *
+     * @return for each word id of the previous dictionary, its id in the new one
+     *         or -1 if it was removed
+     */
+    int[] addTo(CsvLexicon target, Index index) throws IOException {
+        int[] mapping = new int[words.length];
+        int next = 0;
+        for (int i = 0; i < words.length; i++) {
+            mapping[i] = removed[i] ? -1 : next++;
+        }
+        for (int i = 0; i < words.length; i++) {
+            if (removed[i]) {
+                continue;
+            }
+            CsvLexicon.WordEntry entry = words[i];
+            short posId = entry.wordInfo.getPOSId();
+            if (posId >= builtin) {
+                posId = pos.getId(previousPos[posId - builtin]);
+                entry.wordInfo.setPOSId(posId);
+            }
+            entry.serialized = remap(entry.serialized, mapping, i, posId);
+            int wordId = target.addSerializedEntry(entry);
+            if (entry.headword != null) {
+                index.add(entry.headword, wordId);
+            }
+        }
+        return mapping;
+    }
+
+    /**
+     * Replaces the POS id of the word and the ids of the user words which it
+     * refers to: its dictionary form and the words it is split into.
+     *
+     * @return the same buffer if no ids change, a patched copy otherwise
+     */
+    private static ByteBuffer remap(ByteBuffer serialized, int[] mapping, int wordId, short posId) {
+        ByteBuffer data = serialized;
+        int position = skipString(data, 0); // surface
+        position += lengthSize(stringLength(data, position)); // headword length
+        if (data.getShort(position) != posId) {
+            data = copy(data);
+            data.putShort(position, posId);
+        }
+        position += 2;
+        position = skipString(data, position); // normalized form
+        int dictionaryForm = data.getInt(position);
+        if (dictionaryForm >= 0) {
+            int mapped = mapped(mapping, dictionaryForm, wordId);
+            if (mapped != dictionaryForm) {
+                if (data == serialized) {
+                    data = copy(data);
+                }
+                data.putInt(position, mapped);
+            }
+        }
+        position += 4;
+        position = skipString(data, position); // reading form
+        for (int split = 0; split < 3; split++) {
+            int length = data.get(position);
+            position += 1;
+            for (int j = 0; j < length; j++, position += 4) {
+                int ref = data.getInt(position);
+                if (WordId.dic(ref) != 1) {
+                    continue;
+                }
+                int mapped = WordId.make(1, mapped(mapping, WordId.word(ref), wordId));
+                if (mapped != ref) {
+                    if (data == serialized) {
+                        data = copy(data);
+                    }
+                    data.putInt(position, mapped);
+                }
+            }
+        }
+        return data;
+    }
+
+    private static int mapped(int[] mapping, int ref, int wordId) {
+        if (ref >= mapping.length) {
+            throw new IllegalArgumentException("word " + wordId + " refers to the invalid word id " + ref);
+        }
+        int mapped = mapping[ref];
+        if (mapped < 0) {
+            throw new IllegalArgumentException("word " + wordId + " refers to the removed word " + ref);
+        }
+        return mapped;
+    }
+
+    private static ByteBuffer copy(ByteBuffer data) {
+        ByteBuffer copy = ByteBuffer.allocate(data.remaining()).order(data.order());
+        copy.put(data.duplicate());
+        copy.flip();
+        return copy;
+    }
+
+    private static int stringLength(ByteBuffer data, int position) {
+        byte length = data.get(position);
+        if (length < 0) {
+            return ((length & 0x7F) << 8) | Byte.toUnsignedInt(data.get(position + 1));
+        }
+        return length;
+    }
+
+    private static int lengthSize(int length) {
+        return length > Byte.MAX_VALUE ? 2 : 1;
+    }
+
+    private static int skipString(ByteBuffer data, int position) {
+        int length = stringLength(data, position);
+        return position + lengthSize(length) + 2 * length;
+    }
+}
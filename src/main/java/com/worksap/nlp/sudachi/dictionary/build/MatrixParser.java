@@ -0,0 +1,206 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary.build;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Pattern;
+
+/**
+ * Parses lines of a connection matrix directly from bytes.
+ * <p>
+ * Lines which consist of ASCII numbers are parsed without creating strings.
+ * Other lines are decoded and parsed like {@code Short.parseShort} would, which
+ * also produces the error messages. When the line number is not known, as for
+ * chunks parsed in parallel, parsing stops at such lines instead.
+ */
+class MatrixParser {
+    static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
+    @FunctionalInterface
+    interface Sink {
+        void accept(short left, short right, short cost);
+    }
+
+    private final Sink sink;
+    private final short[] values = new short[3];
+    private int lineNumber;
+    private long entries = 0;
+
+    /**
+     * @param sink
+     *            receives the parsed entries
+     * @param lineNumber
+     *            the line number of the first line to be parsed, or -1 if it is
+     *            unknown
+     */
+    MatrixParser(Sink sink, int lineNumber) {
+        this.sink = sink;
+        this.lineNumber = lineNumber;
+    }
+
+    long getEntries() {
+        return entries;
+    }
+
+    /**
+     * Parses the lines in the range. The range must not end between {@code \r}
+     * and {@code \n}.
+     *
+     * @param buffer
+     *            buffer with the data
+     * @param start
+     *            start of the first line
+     * @param end
+     *            end of the range
+     * @return false if parsing stopped at a line which can't be parsed without
+     *         its line number, true otherwise
+     */
+    boolean parse(ByteBuffer buffer, int start, int end) {
+        int position = start;
+        while (position < end) {
+            int lineEnd = findLineEnd(buffer, position, end);
+            if (!parseLine(buffer, position, lineEnd)) {
+                return false;
+            }
+            position = skipLineEnd(buffer, lineEnd, end);
+            if (lineNumber >= 0) {
+                lineNumber += 1;
+            }
+        }
+        return true;
+    }
+
+    static int findLineEnd(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    static int skipLineEnd(ByteBuffer buffer, int lineEnd, int end) {
+        if (lineEnd >= end) {
+            return end;
+        }
+        if (buffer.get(lineEnd) == '\r' && lineEnd + 1 < end && buffer.get(lineEnd + 1) == '\n') {
+            return lineEnd + 2;
+        }
+        return lineEnd + 1;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        // the same characters as \s in regular expressions
+        return b == ' ' || b == '\t' || b == '\n' || b == 0x0B || b == '\f' || b == '\r';
+    }
+
+    private boolean parseLine(ByteBuffer buffer, int start, int end) {
+        int position = start;
+        while (position < end && isWhitespace(buffer.get(position))) {
+            position++;
+        }
+        if (position == end) {
+            return true; // blank line
+        }
+        if (position != start) {
+            return parseSlow(buffer, start, end);
+        }
+
+        for (int i = 0; i < 3; i++) {
+            int tokenEnd = position;
+            while (tokenEnd < end && !isWhitespace(buffer.get(tokenEnd))) {
+                tokenEnd++;
+            }
+            int value = parseShort(buffer, position, tokenEnd);
+            if (value == Integer.MIN_VALUE) {
+                return parseSlow(buffer, start, end);
+            }
+            values[i] = (short) value;
+            position = tokenEnd;
+            while (position < end && isWhitespace(buffer.get(position))) {
+                position++;
+            }
+        }
+        sink.accept(values[0], values[1], values[2]);
+        entries += 1;
+        return true;
+    }
+
+    /**
+     * @return the parsed value, or {@code Integer.MIN_VALUE} if the token is not an
+     *         ASCII number in the range of short
+     */
+    static int parseShort(ByteBuffer buffer, int start, int end) {
+        if (start == end) {
+            return Integer.MIN_VALUE;
+        }
+        int position = start;
+        boolean negative = false;
+        byte first = buffer.get(position);
+        if (first == '-' || first == '+') {
+            negative = first == '-';
+            position++;
+            if (position == end) {
+                return Integer.MIN_VALUE;
+            }
+        }
+        int value = 0;
+        for (; position < end; position++) {
+            int digit = buffer.get(position) - '0';
+            if (digit < 0 || digit > 9) {
+                return Integer.MIN_VALUE;
+            }
+            value = value * 10 + digit;
+            if (value > Short.MAX_VALUE + 1) {
+                return Integer.MIN_VALUE;
+            }
+        }
+        value = negative ? -value : value;
+        if (value > Short.MAX_VALUE) {
+            return Integer.MIN_VALUE;
+        }
+        return value;
+    }
+
+    private boolean parseSlow(ByteBuffer buffer, int start, int end) {
+        if (lineNumber < 0) {
+            return false;
+        }
+        byte[] bytes = new byte[end - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = buffer.get(start + i);
+        }
+        String line = new String(bytes, StandardCharsets.UTF_8);
+        String[] cols = WHITESPACE.split(line);
+        if (cols.length < 3) {
+            throw new InputFileException(lineNumber, line, new IllegalArgumentException("not enough entries"));
+        }
+
+        try {
+            short left = Short.parseShort(cols[0]);
+            short right = Short.parseShort(cols[1]);
+            short cost = Short.parseShort(cols[2]);
+            sink.accept(left, right, cost);
+        } catch (NumberFormatException e) {
+            throw new InputFileException(lineNumber, "", e);
+        }
+        entries += 1;
+        return true;
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary.build;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.SeekableByteChannel;
+import java.util.Arrays;
+
+/**
+ * Growable channel on the heap, to build dictionaries without writing files.
+ * Positions after the end can be set, the gap is filled with zeroes.
+ */
+class MemoryChannel implements SeekableByteChannel {
+    private ByteBuffer buffer;
+    private int size;
+
+    MemoryChannel(int capacity) {
+        buffer = ByteBuffer.allocate(capacity);
+    }
+
+    @Override
+    public int read(ByteBuffer dst) {
+        int position = buffer.position();
+        if (position >= size) {
+            return -1;
+        }
+        int length = Math.min(dst.remaining(), size - position);
+        ByteBuffer data = buffer.duplicate();
+        ((Buffer) data).limit(position + length);
+        dst.put(data);
+        ((Buffer) buffer).position(position + length);
+        return length;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        int length = src.remaining();
+        reserve((long) buffer.position() + length);
+        buffer.put(src);
+        size = Math.max(size, buffer.position());
+        return length;
+    }
+
+    private void reserve(long required) throws IOException {
+        if (required <= buffer.capacity()) {
+            return;
+        }
+        if (required > Integer.MAX_VALUE - 8) {
+            throw new IOException("dictionary is too large to build in memory");
+        }
+        int capacity = (int) Math.max(required, Math.min(2L * buffer.capacity(), Integer.MAX_VALUE - 8));
+        ByteBuffer grown = ByteBuffer.allocate(capacity);
+        int position = buffer.position();
+        ((Buffer) buffer).position(0);
+        ((Buffer) buffer).limit(size);
+        grown.put(buffer);
+        ((Buffer) grown).position(position);
+        buffer = grown;
+    }
+
+    @Override
+    public long position() {
+        return buffer.position();
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        reserve(newPosition);
+        ((Buffer) buffer).position((int) newPosition);
+        return this;
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long newSize) {
+        if (newSize < 0) {
+            throw new IllegalArgumentException("negative size: " + newSize);
+        }
+        if (newSize < size) {
+            // a gap written after a later change of the position must read as zeroes
+            Arrays.fill(buffer.array(), (int) newSize, size, (byte) 0);
+            size = (int) newSize;
+        }
+        if (buffer.position() > size) {
+            ((Buffer) buffer).position(size);
+        }
+        return this;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return the written bytes in a buffer of their size, in little endian
+     */
+    ByteBuffer toBuffer() {
+        ByteBuffer result = ByteBuffer.allocate(size);
+        ByteBuffer data = buffer.duplicate();
+        ((Buffer) data).position(0);
+        ((Buffer) data).limit(size);
+        result.put(data);
+        ((Buffer) result).flip();
+        return result.order(ByteOrder.LITTLE_ENDIAN);
+    }
+}
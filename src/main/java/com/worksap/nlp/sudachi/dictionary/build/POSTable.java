@@ -40,6 +40,19 @@ public class POSTable implements WriteDictionary {
         });
     }
 
+    /**
+     * Returns the id of a part of speech without registering it. Safe to call
+     * concurrently when no parts of speech are registered at the same time.
+     *
+     * @param s
+     *            part of speech
+     * @return the id, or -1 if the part of speech is not registered
+     */
+    short findId(POS s) {
+        Short id = lookup.get(s);
+        return id == null ? -1 : id;
+    }
+
     public void preloadFrom(Grammar grammar) {
         int partOfSpeechSize = grammar.getPartOfSpeechSize();
         for (short i = 0; i < partOfSpeechSize; ++i) {
@@ -53,6 +53,18 @@ public class Parameters implements WriteDictionary {
         params.put(cost);
     }
 
+    public int size() {
+        return params.position() / 3;
+    }
+
+    public short getCost(int index) {
+        return params.get(index * 3 + 2);
+    }
+
+    public void setCost(int index, short cost) {
+        params.put(index * 3 + 2, cost);
+    }
+
     public void setLimits(int left, int right) {
         this.maxLeft = left;
         this.maxRight = right;
@@ -18,8 +18,12 @@ package com.worksap.nlp.sudachi.dictionary.build;
 
 import com.worksap.nlp.sudachi.WordId;
 import com.worksap.nlp.sudachi.dictionary.Lexicon;
+import com.worksap.nlp.sudachi.dictionary.WordInfo;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 public class WordLookup {
     private WordLookup() {
@@ -42,8 +46,15 @@ public class WordLookup {
         }
     }
 
+    /**
+     * Resolves words of the lexicon being built. Entries are indexed by surface,
+     * POS and reading on demand, the first entry wins when several of them have
+     * the same key.
+     */
     public static class Csv implements WordIdResolver {
         private final CsvLexicon lexicon;
+        private final Map<Key, Integer> index = new HashMap<>();
+        private volatile int indexed = 0;
 
         public Csv(CsvLexicon lexicon) {
             this.lexicon = lexicon;
@@ -51,15 +62,21 @@ public class WordLookup {
 
         @Override
         public int lookup(String headword, short posId, String reading) {
+            if (indexed < lexicon.getEntries().size()) {
+                updateIndex();
+            }
+            Integer wordId = index.get(new Key(headword, posId, reading));
+            return wordId == null ? -1 : wordId;
+        }
+
+        private synchronized void updateIndex() {
             List<CsvLexicon.WordEntry> entries = lexicon.getEntries();
-            for (int i = 0; i < entries.size(); ++i) {
-                CsvLexicon.WordEntry entry = entries.get(i);
-                if (entry.wordInfo.getSurface().equals(headword) && entry.wordInfo.getPOSId() == posId
-                        && entry.wordInfo.getReadingForm().equals(reading)) {
-                    return i;
-                }
+            int size = entries.size();
+            for (int i = indexed; i < size; ++i) {
+                WordInfo wi = entries.get(i).wordInfo;
+                index.putIfAbsent(new Key(wi.getSurface(), wi.getPOSId(), wi.getReadingForm()), i);
             }
-            return -1;
+            indexed = size;
         }
 
         @Override
@@ -143,4 +160,33 @@ public class WordLookup {
             return true;
         }
     }
+
+    private static final class Key {
+        private final String surface;
+        private final short posId;
+        private final String reading;
+
+        Key(String surface, short posId, String reading) {
+            this.surface = surface;
+            this.posId = posId;
+            this.reading = reading;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) o;
+            return posId == key.posId && surface.equals(key.surface) && reading.equals(key.reading);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(surface, posId, reading);
+        }
+    }
 }
@@ -0,0 +1,153 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class BinaryMorphemeFormatterTest {
+    Tokenizer tokenizer;
+    BinaryMorphemeFormatter formatter;
+
+    @Before
+    public void setUp() {
+        tokenizer = TestDictionary.INSTANCE.user1().create();
+        formatter = new BinaryMorphemeFormatter();
+    }
+
+    private void assertSameMorphemes(BinaryMorphemeReader.Sentence sentence, MorphemeList morphemes) {
+        assertThat(sentence.size(), is(morphemes.size()));
+        for (int i = 0; i < morphemes.size(); i++) {
+            assertThat(sentence.getBegin(i), is(morphemes.getBegin(i)));
+            assertThat(sentence.getEnd(i), is(morphemes.getEnd(i)));
+            assertThat(sentence.getWordId(i), is(morphemes.getWordId(i)));
+            assertThat(sentence.getPosId(i), is(morphemes.getPosId(i)));
+            assertThat(sentence.isOOV(i), is(morphemes.isOOV(i)));
+        }
+    }
+
+    @Test
+    public void writeAndRead() throws IOException {
+        MorphemeList first = tokenizer.tokenize("東京都に行った");
+        MorphemeList second = tokenizer.tokenize("京都でぴらるを食べた");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        formatter.writeSentence(first, output);
+        formatter.writeSentence(second, output);
+        formatter.writeSentence(MorphemeList.EMPTY, output);
+
+        try (BinaryMorphemeReader reader = new BinaryMorphemeReader(new ByteArrayInputStream(output.toByteArray()))) {
+            assertThat(reader.hasText(), is(true));
+            BinaryMorphemeReader.Sentence sentence = reader.next();
+            assertSameMorphemes(sentence, first);
+            assertThat(sentence.getText(), is("東京都に行った"));
+            assertThat(sentence.surfaceAsCharSequence(0).toString(), is("東京都"));
+            assertSameMorphemes(reader.next(), second);
+            assertThat(reader.next().size(), is(0));
+            assertThat(reader.hasNext(), is(false));
+        }
+    }
+
+    @Test
+    public void writeWithoutText() throws IOException {
+        formatter.setStoreText(false);
+        MorphemeList morphemes = tokenizer.tokenize("東京都に行った");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        formatter.writeSentence(morphemes, output);
+
+        try (BinaryMorphemeReader reader = new BinaryMorphemeReader(new ByteArrayInputStream(output.toByteArray()))) {
+            assertThat(reader.hasText(), is(false));
+            BinaryMorphemeReader.Sentence sentence = reader.next();
+            assertSameMorphemes(sentence, morphemes);
+            assertThat(sentence.getText(), is(nullValue()));
+        }
+    }
+
+    @Test
+    public void readEmpty() throws IOException {
+        try (BinaryMorphemeReader reader = new BinaryMorphemeReader(new ByteArrayInputStream(new byte[0]))) {
+            assertThat(reader.hasNext(), is(false));
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void readInvalidHeader() throws IOException {
+        new BinaryMorphemeReader(new ByteArrayInputStream("東京都\tEOS\n".getBytes("UTF-8")));
+    }
+
+    private static byte[] withHeader(int... record) {
+        byte[] bytes = Arrays.copyOf(BinaryMorphemeFormatter.MAGIC, 6 + record.length);
+        bytes[4] = BinaryMorphemeFormatter.VERSION;
+        bytes[5] = BinaryMorphemeFormatter.FLAG_TEXT;
+        for (int i = 0; i < record.length; i++) {
+            bytes[6 + i] = (byte) record[i];
+        }
+        return bytes;
+    }
+
+    private static void assertBroken(byte[] bytes) {
+        try (BinaryMorphemeReader reader = new BinaryMorphemeReader(new ByteArrayInputStream(bytes))) {
+            while (reader.hasNext()) {
+                reader.next();
+            }
+            fail("no exception");
+        } catch (IOException e) {
+            assertThat(e.getMessage(), is("broken sentence record"));
+        }
+    }
+
+    @Test
+    public void readTruncatedRecord() throws IOException {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        formatter.writeSentence(tokenizer.tokenize("東京都に行った"), output);
+        byte[] bytes = output.toByteArray();
+        assertBroken(Arrays.copyOf(bytes, bytes.length - 1));
+        assertBroken(withHeader(0x85));
+    }
+
+    @Test
+    public void readTextLongerThanRecord() {
+        assertBroken(withHeader(2, 0, 100));
+        assertBroken(withHeader(3, 0, 0xFF, 0x7F));
+    }
+
+    @Test
+    public void readTooLongVarint() {
+        assertBroken(withHeader(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01));
+        assertBroken(withHeader(6, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01));
+    }
+
+    @Test
+    public void formatMorpheme() {
+        MorphemeList morphemes = tokenizer.tokenize("東京都ぴらる");
+        Morpheme morpheme = morphemes.get(0);
+        assertThat(formatter.formatMorpheme(morpheme), is("0\t3\t" + morpheme.getWordId() + "\t"
+                + morpheme.partOfSpeechId() + "\t"));
+        assertThat(formatter.formatMorpheme(morphemes.get(morphemes.size() - 1)).endsWith("\t(OOV)"),
+                is(morphemes.get(morphemes.size() - 1).isOOV()));
+        assertThat(formatter.isBinary(), is(true));
+    }
+}
@@ -141,6 +141,17 @@ class ConfigTest {
     assertNotEquals(c1, c3)
   }
 
+  @Test
+  fun warmUp() {
+    assertEquals(Config.WarmUp.NONE, Config.empty().warmUp)
+    val cfg = Config.fromJsonString("""{"warmUp": "pages"}""", PathAnchor.none())
+    assertEquals(Config.WarmUp.PAGES, cfg.warmUp)
+    assertEquals(Config.WarmUp.PAGES, Config.empty().withFallback(cfg).warmUp)
+    assertFailsWith<IllegalArgumentException> {
+      Config.fromJsonString("""{"warmUp": "everything"}""", PathAnchor.none())
+    }
+  }
+
   @Test
   fun anchoredWith() {
     val cfg = Config.empty()
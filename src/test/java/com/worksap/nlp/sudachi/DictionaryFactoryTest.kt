@@ -16,7 +16,10 @@
 
 package com.worksap.nlp.sudachi
 
+import java.time.Duration
+import kotlin.test.assertEquals
 import kotlin.test.assertFails
+import kotlin.test.assertTrue
 import org.junit.Test
 
 class DictionaryFactoryTest {
@@ -48,4 +51,18 @@ class DictionaryFactoryTest {
     }
     assert(error.message!!.contains("Failed to resolve file: test.dic"))
   }
+
+  @Test
+  fun noWarmUpByDefault() {
+    val dic = DictionaryFactory().create(TestDictionary.user1Cfg()) as JapaneseDictionary
+    assertEquals(Duration.ZERO, dic.warmUpTime)
+  }
+
+  @Test
+  fun warmUp() {
+    val config = TestDictionary.user1Cfg().warmUp(Config.WarmUp.ALL)
+    val dic = DictionaryFactory().create(config) as JapaneseDictionary
+    assertTrue(dic.warmUpTime > Duration.ZERO)
+    assertEquals(1, dic.create().tokenize("東京都").size)
+  }
 }
@@ -0,0 +1,67 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi
+
+import java.io.IOException
+import java.nio.file.Files
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
+
+class DictionarySnapshotTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
+  private fun tokens(dic: Dictionary, text: String): List<String> {
+    return dic.create().tokenize(text).map {
+      "${it.surface()}/${it.partOfSpeech().joinToString(",")}/${it.wordId}"
+    }
+  }
+
+  @Test
+  fun loadSnapshot() {
+    val edit =
+        Config.fromJsonString(
+            """{"editConnectionCostPlugin": [{
+              "class": "com.worksap.nlp.sudachi.InhibitConnectionPlugin",
+              "inhibitedPair": [[8, 3]]
+            }]}""",
+            PathAnchor.none())
+    val original = DictionaryFactory().create(edit.withFallback(TestDictionary.user2Cfg()))
+    val path = temporaryFolder.root.toPath().resolve("snapshot.bin")
+    (original as JapaneseDictionary).writeSnapshot(path)
+
+    val loaded = DictionaryFactory().create(Config.defaultConfig().snapshot(path)) as JapaneseDictionary
+    assertEquals(original.partOfSpeechSize, loaded.partOfSpeechSize)
+    assertEquals(Short.MAX_VALUE, loaded.grammar.getConnectCost(8, 3))
+    for (text in listOf("東京都に行った", "すだちはみかんだ", "東京府", "ぴらる")) {
+      assertEquals(tokens(original, text), tokens(loaded, text))
+    }
+    loaded.close()
+    original.close()
+  }
+
+  @Test
+  fun invalidSnapshot() {
+    val path = temporaryFolder.root.toPath().resolve("invalid.bin")
+    Files.write(path, ByteArray(64))
+    assertFailsWith<IOException> {
+      DictionaryFactory().create(Config.defaultConfig().snapshot(path))
+    }
+  }
+}
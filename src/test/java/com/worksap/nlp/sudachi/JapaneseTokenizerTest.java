@@ -116,6 +116,21 @@ public class JapaneseTokenizerTest {
         assertTrue(ms.get(0).getDictionaryId() < 0);
     }
 
+    @Test
+    public void primitiveAccessors() {
+        MorphemeList ms = tokenizer.tokenize("東京都ぴらる京");
+        assertTrue(ms.size() > 2);
+        for (int i = 0; i < ms.size(); i++) {
+            MorphemeImpl m = (MorphemeImpl) ms.get(i);
+            assertThat(ms.getBegin(i), is(m.begin()));
+            assertThat(ms.getEnd(i), is(m.end()));
+            assertThat(ms.surfaceAsCharSequence(i).toString(), is(m.surface()));
+            assertThat(ms.getPosId(i), is(m.getWordInfo().getPOSId()));
+            assertThat(ms.getWordId(i), is(m.getWordId()));
+            assertThat(ms.isOOV(i), is(m.isOOV()));
+        }
+    }
+
     @Test
     public void getSynonymGroupIds() {
         List<Morpheme> ms = tokenizer.tokenize("京都");
@@ -369,6 +384,11 @@ public class JapaneseTokenizerTest {
         assertThat(s.get(2).normalizedForm(), is("."));
         assertThat(s.get(2).begin(), is(0));
         assertThat(s.get(2).end(), is(1));
+
+        MorphemeList ms = (MorphemeList) s;
+        assertThat(ms.getBegin(2), is(0));
+        assertThat(ms.getEnd(2), is(1));
+        assertThat(ms.surfaceAsCharSequence(2).toString(), is("…"));
     }
 
     @Test
@@ -379,6 +399,23 @@ public class JapaneseTokenizerTest {
         assertThat(morphemesA.size(), is(2));
     }
 
+    @Test
+    public void tokenizeUnits() {
+        MorphemeUnits units = tokenizer.tokenizeUnits("東京都に行った");
+        MorphemeList morphemesA = units.get(Tokenizer.SplitMode.A);
+        assertThat(morphemesA.size(), is(5));
+        assertThat(morphemesA.get(1).surface(), is("都"));
+        assertThat(units.get(Tokenizer.SplitMode.B).size(), is(4));
+        assertThat(units.get(Tokenizer.SplitMode.C).size(), is(4));
+        assertThat(units.getFirstUnit(Tokenizer.SplitMode.A, 0), is(0));
+        assertThat(units.getEndUnit(Tokenizer.SplitMode.A, 0), is(2));
+        assertThat(units.getFirstUnit(Tokenizer.SplitMode.A, 1), is(2));
+        assertThat(units.getParentUnit(Tokenizer.SplitMode.A, 1), is(0));
+        assertThat(units.getParentUnit(Tokenizer.SplitMode.A, 2), is(1));
+        assertThat(units.getParentUnit(Tokenizer.SplitMode.A, 4), is(3));
+        assertThat(units.getParentUnit(Tokenizer.SplitMode.B, 3), is(3));
+    }
+
     @Test
     public void splitAfterTokenizeCtoB() {
         MorphemeList morphemesC = tokenizer.tokenize(Tokenizer.SplitMode.C, "東京都");
@@ -23,9 +23,11 @@ import org.junit.rules.TemporaryFolder;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
+import java.nio.file.Files;
 import java.nio.file.NoSuchFileException;
 import java.nio.file.Path;
 
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.isA;
 import static org.hamcrest.MatcherAssert.assertThat;
 
@@ -62,6 +64,25 @@ public class MMapTest {
         MMap.unmap(buffer);
     }
 
+    @Test
+    public void prefaultSlice() throws IOException {
+        String filename = path.resolve("system.dic").toString();
+        ByteBuffer buffer = MMap.map(filename);
+        buffer.position(100);
+        ByteBuffer slice = buffer.slice();
+        int limit = slice.limit();
+        MMap.prefault(slice);
+        assertThat(slice.position(), is(0));
+        assertThat(slice.limit(), is(limit));
+        byte[] data = Files.readAllBytes(path.resolve("system.dic"));
+        assertThat(slice.get(0), is(data[100]));
+        assertThat(slice.get(limit - 1), is(data[data.length - 1]));
+        MMap.prefault(buffer);
+        assertThat(buffer.position(), is(100));
+        assertThat(buffer.limit(), is(limit + 100));
+        MMap.unmap(buffer);
+    }
+
     @Test
     public void unmapWithoutMappedByteBuffer() throws IOException {
         ByteBuffer buffer = ByteBuffer.wrap(new byte[] { 0x00, 0x00 });
@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import com.worksap.nlp.sudachi.dictionary.BinaryDictionary;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class MappedSegmentsTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    Path path;
+    ByteBuffer whole;
+
+    @Before
+    public void setUp() throws IOException {
+        path = temporaryFolder.getRoot().toPath().resolve("system.dic");
+        TestDictionary.INSTANCE.getSystemDictData().writeData(path);
+        whole = MMap.map(path);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        MMap.unmap(whole);
+    }
+
+    @Test
+    public void readAcrossSegments() throws IOException {
+        try (MappedSegments segments = MappedSegments.map(path, 101, false)) {
+            assertThat(segments.size(), is((long) whole.limit()));
+            assertThat(segments.segmentCount(), is((whole.limit() + 100) / 101));
+            for (int i = 0; i + 8 <= whole.limit(); i += 7) {
+                assertThat(segments.get(i), is(whole.get(i)));
+                assertThat(segments.getShort(i), is(whole.getShort(i)));
+                assertThat(segments.getInt(i), is(whole.getInt(i)));
+                assertThat(segments.getLong(i), is(whole.getLong(i)));
+            }
+        }
+    }
+
+    @Test
+    public void slice() throws IOException {
+        try (MappedSegments segments = MappedSegments.map(path, 101, true)) {
+            ByteBuffer inside = segments.slice(110, 50);
+            ByteBuffer across = segments.slice(150, 100);
+            for (int i = 0; i < 50; ++i) {
+                assertThat(inside.get(i), is(whole.get(110 + i)));
+            }
+            for (int i = 0; i < 100; ++i) {
+                assertThat(across.get(i), is(whole.get(150 + i)));
+            }
+            assertThat(across.getInt(4), is(whole.getInt(154)));
+        }
+    }
+
+    @Test
+    public void loadDictionaryFromSlice() throws IOException {
+        try (MappedSegments segments = MappedSegments.map(path)) {
+            BinaryDictionary dictionary = BinaryDictionary.loadSystem(segments.slice(0, segments.size()));
+            BinaryDictionary expected = new BinaryDictionary(whole);
+            assertThat(dictionary.getLexicon().size(), is(expected.getLexicon().size()));
+            dictionary.close();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void sliceOutOfRange() throws IOException {
+        try (MappedSegments segments = MappedSegments.map(path)) {
+            segments.slice(segments.size() - 1, 2);
+        }
+    }
+}
@@ -33,6 +33,8 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
@@ -329,6 +331,34 @@ public class MeCabOovProviderPluginTest {
         assertThat(n.getWordInfo().getPOSId(), is((short) 2));
     }
 
+    @Test
+    public void provideOOVCreatesWordInfoOnFirstUse() {
+        MeCabOovProviderPlugin.CategoryInfo cinfo = new MeCabOovProviderPlugin.CategoryInfo();
+        cinfo.type = CategoryType.KANJI;
+        cinfo.isInvoke = true;
+        cinfo.isGroup = true;
+        cinfo.length = 2;
+        plugin.categories.put(CategoryType.KANJI, cinfo);
+
+        inputText.setCategoryType(0, 3, CategoryType.KANJI);
+
+        List<LatticeNode> nodes = plugin.provideOOV(inputText, 0, true);
+        assertThat(nodes.size(), is(3));
+
+        LatticeNodeImpl n = (LatticeNodeImpl) nodes.get(1);
+        assertThat(n.extraWordInfo, is(nullValue()));
+        assertThat(n.getBegin(), is(0));
+        assertThat(n.getEnd(), is(1));
+        assertTrue(n.isOOV());
+        assertThat(n.getDictionaryId(), is(-1));
+
+        assertThat(n.getWordInfo().getSurface(), is("あ"));
+        assertThat(n.getWordInfo().getNormalizedForm(), is("あ"));
+        assertThat(n.getWordInfo().getPOSId(), is((short) 1));
+        assertThat(n.getWordInfo(), is(sameInstance(n.extraWordInfo)));
+        assertThat(n.getDictionaryId(), is(-1));
+    }
+
     @Test
     public void provideOOVWithoutCInfo() {
         inputText.setCategoryType(0, 3, CategoryType.KANJI);
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class MorphemeFormatterPluginTest {
+    Tokenizer tokenizer;
+
+    @Before
+    public void setUp() {
+        tokenizer = TestDictionary.INSTANCE.user1().create();
+    }
+
+    private static <T extends MorphemeFormatterPlugin> T setUp(T formatter) throws IOException {
+        formatter.setSettings(Settings.empty());
+        formatter.setUp();
+        return formatter;
+    }
+
+    @Test
+    public void simpleFormatterUsesOverriddenFormatMorpheme() throws IOException {
+        SimpleMorphemeFormatter plain = setUp(new SimpleMorphemeFormatter());
+        SimpleMorphemeFormatter formatter = setUp(new SimpleMorphemeFormatter() {
+            @Override
+            public String formatMorpheme(Morpheme morpheme) {
+                return "[" + super.formatMorpheme(morpheme) + "]";
+            }
+        });
+        MorphemeList morphemes = tokenizer.tokenize("東京都に");
+        StringBuilder output = new StringBuilder();
+        formatter.formatSentence(morphemes, output);
+        assertThat(output.toString(), is("[" + plain.formatMorpheme(morphemes.get(0)) + "]\n["
+                + plain.formatMorpheme(morphemes.get(1)) + "]\nEOS\n"));
+    }
+
+    @Test
+    public void wordSegmentationFormatterUsesOverriddenFormatMorpheme() throws IOException {
+        WordSegmentationFormatter formatter = setUp(new WordSegmentationFormatter() {
+            @Override
+            public String formatMorpheme(Morpheme morpheme) {
+                return morpheme.readingForm();
+            }
+        });
+        MorphemeList morphemes = tokenizer.tokenize("東京都に");
+        StringBuilder output = new StringBuilder();
+        formatter.formatSentence(morphemes, output);
+        assertThat(output.toString(), is(morphemes.get(0).readingForm() + " " + morphemes.get(1).readingForm() + "\n"));
+    }
+
+    @Test
+    public void textFormatterWritesUtf8() throws IOException {
+        SimpleMorphemeFormatter formatter = setUp(new SimpleMorphemeFormatter());
+        MorphemeList morphemes = tokenizer.tokenize("東京都");
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        formatter.writeSentence(morphemes, output);
+        StringBuilder expected = new StringBuilder();
+        formatter.formatSentence(morphemes, expected);
+        assertThat(output.toString("UTF-8"), is(expected.toString()));
+        assertThat(formatter.isBinary(), is(false));
+    }
+}
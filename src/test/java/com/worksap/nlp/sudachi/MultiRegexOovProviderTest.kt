@@ -0,0 +1,110 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi
+
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+
+class MultiRegexOovProviderTest {
+  private val email = """[a-z0-9.]+@[a-z0-9]+(?:\.[a-z]+)+"""
+  private val code = """[0-9a-z-]+"""
+  private val handle = """@[a-z0-9_]{4,}"""
+
+  private fun multi(vararg patterns: String, options: String = ""): Tokenizer {
+    val json =
+        """{"oovProviderPlugin": [
+          {"class": "com.worksap.nlp.sudachi.SimpleOovProviderPlugin"},
+          {"class": "com.worksap.nlp.sudachi.MultiRegexOovProvider",
+           "leftId": 5, "rightId": 5, "pos": ["名詞", "普通名詞", "一般", "*", "*", "*"],
+           "patterns": [${patterns.joinToString(",")}] $options}
+        ]}"""
+    val cfg = Config.fromJsonString(json, PathAnchor.none())
+    return DictionaryFactory().create(cfg.withFallback(TestDictionary.user0Cfg())).create()
+  }
+
+  private fun pattern(regex: String, cost: Int, extra: String = ""): String {
+    val escaped = regex.replace("\\", "\\\\")
+    return """{"regex": "$escaped", "cost": $cost $extra}"""
+  }
+
+  private fun separate(vararg regexes: Pair<String, Int>): Tokenizer {
+    val cfg = Config.empty()
+    cfg.addOovProviderPlugin(SimpleOovProviderPlugin::class.java)
+    for ((regex, cost) in regexes) {
+      cfg.addOovProviderPlugin(RegexOovProvider::class.java)
+          .add("regex", regex)
+          .add("cost", cost)
+          .add("leftId", 5)
+          .add("rightId", 5)
+          .addList("pos", "名詞", "普通名詞", "一般", "*", "*", "*")
+    }
+    return DictionaryFactory().create(cfg.withFallback(TestDictionary.user0Cfg())).create()
+  }
+
+  private fun Tokenizer.surfaces(text: String): List<String> = tokenize(text).map { it.surface() }
+
+  @Test
+  fun sameAsSeparateProviders() {
+    val tokenizer = multi(pattern(email, 2000), pattern(code, 3500))
+    val expected = separate(email to 2000, code to 3500)
+    for (text in
+        listOf(
+            "連絡先はinfo@example.comまで",
+            "京都XAG-2F東京",
+            "２つXＡＧ-2F",
+            "a.b@c.d.ef-12",
+            "0123456789".repeat(30))) {
+      assertEquals(expected.surfaces(text), tokenizer.surfaces(text), text)
+    }
+  }
+
+  @Test
+  fun providesNodesOfAllPatterns() {
+    val tokens = multi(pattern(email, 2000), pattern(code, 3500)).tokenize("京都info@example.com東京")
+    assertEquals(3, tokens.size)
+    assertEquals("info@example.com", tokens[1].surface())
+    assertEquals("info@example.com", tokens[1].normalizedForm())
+    assertEquals(true, tokens[1].isOOV)
+  }
+
+  @Test
+  fun maxLengthOfEachPattern() {
+    val tokens =
+        multi(pattern(email, 2000), pattern(code, 3500, """, "maxLength": 6""")).tokenize("六三四XAG-2FFASD東京")
+    assertEquals(listOf("六三四", "XAG", "-", "2FFASD", "東京"), tokens.map { it.surface() })
+  }
+
+  @Test
+  fun boundariesOfEachPattern() {
+    val strict = multi(pattern(handle, 500), pattern(code, 3500))
+    assertEquals(listOf(":", "@", "asda"), strict.surfaces(":@asda"))
+    val relaxed = multi(pattern(handle, 500, """, "boundaries": "relaxed""""), pattern(code, 3500))
+    assertEquals(listOf(":", "@asda"), relaxed.surfaces(":@asda"))
+  }
+
+  @Test
+  fun optionsAreSharedByPatterns() {
+    val tokens = multi(pattern(handle, 500), options = """, "boundaries": "relaxed"""").tokenize(":@asda")
+    assertEquals(listOf(":", "@asda"), tokens.map { it.surface() })
+  }
+
+  @Test
+  fun emptyPatterns() {
+    assertFailsWith<IllegalArgumentException> { multi() }
+  }
+}
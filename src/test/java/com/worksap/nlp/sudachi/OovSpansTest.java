@@ -0,0 +1,98 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class OovSpansTest {
+
+    OovSpans spans;
+
+    @Before
+    public void setUp() {
+        spans = new OovSpans(null, 0, null);
+        spans.clear(6);
+    }
+
+    @Test
+    public void indexByBeginning() {
+        spans.add(1, 3, (short) 0, (short) 0, (short) 0, 0);
+        spans.add(1, 2, (short) 0, (short) 0, (short) 0, 0);
+        spans.add(4, 6, (short) 0, (short) 0, (short) 0, 0);
+        spans.complete();
+        assertThat(spans.size(), is(3));
+        assertThat(spans.first(0), is(0));
+        assertThat(spans.first(1), is(0));
+        assertThat(spans.first(2), is(2));
+        assertThat(spans.first(4), is(2));
+        assertThat(spans.first(5), is(3));
+        assertThat(spans.first(6), is(3));
+        assertThat(spans.end(1), is(2));
+        assertThat(spans.end(2), is(6));
+    }
+
+    @Test
+    public void clearReusesContainer() {
+        spans.add(0, 6, (short) 0, (short) 0, (short) 0, 0);
+        spans.complete();
+        spans.clear(10);
+        spans.complete();
+        assertThat(spans.size(), is(0));
+        assertThat(spans.first(10), is(0));
+    }
+
+    @Test
+    public void growCapacity() {
+        for (int i = 0; i < 40; i++) {
+            spans.add(i / 10, 4, (short) 0, (short) 0, (short) i, i);
+        }
+        spans.complete();
+        assertThat(spans.size(), is(40));
+        assertThat(spans.first(1), is(10));
+        assertThat(spans.first(4), is(40));
+    }
+
+    @Test
+    public void fillUsesScanner() {
+        spans = new OovSpans(null, 0, (input, s) -> {
+            s.add(0, 2, (short) 0, (short) 0, (short) 0, 0);
+            s.add(2, 3, (short) 0, (short) 0, (short) 0, 0);
+        });
+        spans.clear(3);
+        spans.add(0, 1, (short) 0, (short) 0, (short) 0, 0);
+        spans.fill(new UTF8InputTextBuilder("あいう", new MockGrammar()).build());
+        assertThat(spans.size(), is(2));
+        assertThat(spans.first(2), is(1));
+        assertThat(spans.first(9), is(2));
+        assertThat(spans.end(0), is(2));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addOutOfOrder() {
+        spans.add(2, 3, (short) 0, (short) 0, (short) 0, 0);
+        spans.add(1, 3, (short) 0, (short) 0, (short) 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void addOutsideInput() {
+        spans.add(4, 7, (short) 0, (short) 0, (short) 0, 0);
+    }
+}
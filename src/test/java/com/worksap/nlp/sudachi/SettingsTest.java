@@ -130,6 +130,22 @@ public class SettingsTest {
         settings.getIntListList("foo");
     }
 
+    @Test
+    public void getSettingsList() {
+        Settings settings = Settings.parse("{\"foo\":[{\"a\":1},{\"b\":\"c\"}]}", PathAnchor.none());
+        List<Settings> list = settings.getSettingsList("foo");
+        assertEquals(2, list.size());
+        assertEquals(1, list.get(0).getInt("a"));
+        assertEquals("c", list.get(1).getString("b"));
+        assertTrue(settings.getSettingsList("baa").isEmpty());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void getSettingsListWithError() {
+        Settings settings = Settings.parse("{\"foo\":[1, 2]}", PathAnchor.none());
+        settings.getSettingsList("foo");
+    }
+
     @Deprecated
     @Test
     public void getPath() {
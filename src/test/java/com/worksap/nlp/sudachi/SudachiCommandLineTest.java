@@ -193,6 +193,22 @@ public class SudachiCommandLineTest {
         }
     }
 
+    @Test
+    public void commandLineWithLongInput() throws IOException {
+        try (FileWriter writer = new FileWriter(inputFileName)) {
+            for (int i = 0; i < 10000; i++) {
+                writer.write("東京都に行った\n");
+            }
+        }
+        SudachiCommandLine.main(new String[] { "-p", temporaryFolderName, "-o", outputFileName, inputFileName });
+        try (Stream<String> lines = Files.lines(Paths.get(outputFileName))) {
+            assertThat(lines.count(), is(50000L));
+        }
+        try (Stream<String> lines = Files.lines(Paths.get(outputFileName))) {
+            assertThat(lines.filter(l -> l.equals("EOS")).count(), is(10000L));
+        }
+    }
+
     @Test
     public void formatterClass() throws IOException {
         SudachiCommandLine.main(new String[] { "-p", temporaryFolderName, "--format",
@@ -205,6 +221,23 @@ public class SudachiCommandLineTest {
         }
     }
 
+    @Test
+    public void binaryFormatterClass() throws IOException {
+        SudachiCommandLine.main(new String[] { "-p", temporaryFolderName, "--format",
+                BinaryMorphemeFormatter.class.getName(), "-o", outputFileName, inputFileName });
+        try (BinaryMorphemeReader reader = new BinaryMorphemeReader(Files.newInputStream(Paths.get(outputFileName)))) {
+            assertThat(reader.next().getText(), is("東京都に行った"));
+            assertThat(reader.next().getText(), is("東京府に行った"));
+            assertThat(reader.hasNext(), is(false));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void binaryFormatterWithDOption() throws IOException {
+        SudachiCommandLine.main(new String[] { "-p", temporaryFolderName, "--format",
+                BinaryMorphemeFormatter.class.getName(), "-d", "-o", outputFileName, inputFileName });
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void invalidFormatterClass() throws IOException {
         SudachiCommandLine.main(new String[] { "-p", temporaryFolderName, "--format", "blahblah", "-o", outputFileName,
@@ -211,6 +211,17 @@ public class UTF8InputTextTest {
         assertThat(input.getCodePointsOffsetLength(23, 3), is(9));
     }
 
+    @Test
+    public void getByteLengthByCodePointsOutOfCharacters() {
+        input = builder.build();
+        assertThat(input.getCodePointsOffsetLength(1, 0), is(0));
+        assertThat(input.getCodePointsOffsetLength(1, 1), is(1));
+        assertThat(input.getCodePointsOffsetLength(20, 1), is(3));
+        assertThat(input.getCodePointsOffsetLength(29, 5), is(3));
+        assertThat(input.getCodePointsOffsetLength(0, 100), is(32));
+        assertThat(input.getCodePointsOffsetLength(32, 1), is(0));
+    }
+
     @Test
     public void codePointCount() {
         input = builder.build();
@@ -283,6 +294,9 @@ public class UTF8InputTextTest {
         assertThat(input.modifiedOffset(4), is(2));
         assertThat(input.getOriginalIndex(3), is(2));
         assertThat(input.getOriginalIndex(4), is(3));
+        assertThat(input.getCodePointsOffsetLength(0, 1), is(3));
+        assertThat(input.getCodePointsOffsetLength(0, 2), is(4));
+        assertThat(input.getCodePointsOffsetLength(3, 2), is(1));
     }
 
     @Test
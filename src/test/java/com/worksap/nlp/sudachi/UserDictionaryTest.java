@@ -16,14 +16,18 @@
 
 package com.worksap.nlp.sudachi;
 
+import com.worksap.nlp.sudachi.dictionary.BinaryDictionary;
 import org.junit.Test;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.not;
 
 public class UserDictionaryTest {
 
@@ -47,11 +51,36 @@ public class UserDictionaryTest {
         }
     }
 
+    @Test
+    public void manyUserDict() throws IOException {
+        TestDictionary instance = TestDictionary.INSTANCE;
+        Config config = instance.user0Cfg();
+
+        for (int i = 0; i < 29; i++) {
+            config.addUserDictionary(instance.getUserDict1());
+        }
+        config.addUserDictionary(instance.getUserDict2());
+
+        try (Dictionary dict = new DictionaryFactory().create(config)) {
+            Tokenizer tokenizer = dict.create();
+            List<Morpheme> morphs = tokenizer.tokenize("ぴさる東京府");
+            assertThat(morphs.size(), is(2));
+            assertThat(morphs.get(0).getDictionaryId(), is(30));
+            assertThat(morphs.get(0).normalizedForm(), is("ぴさる"));
+            assertThat(morphs.get(1).getDictionaryId(), is(29));
+            List<Morpheme> splits = morphs.get(1).split(Tokenizer.SplitMode.A);
+            assertThat(splits.size(), is(2));
+            assertThat(splits.get(0).getDictionaryId(), is(0));
+            assertThat(splits.get(1).getDictionaryId(), is(29));
+            assertThat(splits.get(1).surface(), is("府"));
+        }
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void openTooManyUserDict() throws IOException {
         TestDictionary instance = TestDictionary.INSTANCE;
         Config config = instance.user0Cfg();
-        for (int i = 0; i < 15; i++) {
+        for (int i = 0; i < 256; i++) {
             config.addUserDictionary(instance.getUserDict1());
         }
         new DictionaryFactory().create(config);
@@ -98,4 +127,73 @@ public class UserDictionaryTest {
             assertThat(m.partOfSpeech(), contains("被子植物門", "双子葉植物綱", "ムクロジ目", "ミカン科", "ミカン属", "カボス"));
         }
     }
+
+    @Test
+    public void replaceUserDictionaries() throws IOException {
+        TestDictionary td = TestDictionary.INSTANCE;
+        try (JapaneseDictionary dict = (JapaneseDictionary) new DictionaryFactory().create(td.user0Cfg())) {
+            int systemPosSize = dict.getPartOfSpeechSize();
+            Tokenizer tokenizer = dict.create();
+            List<Morpheme> before = tokenizer.tokenize("すだちかぼす");
+            List<String> posBefore = before.get(0).partOfSpeech();
+            assertThat(posBefore, not(contains("被子植物門", "双子葉植物綱", "ムクロジ目", "ミカン科", "ミカン属", "スダチ")));
+
+            dict.replaceUserDictionaries(Arrays.asList(td.getUserDict1(), td.getUserDict2()));
+            List<Morpheme> morphs = tokenizer.tokenize("すだちかぼす");
+            assertThat(morphs.size(), is(2));
+            assertThat(morphs.get(0).getDictionaryId(), is(1));
+            assertThat(morphs.get(0).partOfSpeech(), contains("被子植物門", "双子葉植物綱", "ムクロジ目", "ミカン科", "ミカン属", "スダチ"));
+            assertThat(before.get(0).partOfSpeech(), is(posBefore));
+
+            dict.replaceUserDictionaries(Collections.emptyList());
+            assertThat(dict.getPartOfSpeechSize(), is(systemPosSize));
+            assertThat(tokenizer.tokenize("すだちかぼす").get(0).partOfSpeech(), is(posBefore));
+            assertThat(morphs.get(1).partOfSpeech(), contains("被子植物門", "双子葉植物綱", "ムクロジ目", "ミカン科", "ミカン属", "カボス"));
+        }
+    }
+
+    @Test
+    public void replaceUserDictionariesKeepsPosOfOovProviders() throws IOException {
+        TestDictionary td = TestDictionary.INSTANCE;
+        Config config = Config.empty();
+        config.addOovProviderPlugin(SimpleOovProviderPlugin.class);
+        config.addOovProviderPlugin(RegexOovProvider.class).add("regex", "[0-9a-z-]+").add("cost", 3500)
+                .add("leftId", 5).add("rightId", 5).addList("pos", "名詞", "普通名詞", "一般", "*", "*", "new")
+                .add(OovProviderPlugin.USER_POS, OovProviderPlugin.USER_POS_ALLOW);
+        try (JapaneseDictionary dict = (JapaneseDictionary) new DictionaryFactory()
+                .create(config.withFallback(td.user1Cfg()))) {
+            Tokenizer tokenizer = dict.create();
+            List<String> oovPos = Arrays.asList("名詞", "普通名詞", "一般", "*", "*", "new");
+            assertThat(tokenizer.tokenize("XAG-2F").get(0).partOfSpeech(), is(oovPos));
+
+            dict.replaceUserDictionaries(Arrays.asList(td.getUserDict2(), td.getUserDict1()));
+            assertThat(tokenizer.tokenize("XAG-2F").get(0).partOfSpeech(), is(oovPos));
+            assertThat(tokenizer.tokenize("すだち").get(0).partOfSpeech(),
+                    contains("被子植物門", "双子葉植物綱", "ムクロジ目", "ミカン科", "ミカン属", "スダチ"));
+
+            dict.replaceUserDictionaries(Collections.emptyList());
+            assertThat(tokenizer.tokenize("XAG-2F").get(0).partOfSpeech(), is(oovPos));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void replaceUserDictionariesWithUsedOneAtAnotherPosition() throws IOException {
+        TestDictionary td = TestDictionary.INSTANCE;
+        try (JapaneseDictionary dict = (JapaneseDictionary) new DictionaryFactory().create(td.user0Cfg())) {
+            BinaryDictionary user = td.getUserDict1();
+            dict.replaceUserDictionaries(Collections.singletonList(user));
+            dict.replaceUserDictionaries(Arrays.asList(td.getUserDict1(), user));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void replacedTokenizerFailsAfterClose() throws IOException {
+        TestDictionary td = TestDictionary.INSTANCE;
+        Tokenizer tokenizer;
+        try (JapaneseDictionary dict = (JapaneseDictionary) new DictionaryFactory().create(td.user0Cfg())) {
+            tokenizer = dict.create();
+            dict.replaceUserDictionaries(Collections.singletonList(td.getUserDict1()));
+        }
+        tokenizer.tokenize("東京");
+    }
 }
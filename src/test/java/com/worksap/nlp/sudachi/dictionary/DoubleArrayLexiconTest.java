@@ -23,10 +23,13 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 
 import com.worksap.nlp.sudachi.TestDictionary;
+import com.worksap.nlp.sudachi.Tokenizer;
 import org.junit.Before;
 import org.junit.Test;
 
@@ -122,11 +125,62 @@ public class DoubleArrayLexiconTest {
         assertEquals(570, wi.getReadingForm().length());
     }
 
+    @Test
+    public void fieldsWithoutWordInfo() {
+        for (int wordId = 0; wordId < lexicon.size(); wordId++) {
+            WordInfo wi = lexicon.getWordInfo(wordId);
+            assertEquals(wi.getPOSId(), lexicon.getPOSId(wordId));
+            assertEquals(wi.getLength(), lexicon.getLength(wordId));
+            assertArrayEquals(wi.getAunitSplit(), lexicon.getSplit(wordId, Tokenizer.SplitMode.A));
+            assertArrayEquals(wi.getBunitSplit(), lexicon.getSplit(wordId, Tokenizer.SplitMode.B));
+        }
+    }
+
+    @Test
+    public void splitWithLengths() {
+        LexiconSet lexiconSet = new LexiconSet(lexicon, (short) 8);
+        // 東京都
+        assertArrayEquals(new int[] { 6, 5, 6, 9, 3 }, lexiconSet.getSplitWithLengths(6, Tokenizer.SplitMode.A));
+        assertArrayEquals(new int[] { 6, 5, 6, 9, 3 }, lexiconSet.getSplitWithLengths(6, Tokenizer.SplitMode.A));
+        assertArrayEquals(new int[] { 6 }, lexiconSet.getSplitWithLengths(6, Tokenizer.SplitMode.B));
+        // た
+        assertArrayEquals(new int[] { 0 }, lexiconSet.getSplitWithLengths(0, Tokenizer.SplitMode.A));
+    }
+
+    @Test
+    public void getWordId() {
+        for (int wordId = 0; wordId < lexicon.size(); wordId++) {
+            WordInfo wi = lexicon.getWordInfo(wordId);
+            assertEquals(wordId, lexicon.getWordId(wi.getSurface(), wi.getPOSId(), wi.getReadingForm()));
+        }
+        assertEquals(-1, lexicon.getWordId("東京", (short) 3, "ヒガシキョウ"));
+        assertEquals(-1, lexicon.getWordId("東京", (short) 4, "トウキョウ"));
+        assertEquals(-1, lexicon.getWordId("京都府", (short) 3, "キョウトフ"));
+    }
+
     @Test
     public void size() {
         assertEquals(40, lexicon.size());
     }
 
+    @Test
+    public void firstCharBuckets() {
+        Set<Integer> expected = new HashSet<>();
+        for (byte[] key : lexicon.getWordKeys()) {
+            if (key != null) {
+                expected.add(FirstCharIndex.bucket(key, 0, key.length));
+            }
+        }
+        long[] buckets = lexicon.getFirstCharBuckets();
+        Set<Integer> marked = new HashSet<>();
+        for (int bucket = 0; bucket < FirstCharIndex.BUCKETS; ++bucket) {
+            if ((buckets[bucket >>> 6] & (1L << bucket)) != 0) {
+                marked.add(bucket);
+            }
+        }
+        assertEquals(expected, marked);
+    }
+
     static <E> List<E> iteratorToList(Iterator<E> iterator) {
         List<E> result = new ArrayList<>();
         while (iterator.hasNext()) {
@@ -16,9 +16,13 @@
 
 package com.worksap.nlp.sudachi.dictionary;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 import com.worksap.nlp.sudachi.TestDictionary;
@@ -64,6 +68,34 @@ public class GrammarImplTest {
         assertEquals("終止形-一般", grammar.getPartOfSpeechString((short) 2).get(5));
     }
 
+    @Test
+    public void getPartOfSpeechJoined() {
+        assertEquals("BOS/EOS,*,*,*,*,*", grammar.getPartOfSpeechJoined((short) 0));
+        assertSame(grammar.getPartOfSpeechJoined((short) 2), grammar.getPartOfSpeechJoined((short) 2));
+        assertArrayEquals(grammar.getPartOfSpeechJoined((short) 2).getBytes(StandardCharsets.UTF_8),
+                grammar.getPartOfSpeechUtf8((short) 2));
+    }
+
+    @Test
+    public void getPartOfSpeechComponentId() {
+        assertEquals(grammar.getPartOfSpeechComponentId((short) 0, 5),
+                grammar.getPartOfSpeechComponentId((short) 1, 5));
+        int star = grammar.getPartOfSpeechComponentId((short) 1, 5);
+        assertTrue(star != grammar.getPartOfSpeechComponentId((short) 2, 5));
+        assertEquals(grammar.getPartOfSpeechComponentId((short) 2, 4),
+                grammar.getPartOfSpeechComponentId(4, "五段-サ行"));
+        assertEquals(-1, grammar.getPartOfSpeechComponentId(0, "五段-サ行"));
+    }
+
+    @Test
+    public void posTableFollowsRegisteredPos() {
+        GrammarImpl copy = grammar.withFirstPos(grammar.getSystemPartOfSpeechSize());
+        assertEquals("BOS/EOS,*,*,*,*,*", copy.getPartOfSpeechJoined((short) 0));
+        short id = copy.registerPOS(new POS("a", "b", "c", "d", "e", "f"));
+        assertEquals("a,b,c,d,e,f", copy.getPartOfSpeechJoined(id));
+        assertEquals(copy.getPartOfSpeechComponentId(id, 0), copy.getPartOfSpeechComponentId(0, "a"));
+    }
+
     @Test
     public void getPartOfSpeechId() {
         assertEquals(0, grammar.getPartOfSpeechId(Arrays.asList("BOS/EOS", "*", "*", "*", "*", "*")));
@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary.build
+
+import java.nio.ByteBuffer
+import kotlin.test.Test
+import kotlin.test.assertEquals
+import kotlin.test.assertFailsWith
+import kotlin.test.assertSame
+
+class ByteCsvReaderTest {
+  private fun records(text: String, interned: Long = 0): List<List<String>> {
+    val reader = ByteCsvReader(ByteBuffer.wrap(text.toByteArray()), interned)
+    return generateSequence { reader.next() }.map { r -> (0 until r.size()).map { r.get(it) } }.toList()
+  }
+
+  @Test
+  fun empty() {
+    assertEquals(listOf(), records(""))
+    assertEquals(listOf(listOf()), records("\n"))
+    assertEquals(listOf(listOf(), listOf()), records("\r\n\r"))
+  }
+
+  @Test
+  fun unescapedField() {
+    assertEquals(listOf(listOf("abc", "def", "ghi"), listOf("東", "")), records("abc,def,ghi\r\n東,"))
+    assertEquals(listOf(listOf("abc", "def", "")), records("abc,def,\n"))
+    assertEquals(listOf(listOf("", "", "ghi")), records(",,ghi"))
+  }
+
+  @Test
+  fun escapedField() {
+    assertEquals(
+        listOf(listOf("abc", "def", "ghi\nabc", "def", "ghi")), records("abc,def,\"ghi\r\nabc\",def,ghi"))
+    assertEquals(listOf(listOf("abc", "def,ghi")), records("abc,\"def,ghi\""))
+    assertEquals(listOf(listOf("abc", "def\"ghi"), listOf("")), records("abc,\"def\"\"ghi\"\n\"\""))
+  }
+
+  @Test
+  fun misplacedQuotes() {
+    assertFailsWith<IllegalArgumentException> { records("\"abc\"def") }
+    assertFailsWith<IllegalArgumentException> { records("\"abc") }
+    assertFailsWith<IllegalArgumentException> { records("a\"bc") }
+  }
+
+  @Test
+  fun parseShort() {
+    val reader = ByteCsvReader(ByteBuffer.wrap("12,-32768,+5,32768,1a,\\u0031,\"7\"".toByteArray()), 0)
+    val record = reader.next()!!
+    assertEquals(
+        listOf(12, -32768, 5, CsvColumns.NOT_A_SHORT, CsvColumns.NOT_A_SHORT, CsvColumns.NOT_A_SHORT,
+            CsvColumns.NOT_A_SHORT),
+        (0 until record.size()).map { record.parseShort(it) })
+  }
+
+  @Test
+  fun internedColumns() {
+    val reader = ByteCsvReader(ByteBuffer.wrap("a,名詞,b\nc,名詞,d".toByteArray()), 1L shl 1)
+    val first = reader.next()!!
+    val second = reader.next()!!
+    assertSame(first.get(1), second.get(1))
+    assertEquals("名詞", second.get(1))
+    assertEquals("d", second.get(2))
+  }
+}
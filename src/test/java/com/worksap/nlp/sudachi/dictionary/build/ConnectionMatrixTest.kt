@@ -18,10 +18,14 @@ package com.worksap.nlp.sudachi.dictionary.build
 
 import com.worksap.nlp.sudachi.dictionary.Connection
 import java.io.InputStream
+import kotlin.io.path.writeText
 import kotlin.test.assertEquals
 import kotlin.test.assertFailsWith
 import kotlin.test.assertNotNull
+import kotlin.test.assertTrue
+import org.junit.Rule
 import org.junit.Test
+import org.junit.rules.TemporaryFolder
 
 object Res {
   operator fun <R> invoke(name: String, fn: (InputStream) -> R): R {
@@ -33,6 +37,8 @@ object Res {
 }
 
 class ConnectionMatrixTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
   @Test
   fun parse3x3() {
     val cm = ConnectionMatrix()
@@ -60,4 +66,79 @@ class ConnectionMatrixTest {
     val cm = ConnectionMatrix()
     assertFailsWith<IllegalArgumentException> { cm.readEntries("5 a".byteInputStream()) }
   }
+
+  @Test
+  fun crlfBlankLinesAndExtraColumns() {
+    val cm = ConnectionMatrix()
+    val text = "2 2\r\n0 0 1\r\n\r\n0\t1 2 extra\n1 0 3\r\n1 1 -4"
+    assertEquals(4, cm.readEntries(text.byteInputStream()))
+    val conn = Connection(cm.compiledNoHeader.asShortBuffer(), 2, 2)
+    assertEquals(1, conn.cost(0, 0))
+    assertEquals(2, conn.cost(0, 1))
+    assertEquals(3, conn.cost(1, 0))
+    assertEquals(-4, conn.cost(1, 1))
+  }
+
+  @Test
+  fun notEnoughEntriesReportsLine() {
+    val cm = ConnectionMatrix()
+    val e =
+        assertFailsWith<InputFileException> {
+          cm.readEntries("2 2\n0 0 1\n\n0 1\n".byteInputStream())
+        }
+    assertTrue { e.message!!.startsWith("line:4 ") }
+  }
+
+  @Test
+  fun invalidNumberReportsLine() {
+    val cm = ConnectionMatrix()
+    val e = assertFailsWith<InputFileException> { cm.readEntries("2 2\n0 0 1\n0 1 x\n".byteInputStream()) }
+    assertTrue { e.message!!.startsWith("line:3 ") }
+  }
+
+  @Test
+  fun pathIsSameAsStream() {
+    val text = buildString {
+      append("40 30\n")
+      for (l in 0 until 40) {
+        for (r in 0 until 30) {
+          append(l).append(' ').append(r).append(' ').append(l * 100 - r * 7).append('\n')
+        }
+      }
+    }
+    val file = temporaryFolder.newFile("matrix.def").toPath()
+    file.writeText(text)
+    val stream = ConnectionMatrix()
+    assertEquals(1200, stream.readEntries(text.byteInputStream()))
+    val mapped = ConnectionMatrix()
+    assertEquals(1200, mapped.readEntries(file, 4))
+    assertEquals(stream.compiled, mapped.compiled)
+  }
+
+  @Test
+  fun pathReportsLine() {
+    val file = temporaryFolder.newFile("matrix.def").toPath()
+    file.writeText("2 2\n0 0 1\n0 1 2\n1 0\n")
+    val e = assertFailsWith<InputFileException> { ConnectionMatrix().readEntries(file, 2) }
+    assertTrue { e.message!!.startsWith("line:4 ") }
+  }
+
+  @Test
+  fun pathReportsLineInEarlyChunkOfLargeFile() {
+    val file = temporaryFolder.newFile("matrix.def").toPath()
+    val text = buildString {
+      append("1200 1200\n")
+      append("0 0 x\n")
+      for (l in 0 until 1200) {
+        for (r in 0 until 1200) {
+          append(l).append(' ').append(r).append(' ').append(l - r).append('\n')
+        }
+      }
+    }
+    // several chunks of 4 MiB, which are still parsed when the first one fails
+    assertTrue { text.length > 3 * 4 * 1024 * 1024 }
+    file.writeText(text)
+    val e = assertFailsWith<InputFileException> { ConnectionMatrix().readEntries(file, 4) }
+    assertTrue { e.message!!.startsWith("line:2 ") }
+  }
 }
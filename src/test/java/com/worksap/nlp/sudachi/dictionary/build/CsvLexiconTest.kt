@@ -100,6 +100,22 @@ class CsvLexiconTest {
     }
   }
 
+  @Test
+  fun csvLookup() {
+    val pos = POSTable()
+    val clex = CsvLexicon(pos)
+    val lookup = WordLookup.Csv(clex)
+    val line = "東京,1,1,2816,東京,名詞,固有名詞,地名,一般,*,*,トウキョウ,東京,*,A,*,*,*,*"
+    clex.addEntry(clex.parseLine(line.split(",").toMutableList()))
+    clex.addEntry(clex.parseLine(line.split(",").toMutableList()))
+    assertEquals(0, lookup.lookup("東京", 0, "トウキョウ"))
+    assertEquals(-1, lookup.lookup("東京", 0, "ヒガシキョウ"))
+    assertEquals(-1, lookup.lookup("東京都", 0, "トウキョウ"))
+    clex.addEntry(
+        clex.parseLine("東京,1,1,2816,東京,名詞,普通名詞,一般,*,*,*,トウキョウ,東京,*,A,*,*,*,*".split(",").toMutableList()))
+    assertEquals(2, lookup.lookup("東京", 1, "トウキョウ"))
+  }
+
   @Test
   fun unescape() {
     assertEquals("test", CsvLexicon.unescape("""test"""))
@@ -0,0 +1,50 @@
+/*
+ * Copyright (c) 2024 Works Applications Co., Ltd.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.worksap.nlp.sudachi.dictionary.build
+
+import java.nio.ByteBuffer
+import kotlin.test.Test
+import kotlin.test.assertEquals
+
+class MemoryChannelTest {
+  @Test
+  fun readWrittenBytes() {
+    val channel = MemoryChannel(4)
+    channel.write(ByteBuffer.wrap(byteArrayOf(1, 2, 3, 4, 5, 6)))
+    channel.position(2)
+    val dst = ByteBuffer.allocate(3)
+    assertEquals(3, channel.read(dst))
+    assertEquals(listOf<Byte>(3, 4, 5), dst.array().toList())
+    dst.clear()
+    assertEquals(1, channel.read(dst))
+    assertEquals(-1, channel.read(dst))
+  }
+
+  @Test
+  fun truncateZeroesRemovedBytes() {
+    val channel = MemoryChannel(16)
+    channel.write(ByteBuffer.wrap(byteArrayOf(1, 2, 3, 4)))
+    channel.truncate(2)
+    assertEquals(2, channel.size())
+    assertEquals(2, channel.position())
+    channel.position(4)
+    channel.write(ByteBuffer.wrap(byteArrayOf(5)))
+    assertEquals(listOf<Byte>(1, 2, 0, 0, 5), channel.toBuffer().array().toList())
+    channel.truncate(10)
+    assertEquals(5, channel.size())
+  }
+}
@@ -18,9 +18,14 @@ package com.worksap.nlp.sudachi.dictionary.build
 
 import com.worksap.nlp.sudachi.dictionary.BinaryDictionary
 import com.worksap.nlp.sudachi.dictionary.POS
+import java.nio.ByteBuffer
+import org.junit.Rule
+import org.junit.rules.TemporaryFolder
 import kotlin.test.*
 
 class SystemDicTest {
+  @get:Rule val temporaryFolder = TemporaryFolder()
+
   @Test
   fun simple() {
     val data = MemChannel()
@@ -220,4 +225,118 @@ class SystemDicTest {
       assertEquals(wi.normalizedForm, norm)
     }
   }
+
+  @Test
+  fun parallelBuildIsSameAsSequential() {
+    val data =
+        (0 until 40000).joinToString("\n") { i ->
+          val surf = "東${i.toString(36)}"
+          val split = if (i % 5 == 0) "\"東0,名詞,普通名詞,一般,*,*,*,ヒガシ/${i % 7}\"" else "*"
+          val mode = if (i % 5 == 0) "C" else "A"
+          "$surf,1,1,${i % 1000},$surf,名詞,普通名詞,一般,*,*,*,ヒガシ,$surf,*,$mode,$split,$split,*,*"
+        }
+    fun build(parallelism: Int): ByteBuffer {
+      val ch = MemChannel()
+      DicBuilder.system()
+          .matrix(res("test.matrix"))
+          .parallelism(parallelism)
+          .lexicon(data.byteInputStream())
+          .build(ch)
+      val buf = ch.buffer()
+      buf.position(BinaryDictionary(buf).dictionaryHeader.storageSize())
+      return buf
+    }
+    val sequential = build(1)
+    val parallel = build(3)
+    assertEquals(sequential, parallel)
+    val dic = BinaryDictionary(parallel.duplicate().position(0) as ByteBuffer)
+    assertEquals(40000, dic.lexicon.size())
+    assertContentEquals(intArrayOf(0, 39995 % 7), dic.lexicon.getWordInfo(39995).aunitSplit)
+  }
+
+  @Test
+  fun parallelBuildReportsLine() {
+    val data =
+        (0 until 10000).joinToString("\n") { i ->
+          val surf = "a$i"
+          if (i == 9000) "$surf,1,1,x" else "$surf,1,1,0,$surf,名詞,普通名詞,一般,*,*,*,ア,$surf,*,A,*,*,*,*"
+        }
+    val error =
+        assertFailsWith<InputFileException> {
+          DicBuilder.system().matrix(res("test.matrix")).parallelism(2).lexicon(data.byteInputStream())
+        }
+    assertTrue { error.message!!.startsWith("line:9001 ") }
+  }
+
+  @Test
+  fun spilledIndexIsSameAsInMemory() {
+    val data =
+        (0 until 1000).joinToString("\n") { i ->
+          val surf = "東${(i * 7919 % 300).toString(36)}"
+          "$surf,1,1,$i,$surf,名詞,普通名詞,一般,*,*,*,ヒガシ,$surf,*,A,*,*,*,*"
+        }
+    fun build(configure: (DicBuilder.System) -> Unit): ByteBuffer {
+      val ch = MemChannel()
+      val bldr = DicBuilder.system().matrix(res("test.matrix"))
+      configure(bldr)
+      bldr.lexicon(data.byteInputStream()).build(ch)
+      val buf = ch.buffer()
+      buf.position(BinaryDictionary(buf).dictionaryHeader.storageSize())
+      return buf
+    }
+    val dir = temporaryFolder.root.toPath()
+    val inMemory = build {}
+    assertEquals(inMemory, build { it.indexSpill(dir, 64) })
+    assertEquals(inMemory, build { it.parallelism(2).indexSpill(dir, 64) })
+    assertEquals(0, temporaryFolder.root.list()!!.size)
+  }
+
+  @Test
+  fun spilledIndexFailsOnTooManyEntries() {
+    val bldr = DicBuilder.system().matrix(res("test.matrix")).indexSpill(temporaryFolder.root.toPath(), 100)
+    bldr.lexicon(
+        (0..255).joinToString("\n") { "東,1,1,0,東,名詞,普通名詞,一般,*,*,*,ヒガシ,東,*,A,*,*,*,*" }.byteInputStream())
+    assertFailsWith<IllegalArgumentException> { bldr.build(MemChannel()) }
+  }
+
+  @Test
+  fun mappedLexiconIsSameAsStream() {
+    val data =
+        (0 until 2000).joinToString("") { i ->
+          val surf = "東${i.toString(36)}"
+          val head = if (i % 13 == 0) "\\u6771${i.toString(36)}" else surf
+          val cost = if (i % 17 == 0) "\\u0031${i % 100}" else "${i % 1000 - 500}"
+          val norm = if (i % 19 == 0) "\"$surf\"\"x\"" else surf
+          val split = if (i % 5 == 0) "\"東0,名詞,普通名詞,一般,*,*,*,ヒガシ/${i % 7}\"" else "*"
+          val end = if (i % 4 == 0) "\r\n" else "\n"
+          "$head,1,1,$cost,$surf,名詞,普通名詞,一般,*,*,*,ヒガシ,$norm,*,A,$split,$split,*,*$end"
+        }
+    val file = temporaryFolder.newFile("lex.csv").toPath()
+    file.toFile().writeText(data)
+    fun build(parallelism: Int, configure: (DicBuilder.System) -> Unit): ByteBuffer {
+      val ch = MemChannel()
+      val bldr = DicBuilder.system().matrix(res("test.matrix")).parallelism(parallelism)
+      configure(bldr)
+      bldr.build(ch)
+      val buf = ch.buffer()
+      buf.position(BinaryDictionary(buf).dictionaryHeader.storageSize())
+      return buf
+    }
+    val stream = build(1) { it.lexicon(data.byteInputStream()) }
+    assertEquals(stream, build(1) { it.lexicon(file) })
+    assertEquals(stream, build(2) { it.lexicon(file) })
+  }
+
+  @Test
+  fun mappedLexiconReportsLine() {
+    val file = temporaryFolder.newFile("lex.csv").toPath()
+    file.toFile()
+        .writeText(
+            (0 until 100).joinToString("\n") { i ->
+              if (i == 90) "a,1,1,x" else "a$i,1,1,0,a$i,名詞,普通名詞,一般,*,*,*,ア,a$i,*,A,*,*,*,*"
+            })
+    val error =
+        assertFailsWith<InputFileException> { DicBuilder.system().matrix(res("test.matrix")).lexicon(file) }
+    assertTrue { error.message!!.startsWith("line:91 ") }
+  }
 }
@@ -19,15 +19,18 @@ package com.worksap.nlp.sudachi.dictionary.build
 import com.worksap.nlp.sudachi.Config
 import com.worksap.nlp.sudachi.Dictionary
 import com.worksap.nlp.sudachi.DictionaryFactory
+import com.worksap.nlp.sudachi.JapaneseDictionary
 import com.worksap.nlp.sudachi.WordId
 import com.worksap.nlp.sudachi.dictionary.BinaryDictionary
 import com.worksap.nlp.sudachi.dictionary.DictionaryAccess
+import com.worksap.nlp.sudachi.dictionary.DoubleArrayLexicon
 import com.worksap.nlp.sudachi.dictionary.POS
 import java.net.URL
 import kotlin.test.Test
 import kotlin.test.assertContentEquals
 import kotlin.test.assertEquals
 import kotlin.test.assertFails
+import kotlin.test.assertFailsWith
 
 fun <T : Any> T.res(name: String): URL {
   return javaClass.getResource(name) ?: throw IllegalArgumentException("$name was not found")
@@ -147,6 +150,40 @@ class UserDicTest {
     assertEquals(da.grammar.getPartOfSpeechString(2), POS("a", "b", "c", "d", "e", "f"))
   }
 
+  @Test
+  fun costsComputedAtBuildTime() {
+    val systemData =
+        """東京,1,1,2816,東京,名詞,固有名詞,地名,一般,*,*,トウキョウ,東京,*,A,*,*,*,*
+           都,2,2,2914,都,名詞,普通名詞,一般,*,*,*,ト,都,*,A,*,*,*,*""".trimIndent()
+    val userData = """東京都,2,2,-32768,東京都,名詞,固有名詞,地名,一般,*,*,トウキョウト,東京都,*,A,*,*,*,*"""
+    val loaded = TestDic().system(systemData).user(userData).load() as DictionaryAccess
+    val expected = loaded.lexicon.getCost(WordId.make(1, 0))
+
+    val system = TestDic().system(systemData).load()
+    val bldr = DicBuilder.user(system as DictionaryAccess).lexicon(userData.byteInputStream())
+    bldr.costs(system.create())
+    val ch = MemChannel()
+    bldr.build(ch)
+    val user = BinaryDictionary(ch.buffer())
+    assertEquals(expected, user.lexicon.getCost(0))
+  }
+
+  @Test
+  fun costsComputedInParallel() {
+    val systemData =
+        """東京,1,1,2816,東京,名詞,固有名詞,地名,一般,*,*,トウキョウ,東京,*,A,*,*,*,*
+           都,2,2,2914,都,名詞,普通名詞,一般,*,*,*,ト,都,*,A,*,*,*,*""".trimIndent()
+    val surfaces = (0 until 1000).map { "東京${"都".repeat(it % 7)}$it" }
+    val userData =
+        surfaces.joinToString("\n") { "$it,2,2,-32768,$it,名詞,固有名詞,地名,一般,*,*,ト,$it,*,A,*,*,*,*" }
+    val loaded = TestDic().system(systemData).user(userData).load() as DictionaryAccess
+    val tokenizer = TestDic().system(systemData).load().create()
+    surfaces.forEachIndexed { i, s ->
+      assertEquals(
+          DoubleArrayLexicon.calculateCost(tokenizer, s), loaded.lexicon.getCost(WordId.make(1, i)))
+    }
+  }
+
   @Test
   fun failDictionaryFormInSystem() {
     val bldr =
@@ -184,4 +221,179 @@ class UserDicTest {
       bldr.user("""東京都,2,2,5320,東京都,a,b,c,d,e,f,トウキョウト,東京都,*,B,0/U1,*,*,*""".trimIndent())
     }
   }
+
+  @Test
+  fun updateIsSameAsFullBuild() {
+    val system =
+        TestDic()
+            .system(
+                """東京,1,1,2816,東京,名詞,固有名詞,地名,一般,*,*,トウキョウ,東京,*,A,*,*,*,*
+                   都,2,2,2914,都,名詞,普通名詞,一般,*,*,*,ト,都,*,A,*,*,*,*""".trimIndent())
+            .load() as DictionaryAccess
+    val lines =
+        (0 until 100).map { i ->
+          val surf = "都$i"
+          val key = if (i % 9 == 0) "みやこ$i" else surf
+          val pos = if (i % 10 == 0) "a,b,c,d,e,${i % 3}" else "名詞,普通名詞,一般,*,*,*"
+          val split =
+              if (i % 7 == 0 && i > 0) "\"東京,名詞,固有名詞,地名,一般,*,*,トウキョウ/都${i - 7},${posOf(i - 7)},ト\"" else "*"
+          "$key,2,2,${i * 10},$surf,$pos,ト,$surf,*,${if (split == "*") "A" else "B"},$split,*,*,*"
+        }
+    val removed = listOf(3, 50, 51, 99)
+    val added = (100 until 110).map { "都$it,2,2,$it,都$it,名詞,新規,*,*,*,*,ト,都$it,*,A,*,*,*,*" }
+
+    fun build(fn: (DicBuilder.User) -> Unit): BinaryDictionary {
+      val bldr = DicBuilder.user(system)
+      fn(bldr)
+      val ch = MemChannel()
+      bldr.build(ch)
+      return BinaryDictionary(ch.buffer())
+    }
+    val previous = build { it.lexicon(lines.joinToString("\n").byteInputStream()) }
+    var mapping: IntArray? = null
+    val updated = build {
+      it.update(previous, removed.joinToString("\n") { i -> lines[i] }.byteInputStream())
+          .lexicon(added.joinToString("\n").byteInputStream())
+      mapping = it.wordIdMapping
+    }
+    val kept = lines.filterIndexed { i, _ -> i !in removed }
+    val full = build { it.lexicon((kept + added).joinToString("\n").byteInputStream()) }
+
+    fun body(dic: BinaryDictionary) =
+        dic.lexicon.let { lex ->
+          (0 until lex.size()).map {
+            val wi = lex.getWordInfo(it)
+            listOf(
+                wi.surface,
+                wi.posId,
+                wi.normalizedForm,
+                wi.dictionaryFormWordId,
+                wi.readingForm,
+                wi.aunitSplit.toList(),
+                wi.bunitSplit.toList(),
+                lex.getLeftId(it),
+                lex.getCost(it))
+          }
+        }
+    assertEquals(body(full), body(updated))
+    assertContentEquals(full.lexicon.wordKeys.map { it?.toList() }, updated.lexicon.wordKeys.map { it?.toList() })
+    assertEquals(-1, mapping!![3])
+    assertEquals(2, mapping!![2])
+    assertEquals(3, mapping!![4])
+    assertEquals(95, mapping!![98])
+  }
+
+  @Test
+  fun updateRemapsUserWordIds() {
+    val system =
+        TestDic()
+            .system("""東京,1,1,2816,東京,名詞,固有名詞,地名,一般,*,*,トウキョウ,東京,*,A,*,*,*,*""")
+            .load() as DictionaryAccess
+    val lines =
+        listOf(
+            "a,2,2,1,a,名詞,普通名詞,一般,*,*,*,ア,a,*,A,*,*,*,*",
+            "b,2,2,1,b,名詞,普通名詞,一般,*,*,*,ア,b,2,A,*,*,*,*",
+            "c,2,2,1,c,名詞,普通名詞,一般,*,*,*,ア,c,*,B,U1/0,*,U1/0,*")
+    val ch = MemChannel()
+    DicBuilder.user(system).lexicon(lines.joinToString("\n").byteInputStream()).build(ch)
+    val previous = BinaryDictionary(ch.buffer())
+
+    val bldr = DicBuilder.user(system).update(previous, lines[0].byteInputStream())
+    assertContentEquals(intArrayOf(-1, 0, 1), bldr.wordIdMapping)
+    val result = MemChannel()
+    bldr.build(result)
+    val lexicon = BinaryDictionary(result.buffer()).lexicon
+    assertEquals(1, lexicon.getWordInfo(0).dictionaryFormWordId)
+    assertContentEquals(intArrayOf(WordId.make(1, 0), 0), lexicon.getWordInfo(1).aunitSplit)
+
+    assertFailsWith<InputFileException> {
+      DicBuilder.user(system).update(previous, "d,2,2,1,d,名詞,普通名詞,一般,*,*,*,ア,d,*,A,*,*,*,*".byteInputStream())
+    }
+    assertFailsWith<IllegalArgumentException> { DicBuilder.user(system).update(previous, lines[1].byteInputStream()) }
+  }
+
+  @Test
+  fun updateDropsUnusedPos() {
+    val system =
+        TestDic()
+            .system("""東京,1,1,2816,東京,名詞,固有名詞,地名,一般,*,*,トウキョウ,東京,*,A,*,*,*,*""")
+            .load() as DictionaryAccess
+    val lines =
+        listOf(
+            "x,2,2,1,x,a,b,c,d,e,0,ア,x,*,A,*,*,*,*",
+            "y,2,2,1,y,a,b,c,d,e,1,ア,y,*,A,*,*,*,*",
+            "z,2,2,1,z,a,b,c,d,e,2,ア,z,*,A,*,*,*,*",
+            "w,2,2,1,w,a,b,c,d,e,0,ア,w,*,A,*,*,*,*")
+    val added = "v,2,2,1,v,a,b,c,d,e,3,ア,v,*,A,*,*,*,*"
+
+    fun build(fn: (DicBuilder.User) -> Unit): BinaryDictionary {
+      val bldr = DicBuilder.user(system)
+      fn(bldr)
+      val ch = MemChannel()
+      bldr.build(ch)
+      return BinaryDictionary(ch.buffer())
+    }
+    val previous = build { it.lexicon(lines.joinToString("\n").byteInputStream()) }
+    val updated = build {
+      it.update(previous, (lines[0] + "\n" + lines[1]).byteInputStream()).lexicon(added.byteInputStream())
+    }
+    val full = build { it.lexicon((lines.drop(2) + added).joinToString("\n").byteInputStream()) }
+
+    fun posTable(dic: BinaryDictionary) =
+        dic.grammar.let { g -> (0 until g.partOfSpeechSize).map { g.getPartOfSpeechString(it.toShort()) } }
+    fun posIds(dic: BinaryDictionary) = (0 until dic.lexicon.size()).map { dic.lexicon.getWordInfo(it).posId }
+    assertEquals(
+        listOf(POS("a", "b", "c", "d", "e", "2"), POS("a", "b", "c", "d", "e", "0"), POS("a", "b", "c", "d", "e", "3")),
+        posTable(updated))
+    assertEquals(posTable(full), posTable(updated))
+    assertEquals(posIds(full), posIds(updated))
+  }
+
+  @Test
+  fun entriesInMemory() {
+    val dic =
+        TestDic()
+            .system(
+                """東京,1,1,2816,東京,名詞,固有名詞,地名,一般,*,*,トウキョウ,東京,*,A,*,*,*,*
+                   都,2,2,2914,都,名詞,普通名詞,一般,*,*,*,ト,都,*,A,*,*,*,*""".trimIndent())
+            .load() as JapaneseDictionary
+    val sudachi = POS("被子植物門", "双子葉植物綱", "ムクロジ目", "ミカン科", "ミカン属", "スダチ")
+    val user =
+        DicBuilder.user(dic)
+            .entry("すだち", 2, 2, 2000, sudachi, "スダチ", "酢橘")
+            .entry("東京都", 2, 2, Short.MIN_VALUE, POS("名詞", "固有名詞", "地名", "一般", "*", "*"), "トウキョウト", "東京都")
+            .build()
+    assertEquals(2, user.lexicon.size())
+    assertEquals(1, user.grammar.partOfSpeechSize)
+
+    dic.replaceUserDictionaries(listOf(user))
+    val morphs = dic.create().tokenize("すだち東京都")
+    assertEquals(2, morphs.size)
+    assertEquals(1, morphs[0].dictionaryId)
+    assertEquals("酢橘", morphs[0].normalizedForm())
+    assertEquals(sudachi, morphs[0].partOfSpeech())
+    assertEquals("トウキョウト", morphs[1].readingForm())
+
+    assertFailsWith<IllegalArgumentException> {
+      DicBuilder.user(dic).entry("", 2, 2, 1, POS("名詞", "普通名詞", "一般", "*", "*", "*"), "", "")
+    }
+  }
+
+  @Test
+  fun entryWithoutLeftIdIsNotIndexed() {
+    val dic =
+        TestDic()
+            .system("""東京,1,1,2816,東京,名詞,固有名詞,地名,一般,*,*,トウキョウ,東京,*,A,*,*,*,*""")
+            .load() as JapaneseDictionary
+    val pos = POS("名詞", "普通名詞", "一般", "*", "*", "*")
+    val user =
+        DicBuilder.user(dic)
+            .entry("すだち", -1, -1, 2000, pos, "スダチ", "酢橘")
+            .entry("かぼす", 2, 2, 2000, pos, "カボス", "かぼす")
+            .build()
+    assertEquals(2, user.lexicon.size())
+    assertEquals(listOf(null, "かぼす"), user.lexicon.wordKeys.map { it?.toString(Charsets.UTF_8) })
+  }
 }
+
+private fun posOf(i: Int) = if (i % 10 == 0) "a,b,c,d,e,${i % 3}" else "名詞,普通名詞,一般,*,*,*"